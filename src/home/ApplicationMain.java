@@ -1,11 +1,16 @@
 package home;
 
+import home.customer.DataManager;
+import home.customer.InMemoryRepository;
+import home.metrics.MetricRegistry;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -17,20 +22,58 @@ public class ApplicationMain extends Application
 {
     /**
      * It sets the starting login scene for the application and shows it on stage. It displays the title according to
-     * language settings
+     * language settings. Reference data starts loading in the background while the login form is shown.
+     * When the writeBehindDelayMillis system property is set, edits are saved in the background at most that
+     * many milliseconds after they are made. When the snapshot system property is true, the data is loaded
+     * from the local snapshot left by the previous run and reconciled with the database in the background.
+     * The snapshot is off by default because it keeps customer details on the local disk.
+     * Setting the repository system property to memory runs the application against an in-memory store
+     * instead of MySQL. The metrics are printed to the log every metricsReportSeconds seconds, 300 by default
+     * and 0 to turn the printing off, and can be read at any time through JMX
      * @param stage - stage object is passed from JavaFx framework
      * @throws IOException
      */
     @Override
     public void start(Stage stage) throws IOException
     {
+        long metricsReportSeconds = Long.getLong("metricsReportSeconds", 300L);
+        if (metricsReportSeconds > 0) {
+            MetricRegistry.getInstance().startReporting(Duration.ofSeconds(metricsReportSeconds));
+        }
+        // the in-memory store starts empty on every launch, so a snapshot of the previous run would not match it
+        if ("true".equals(System.getProperty("snapshot"))
+            && !(DataManager.getInstance().getRepository().getDelegate() instanceof InMemoryRepository)) {
+            DataManager.getInstance().enableSnapshot(Paths.get(System.getProperty("user.home"), ".scheduling-snapshot.bin"));
+        }
+        DataManager.getInstance().loadReferenceDataAsync();
+        Long writeBehindDelay = Long.getLong("writeBehindDelayMillis");
+        if (writeBehindDelay != null) {
+            DataManager.getInstance().enableWriteBehind(
+                Paths.get(System.getProperty("user.home"), ".scheduling-write-behind.journal"), writeBehindDelay);
+        }
         FXMLLoader fxmlLoader = new FXMLLoader(ApplicationMain.class.getResource("/resources/views/logIn-view.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 340, 240);
+        Scene scene = new Scene(MetricRegistry.getInstance().time("fxml.load.logIn-view", fxmlLoader::load), 340, 240);
         stage.setTitle(getLogInBundle().getString("logInTitle"));
         stage.setScene(scene);
         stage.show();
     }
 
+    /**
+     * Stops the delta sync, saves any edits still queued, writes the snapshot for the next launch and releases
+     * the pooled database connections when the application window is closed
+     * The metrics of the session are printed one last time
+     */
+    @Override
+    public void stop()
+    {
+        DataManager.getInstance().stopSync();
+        DataManager.getInstance().flushWrites();
+        DataManager.getInstance().saveSnapshot();
+        JDBC.closeConnection();
+        MetricRegistry.getInstance().stopReporting();
+        System.out.println(MetricRegistry.getInstance().describe());
+    }
+
     /**
      * Returns the resource bundle for login form for lacalization
      * @return the resource bundle
@@ -0,0 +1,116 @@
+package home;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+import home.appointments.Appointment;
+import home.customer.DataManager;
+import home.customer.IntIndex;
+import home.export.DataExporter;
+import home.export.ExportFormat;
+import home.reports.ReportEngine;
+
+/**
+ * This is the command line entry point that produces the reports without a desktop session.
+ * It writes the type and month, customer and type and contact reports to files and prints how long each step took.
+ * No JavaFX class is used so it can run on a headless machine, for example from cron.
+ *
+ * Usage: BatchReportMain [output directory] [csv|json]
+ */
+public class BatchReportMain
+{
+    private static final String USAGE = "Usage: BatchReportMain [output directory] [csv|json]";
+
+    /**
+     * Runs the reports and exits with status 1 if the arguments are wrong or any step fails
+     * @param args output directory, defaults to the working directory, and export format, defaults to csv
+     */
+    public static void main(String[] args) {
+        Path outputDirectory = Paths.get(args.length > 0 ? args[0] : ".");
+        ExportFormat format = null;
+        for (ExportFormat candidate : ExportFormat.values()) {
+            if (candidate.getExtension().equals((args.length > 1 ? args[1] : "csv").toLowerCase(Locale.ROOT))) {
+                format = candidate;
+            }
+        }
+        if (format == null) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+        int status = 0;
+        try {
+            run(outputDirectory, format);
+        } catch (Exception e) {
+            System.out.println("Error with running batch reports " + e.getMessage());
+            status = 1;
+        } finally {
+            JDBC.closeConnection();
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Helper method that loads the data, builds every report and writes it to the output directory
+     * @param outputDirectory directory the report files are written to
+     * @param format format of the report files
+     * @throws Exception if the data cannot be loaded or a report cannot be written, no report is written when
+     * the data is incomplete
+     */
+    private static void run(Path outputDirectory, ExportFormat format) throws Exception {
+        long started = System.nanoTime();
+        Files.createDirectories(outputDirectory);
+        DataManager dataManager = DataManager.getInstance();
+
+        long stepStarted = System.nanoTime();
+        dataManager.loadReferenceData();
+        if (dataManager.hasReferenceDataErrors()) {
+            throw new IllegalStateException("the reference data could not be loaded");
+        }
+        List<Appointment> appointments = dataManager.appointments;
+        printStep("load appointments", stepStarted, appointments.size());
+
+        stepStarted = System.nanoTime();
+        IntIndex<String> customerNames = new IntIndex<>();
+        // only the names are kept, the customers themselves are not needed by the reports
+        dataManager.loadCustomers(batch -> batch.forEach(c -> customerNames.put(c.getId(), c.getName())), 1000);
+        printStep("load customer names", stepStarted, customerNames.size());
+
+        stepStarted = System.nanoTime();
+        ReportEngine.Result result = new ReportEngine().run(appointments);
+        printStep("aggregate reports", stepStarted, appointments.size());
+
+        DataExporter exporter = new DataExporter();
+        stepStarted = System.nanoTime();
+        long rows = exporter.exportAppointmentEntries(result.getAppointmentEntries(),
+            outputDirectory.resolve("appointments-by-type-and-month." + format.getExtension()), format);
+        printStep("appointments by type and month report", stepStarted, rows);
+
+        stepStarted = System.nanoTime();
+        rows = exporter.exportCustomerEntries(result.getCustomerEntries(customerId -> {
+                String name = customerNames.get(customerId);
+                return name != null ? name : String.valueOf(customerId);
+            }), outputDirectory.resolve("appointments-by-customer-and-type." + format.getExtension()), format);
+        printStep("appointments by customer and type report", stepStarted, rows);
+
+        stepStarted = System.nanoTime();
+        rows = exporter.exportContactSchedules(result.getAppointmentsByContact(),
+            outputDirectory.resolve("contact-schedules." + format.getExtension()), format);
+        printStep("contact schedules report", stepStarted, rows);
+
+        System.out.println("Batch reports written to " + outputDirectory.toAbsolutePath() + " in "
+            + (System.nanoTime() - started) / 1_000_000 + "ms");
+    }
+
+    /**
+     * Helper method that prints how long a step took and how many rows it handled
+     * @param step name of the step
+     * @param stepStarted System.nanoTime() when the step started
+     * @param rows number of rows handled by the step
+     */
+    private static void printStep(String step, long stepStarted, long rows) {
+        System.out.println(step + ": " + rows + " rows in " + (System.nanoTime() - stepStarted) / 1_000_000 + "ms");
+    }
+}
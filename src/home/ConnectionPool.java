@@ -0,0 +1,316 @@
+package home;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that keeps a bounded set of open database connections so they can be reused between queries.
+ * Connections handed out by this pool return to it when closed instead of closing the physical connection.
+ */
+public class ConnectionPool
+{
+    private final String url;
+    private final String userName;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor to create a connection pool
+     * @param url jdbc url of the database
+     * @param userName database username
+     * @param password database password
+     * @param maxSize maximum number of connections open at the same time
+     * @param borrowTimeoutMillis how long a caller waits for a free connection before failing
+     * @param idleTimeoutMillis how long a connection can stay unused before it is closed
+     * @param maxLifetimeMillis how long a connection can live before it is replaced
+     * @param validationTimeoutSeconds timeout used when checking a connection before handing it out
+     * @param statementCacheSize number of prepared statements cached per connection, 0 to disable caching
+     */
+    public ConnectionPool(
+        final String url,
+        final String userName,
+        final String password,
+        final int maxSize,
+        final long borrowTimeoutMillis,
+        final long idleTimeoutMillis,
+        final long maxLifetimeMillis,
+        final int validationTimeoutSeconds,
+        final int statementCacheSize)
+    {
+        this.url = url;
+        this.userName = userName;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        this.housekeeper.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if no idle connection is available.
+     * The caller must close the returned connection to give it back to the pool.
+     * @return a connection that returns to the pool when closed
+     * @throws SQLException if the pool is closed, exhausted or the database cannot be reached
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection after " + borrowTimeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = takeIdle()) != null) {
+                if (isUsable(pooled)) {
+                    return pooled.lease();
+                }
+                pooled.closePhysical();
+            }
+            pooled = new PooledConnection(DriverManager.getConnection(url, userName, password));
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops handing out new ones.
+     * Connections currently borrowed are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = takeIdle()) != null) {
+            pooled.closePhysical();
+        }
+    }
+
+    /**
+     * Retrieves the number of connections waiting to be borrowed
+     * @return number of idle connections
+     */
+    public synchronized int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Retrieves the number of connections currently borrowed
+     * @return number of connections in use
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Closes connections that have been idle or alive for longer than allowed
+     */
+    void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        Deque<PooledConnection> expired = new ArrayDeque<>();
+        synchronized (this) {
+            Iterator<PooledConnection> iterator = idleConnections.iterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooled = iterator.next();
+                if (now - pooled.lastUsed > idleTimeoutMillis || now - pooled.created > maxLifetimeMillis) {
+                    iterator.remove();
+                    expired.add(pooled);
+                }
+            }
+        }
+        for (PooledConnection pooled : expired) {
+            pooled.closePhysical();
+        }
+    }
+
+    /**
+     * Helper method to take the most recently used idle connection
+     * @return idle connection or null if there is none
+     */
+    private synchronized PooledConnection takeIdle() {
+        return idleConnections.pollFirst();
+    }
+
+    /**
+     * Helper method that checks an idle connection before handing it out again
+     * @param pooled connection to check
+     * @return true if the connection can be reused otherwise false
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (now - pooled.created > maxLifetimeMillis || now - pooled.lastUsed > idleTimeoutMillis) {
+            return false;
+        }
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Helper method that puts a returned connection back in the pool or closes it
+     * @param pooled connection being returned
+     */
+    private void giveBack(PooledConnection pooled) {
+        try {
+            boolean reusable = !closed && System.currentTimeMillis() - pooled.created <= maxLifetimeMillis;
+            if (reusable) {
+                try {
+                    if (pooled.statementCache != null) {
+                        pooled.statementCache.releaseAll();
+                    }
+                    if (!pooled.physical.getAutoCommit()) {
+                        pooled.physical.rollback();
+                        pooled.physical.setAutoCommit(true);
+                    }
+                } catch (SQLException e) {
+                    reusable = false;
+                }
+            }
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                synchronized (this) {
+                    idleConnections.addFirst(pooled);
+                }
+            } else {
+                pooled.closePhysical();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Class that wraps a physical connection owned by the pool
+     */
+    private class PooledConnection
+    {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private final long created;
+        private volatile long lastUsed;
+
+        private PooledConnection(final Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+            this.created = System.currentTimeMillis();
+            this.lastUsed = this.created;
+        }
+
+        /**
+         * Hands out a proxy of the physical connection whose close method returns it to the pool
+         * @return the proxy connection
+         */
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Lease(this));
+        }
+
+        /**
+         * Closes the physical connection
+         */
+        private void closePhysical() {
+            if (statementCache != null) {
+                statementCache.close();
+            }
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.out.println("Error closing pooled connection " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Class that handles calls made on a borrowed connection.
+     * Each borrow gets its own lease so a stale reference cannot return the connection twice.
+     */
+    private class Lease implements InvocationHandler
+    {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        private Lease(final PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (pooled.statementCache != null && method.getName().equals("prepareStatement")) {
+                        if (args.length == 1) {
+                            return pooled.statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS,
+                                (Connection) proxy);
+                        } else if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                            return pooled.statementCache.prepare((String) args[0], (Integer) args[1], (Connection) proxy);
+                        }
+                    }
+                    try {
+                        return method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package home;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import home.bulk.DataGenerator;
+import home.bulk.ImportReport;
+
+/**
+ * This is the command line entry point that fills the schedule database with synthetic customers and appointments.
+ * The same seed always produces the same rows, so load problems can be reproduced at production volumes.
+ * Run it with -Drepository=memory to generate into the in-memory store instead of MySQL.
+ *
+ * Usage: GenerateDataMain [customers] [appointments per customer] [seed] [first day] [chunk size] [batch size]
+ */
+public class GenerateDataMain
+{
+    private static final String USAGE
+        = "Usage: GenerateDataMain [customers] [appointments per customer] [seed] [first day] [chunk size] [batch size]";
+
+    /**
+     * Generates the data and exits with status 1 if the arguments are wrong or it fails
+     * @param args number of customers, defaults to 1000, appointments per customer, defaults to 20, seed, defaults to 42,
+     * first appointment day as yyyy-MM-dd, defaults to 2025-01-06, customers per chunk, defaults to 10000,
+     * and rows per batch, defaults to 1000
+     */
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            int customers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+            int appointmentsPerCustomer = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+            LocalDate firstDay = args.length > 3 ? LocalDate.parse(args[3]) : LocalDate.of(2025, 1, 6);
+            int chunkSize = args.length > 4 ? Integer.parseInt(args[4]) : 10_000;
+            int batchSize = args.length > 5 ? Integer.parseInt(args[5]) : 1000;
+            DataGenerator generator = new DataGenerator(seed, firstDay, chunkSize, batchSize, "generator");
+            for (ImportReport report : generator.generate(customers, appointmentsPerCustomer)) {
+                System.out.println(report.describe());
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            System.out.println(USAGE);
+            status = 1;
+        } catch (Exception e) {
+            System.out.println("Error with generating data " + e.getMessage());
+            status = 1;
+        } finally {
+            JDBC.closeConnection();
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,50 @@
+package home;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import home.bulk.BulkImporter;
+import home.bulk.ImportReport;
+
+/**
+ * This is the command line entry point that imports customers or appointments from a CSV file.
+ * Rows that fail validation or cannot be inserted are listed in the printed report, the other rows are imported.
+ * Run it with -Drepository=memory to import into the in-memory store instead of MySQL.
+ *
+ * Usage: ImportMain customers|appointments <CSV file> [chunk size] [batch size]
+ */
+public class ImportMain
+{
+    private static final String USAGE = "Usage: ImportMain customers|appointments <CSV file> [chunk size] [batch size]";
+
+    /**
+     * Imports the file and exits with status 1 if the arguments are wrong or the import fails
+     * @param args customers or appointments, path of the CSV file, rows per chunk, defaults to 10000,
+     * and rows per batch, defaults to 1000
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || !("customers".equals(args[0]) || "appointments".equals(args[0]))) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+        int status = 0;
+        try {
+            Path file = Paths.get(args[1]);
+            int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+            int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+            BulkImporter importer = new BulkImporter(chunkSize, batchSize, "import");
+            ImportReport report = "customers".equals(args[0]) ? importer.importCustomers(file)
+                : importer.importAppointments(file);
+            System.out.println(report.describe());
+        } catch (NumberFormatException e) {
+            System.out.println(USAGE);
+            status = 1;
+        } catch (Exception e) {
+            System.out.println("Error with importing " + args[1] + " " + e.getMessage());
+            status = 1;
+        } finally {
+            JDBC.closeConnection();
+        }
+        System.exit(status);
+    }
+}
@@ -1,56 +1,78 @@
 package home;
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
+import home.metrics.LatencyHistogram;
+import home.metrics.MetricRegistry;
+
 public class JDBC {
          private static final String protocol = "jdbc";
          private static final String vendor = ":mysql:";
          private static final String location = "//localhost/";
          private static final String databaseName = "client_schedule";
-         private static final String jdbcUrl = protocol + vendor + location + databaseName + "?connectionTimeZone = SERVER"; // LOCAL
+         private static final String jdbcUrl = protocol + vendor + location + databaseName + "?connectionTimeZone = SERVER&useServerPrepStmts=true&rewriteBatchedStatements=true"; // LOCAL
          private static final String driver = "com.mysql.cj.jdbc.Driver"; // Driver reference
          private static final String userName = "sqlUser"; // Username
          private static String password = "Passw0rd!"; // Password
-         private static Connection connection = null;  // Connection Interface
-         private static PreparedStatement preparedStatement;
+         private static final int maxPoolSize = 10; // Most connections open at once
+         private static final long borrowTimeoutMillis = 30_000; // Wait for a free connection
+         private static final long idleTimeoutMillis = 5 * 60_000; // Close connections unused for this long
+         private static final long maxLifetimeMillis = 30 * 60_000; // Replace connections older than this
+         private static final int validationTimeoutSeconds = 2; // Check connections before reuse
+         private static final int statementCacheSize = 32; // Prepared statements kept per connection
+         private static ConnectionPool pool = null;  // Shared pool of connections
+         private static final LatencyHistogram borrowLatency = MetricRegistry.getInstance().histogram("pool.borrow"); // Wait for a connection
 
-         public static Connection getConnection() {
+         /**
+          * Borrows a connection from the shared pool, creating the pool on first use.
+          * Closing the returned connection gives it back to the pool.
+          * The time spent waiting for the connection is recorded in the pool.borrow metric.
+          * @return pooled connection
+          * @throws SQLException if no connection could be obtained
+          */
+         public static Connection getConnection() throws SQLException {
+              long started = System.nanoTime();
               try {
-                  Class.forName(driver); // Locate Driver
-                  //password = Details.getPassword(); // Assign password
-                  connection = DriverManager.getConnection(jdbcUrl, userName, password); // reference Connection object
-                  System.out.println("Connection successful!");
+                  return getPool().borrow();
+              } finally {
+                  borrowLatency.recordSince(started);
               }
-              catch(ClassNotFoundException e) {
-                  System.out.println("Error:" + e.getMessage());
-              }
-              catch(SQLException e) {
-                  System.out.println("Error:" + e.getMessage());
+          }
+
+         /**
+          * Retrieves the shared connection pool, creating it on first use
+          * The pool and statement cache gauges are registered with the metrics when the pool is created
+          * @return the connection pool
+          */
+         public static synchronized ConnectionPool getPool() {
+              if (pool == null) {
+                  try {
+                      Class.forName(driver); // Locate Driver
+                  }
+                  catch(ClassNotFoundException e) {
+                      System.out.println("Error:" + e.getMessage());
+                  }
+                  //password = Details.getPassword(); // Assign password
+                  pool = new ConnectionPool(jdbcUrl, userName, password, maxPoolSize, borrowTimeoutMillis,
+                      idleTimeoutMillis, maxLifetimeMillis, validationTimeoutSeconds, statementCacheSize);
+                  System.out.println("Connection pool created!");
+                  MetricRegistry metrics = MetricRegistry.getInstance();
+                  metrics.gauge("pool.active", () -> pool != null ? pool.getActiveCount() : 0);
+                  metrics.gauge("pool.idle", () -> pool != null ? pool.getIdleCount() : 0);
+                  metrics.gauge("cache.statement.hits", StatementCache::getTotalHits);
+                  metrics.gauge("cache.statement.misses", StatementCache::getTotalMisses);
               }
-              return connection;
+              return pool;
           }
 
-             public static void closeConnection() {
-                 try {
-                     connection.close();
+             /**
+              * Closes every pooled connection, used when the application shuts down
+              */
+             public static synchronized void closeConnection() {
+                 if (pool != null) {
+                     pool.close();
+                     pool = null;
                      System.out.println("Connection closed!");
-                 } catch (SQLException e) {
-                     System.out.println(e.getMessage());
                  }
              }
-
-       public static void makePreparedStatement(String sqlStatement, Connection conn) throws SQLException {
-           if (conn != null)
-               preparedStatement = conn.prepareStatement(sqlStatement);
-           else
-               System.out.println("Prepared Statement Creation Failed!");
-       }
-       public static PreparedStatement getPreparedStatement() throws SQLException {
-           if (preparedStatement != null)
-               return preparedStatement;
-           else System.out.println("Null reference to Prepared Statement");
-           return null;
-       }
 }
\ No newline at end of file
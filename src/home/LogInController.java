@@ -10,6 +10,8 @@ import java.util.ResourceBundle;
 
 import home.appointments.User;
 import home.customer.DataManager;
+import home.metrics.MetricRegistry;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -54,6 +56,10 @@ public class LogInController
         userNameLabel.setText(loginBundle.getString("userNameLabel"));
         passwordLabel.setText(loginBundle.getString("passwordLabel"));
         signInButton.setText(loginBundle.getString("logInButtonText"));
+        // users are needed to check credentials, keep sign in disabled until they are loaded in the background
+        signInButton.setDisable(true);
+        DataManager.getInstance().loadReferenceDataAsync()
+            .whenComplete((result, error) -> Platform.runLater(() -> signInButton.setDisable(false)));
     }
 
     /**
@@ -105,7 +111,7 @@ public class LogInController
             fileWriter.close();
             FXMLLoader fxmlLoader = new FXMLLoader();
             fxmlLoader.setLocation(getClass().getResource("/resources/views/customers-view.fxml"));
-            Scene scene = new Scene(fxmlLoader.load(), 800, 600);
+            Scene scene = new Scene(MetricRegistry.getInstance().time("fxml.load.customers-view", fxmlLoader::load), 800, 600);
             Stage stage = (Stage) signInButton.getScene().getWindow();
             stage.setTitle("Customers");
             stage.setScene(scene);
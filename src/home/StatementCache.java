@@ -0,0 +1,224 @@
+package home;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that keeps the most recently used prepared statements of one pooled connection.
+ * Statements are keyed by their SQL text so repeated queries skip the prepare round-trip.
+ */
+public class StatementCache
+{
+    private static final AtomicLong totalHits = new AtomicLong();
+    private static final AtomicLong totalMisses = new AtomicLong();
+
+    private final Connection connection;
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedStatement> statements;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Constructor to create a statement cache for a connection
+     * @param connection physical connection the statements are prepared on
+     * @param maxSize maximum number of statements kept open
+     */
+    public StatementCache(final Connection connection, final int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Retrieves a prepared statement for the sql text, preparing it only when it is not cached yet.
+     * Closing the returned statement keeps it open in the cache for the next caller.
+     * @param sql sql text of the statement
+     * @param autoGeneratedKeys either Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+     * @param owner pooled connection the caller borrowed, returned by getConnection instead of the physical one
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys, Connection owner) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hits++;
+            totalHits.incrementAndGet();
+            return cached.checkOut(owner);
+        }
+        misses++;
+        totalMisses.incrementAndGet();
+        PreparedStatement statement = connection.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null) {
+            // the cached statement is still open by the same borrower, hand out a plain one
+            return statement;
+        }
+        cached = new CachedStatement(statement);
+        // checked out before evicting, so the new statement is never the one closed to make room
+        PreparedStatement handle = cached.checkOut(owner);
+        statements.put(key, cached);
+        evictOverflow();
+        return handle;
+    }
+
+    /**
+     * Releases statements a borrower left open so they are available on the next borrow
+     */
+    public void releaseAll() {
+        for (CachedStatement cached : statements.values()) {
+            try {
+                cached.checkIn();
+            } catch (SQLException e) {
+                System.out.println("Error releasing cached statement " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement, used before the connection itself is closed
+     */
+    public void close() {
+        for (CachedStatement cached : statements.values()) {
+            cached.closePhysical();
+        }
+        statements.clear();
+    }
+
+    /**
+     * Retrieves the number of statements served from this cache
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of statements that had to be prepared
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Retrieves the number of statements served from cache across all connections
+     * @return total number of cache hits
+     */
+    public static long getTotalHits() {
+        return totalHits.get();
+    }
+
+    /**
+     * Retrieves the number of statements prepared across all connections
+     * @return total number of cache misses
+     */
+    public static long getTotalMisses() {
+        return totalMisses.get();
+    }
+
+    /**
+     * Helper method that closes the least recently used statements above the maximum size
+     */
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, CachedStatement>> iterator = statements.entrySet().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement eldest = iterator.next().getValue();
+            if (!eldest.inUse) {
+                iterator.remove();
+                eldest.closePhysical();
+            }
+        }
+    }
+
+    /**
+     * Class that holds a cached statement and whether a caller is currently using it
+     */
+    private static class CachedStatement
+    {
+        private final PreparedStatement physical;
+        private final PreparedStatement proxy;
+        private boolean inUse = false;
+        private Connection owner = null;
+
+        private CachedStatement(final PreparedStatement physical) {
+            this.physical = physical;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            checkIn();
+                            return null;
+                        case "isClosed":
+                            return !inUse || physical.isClosed();
+                        case "getConnection":
+                            // the physical connection must only be closed by the pool
+                            if (!inUse) {
+                                throw new SQLException("Statement has already been closed");
+                            }
+                            return owner;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            if (!inUse) {
+                                throw new SQLException("Statement has already been closed");
+                            }
+                            try {
+                                return method.invoke(physical, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+        }
+
+        /**
+         * Marks the statement as used and returns the handle given to callers
+         * @param owner pooled connection of the caller
+         * @return statement handle
+         */
+        private PreparedStatement checkOut(Connection owner) {
+            inUse = true;
+            this.owner = owner;
+            return proxy;
+        }
+
+        /**
+         * Releases the statement's result set, parameters and pending batch so it can be reused
+         */
+        private void checkIn() throws SQLException {
+            if (!inUse) {
+                return;
+            }
+            inUse = false;
+            owner = null;
+            ResultSet resultSet = physical.getResultSet();
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            physical.clearParameters();
+            physical.clearBatch();
+        }
+
+        /**
+         * Closes the physical statement
+         */
+        private void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.out.println("Error closing cached statement " + e.getMessage());
+            }
+        }
+    }
+}
@@ -3,15 +3,29 @@ package home.appointments;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Class that represents a customer's scheduled appointment
  */
 public class Appointment
 {
-    private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private String startDateString;
-    private String endDateString;
+    /** Field bits used to track which columns were changed, in the order of the update columns */
+    public static final int TITLE = 1;
+    public static final int DESCRIPTION = 1 << 1;
+    public static final int LOCATION = 1 << 2;
+    public static final int TYPE = 1 << 3;
+    public static final int START = 1 << 4;
+    public static final int END = 1 << 5;
+    public static final int CUSTOMER = 1 << 6;
+    public static final int USER = 1 << 7;
+    public static final int CONTACT = 1 << 8;
+    public static final int LAST_UPDATE = 1 << 9;
+    public static final int LAST_UPDATED_BY = 1 << 10;
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private int id;
     private String title;
@@ -29,6 +43,7 @@ public class Appointment
     private String createdBy;
     private ZonedDateTime lastUpdate;
     private String lastUpdatedBy;
+    private int dirtyFields = 0;
 
     /**
      * Constructor to create a customer's appointment
@@ -67,8 +82,6 @@ public class Appointment
         this.userId = user.getId();
         this.contact = contact;
         this.contactName = contact.getName();
-        this.endDateString = getEndDateString();
-        this.startDateString = getStartDateString();
     }
 
     /**
@@ -104,6 +117,9 @@ public class Appointment
      */
     public void setTitle(final String title)
     {
+        if (!Objects.equals(this.title, title)) {
+            dirtyFields |= TITLE;
+        }
         this.title = title;
     }
 
@@ -122,6 +138,9 @@ public class Appointment
      */
     public void setDescription(final String description)
     {
+        if (!Objects.equals(this.description, description)) {
+            dirtyFields |= DESCRIPTION;
+        }
         this.description = description;
     }
 
@@ -140,6 +159,9 @@ public class Appointment
      */
     public void setLocationAppointment(final String locationAppointment)
     {
+        if (!Objects.equals(this.locationAppointment, locationAppointment)) {
+            dirtyFields |= LOCATION;
+        }
         this.locationAppointment = locationAppointment;
     }
 
@@ -158,6 +180,9 @@ public class Appointment
      */
     public void setType(final String type)
     {
+        if (!Objects.equals(this.type, type)) {
+            dirtyFields |= TYPE;
+        }
         this.type = type;
     }
 
@@ -176,6 +201,9 @@ public class Appointment
      */
     public void setStartDate(final ZonedDateTime startDate)
     {
+        if (!isSameInstant(this.startDate, startDate)) {
+            dirtyFields |= START;
+        }
         this.startDate = startDate;
     }
 
@@ -194,6 +222,9 @@ public class Appointment
      */
     public void setEndDate(final ZonedDateTime endDate)
     {
+        if (!isSameInstant(this.endDate, endDate)) {
+            dirtyFields |= END;
+        }
         this.endDate = endDate;
     }
 
@@ -212,6 +243,9 @@ public class Appointment
      */
     public void setCustomerId(final int customerId)
     {
+        if (this.customerId != customerId) {
+            dirtyFields |= CUSTOMER;
+        }
         this.customerId = customerId;
     }
 
@@ -230,6 +264,9 @@ public class Appointment
      */
     public void setUserId(final int userId)
     {
+        if (this.userId != userId) {
+            dirtyFields |= USER;
+        }
         this.userId = userId;
     }
 
@@ -259,12 +296,24 @@ public class Appointment
         return this.user;
     }
 
+    /**
+     * modifies the user for the appointment and the user id with it
+     * @param user user for the appointment
+     */
+    public void setUser(final User user) {
+        this.user = user;
+        setUserId(user.getId());
+    }
+
     /**
      * modifies the contact for the appointment
      * @param contact
      */
     public void setContact(final Contact contact)
     {
+        if (this.contact == null || contact == null || this.contact.getId() != contact.getId()) {
+            dirtyFields |= CONTACT;
+        }
         this.contact = contact;
     }
 
@@ -337,6 +386,9 @@ public class Appointment
      */
     public void setLastUpdate(final ZonedDateTime lastUpdate)
     {
+        if (!isSameInstant(this.lastUpdate, lastUpdate)) {
+            dirtyFields |= LAST_UPDATE;
+        }
         this.lastUpdate = lastUpdate;
     }
 
@@ -355,9 +407,28 @@ public class Appointment
      */
     public void setLastUpdatedBy(final String lastUpdatedBy)
     {
+        if (!Objects.equals(this.lastUpdatedBy, lastUpdatedBy)) {
+            dirtyFields |= LAST_UPDATED_BY;
+        }
         this.lastUpdatedBy = lastUpdatedBy;
     }
 
+    /**
+     * Method to copy a list of appointments, so the copies can be shown without changing the originals
+     * @param appointments list of appointments to copy
+     * @return list of copied appointments
+     */
+    public static List<Appointment> copyAll(List<Appointment> appointments) {
+        List<Appointment> appointmentList = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            Appointment appointmentCopy = new Appointment(appointment.getId(), appointment.getTitle(), appointment.getDescription(),
+                appointment.getLocationAppointment(), appointment.getType(), appointment.getStartDate(), appointment.getEndDate(),
+                appointment.getCustomerId(), appointment.getContact(), appointment.getUser());
+            appointmentList.add(appointmentCopy);
+        }
+        return appointmentList;
+    }
+
     /**
      * Method to check if appointment is within business hours EST 8am - 10pm
      * @param newAppointment appointment to be checked
@@ -375,4 +446,60 @@ public class Appointment
         }
         return startLocalTime.getHour() >= 8 && startLocalTime.getHour() <= 22 && endLocalTime.getHour() >=8 && endLocalTime.getHour() <= 22;
     }
+
+    /**
+     * Retrieves the fields changed since the appointment was loaded or last saved, as a combination of the field bits
+     * @return changed fields, 0 when the appointment has no unsaved change
+     */
+    public int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    /**
+     * Marks fields as changed so they are written by the next update
+     * @param fields field bits to mark
+     */
+    public void markDirty(final int fields) {
+        dirtyFields |= fields;
+    }
+
+    /**
+     * Marks fields as saved, called once they are written to the database
+     * @param fields field bits that were written
+     */
+    public void clearDirtyFields(final int fields) {
+        dirtyFields &= ~fields;
+    }
+
+    /**
+     * Replaces the changed fields with the fields whose values differ from a previous version of this appointment
+     * Used when an edit builds a new appointment object instead of calling the setters of the stored one
+     * @param previous appointment as it was before the edit
+     */
+    public void trackChangesFrom(final Appointment previous) {
+        int fields = 0;
+        fields |= Objects.equals(title, previous.title) ? 0 : TITLE;
+        fields |= Objects.equals(description, previous.description) ? 0 : DESCRIPTION;
+        fields |= Objects.equals(locationAppointment, previous.locationAppointment) ? 0 : LOCATION;
+        fields |= Objects.equals(type, previous.type) ? 0 : TYPE;
+        fields |= isSameInstant(startDate, previous.startDate) ? 0 : START;
+        fields |= isSameInstant(endDate, previous.endDate) ? 0 : END;
+        fields |= customerId == previous.customerId ? 0 : CUSTOMER;
+        fields |= userId == previous.userId ? 0 : USER;
+        fields |= contact != null && previous.contact != null && contact.getId() == previous.contact.getId() ? 0 : CONTACT;
+        fields |= isSameInstant(lastUpdate, previous.lastUpdate) ? 0 : LAST_UPDATE;
+        fields |= Objects.equals(lastUpdatedBy, previous.lastUpdatedBy) ? 0 : LAST_UPDATED_BY;
+        dirtyFields = fields;
+    }
+
+    /**
+     * Helper method to check if two dates are the same instant to the second, the precision the database stores,
+     * whatever their time zones
+     * @param first first date, may be null
+     * @param second second date, may be null
+     * @return true if both are null or the same second otherwise false
+     */
+    private static boolean isSameInstant(ZonedDateTime first, ZonedDateTime second) {
+        return first == null ? second == null : second != null && first.toEpochSecond() == second.toEpochSecond();
+    }
 }
@@ -6,16 +6,13 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.time.temporal.WeekFields;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import home.customer.Customer;
 import home.customer.DataManager;
+import home.metrics.MetricRegistry;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -67,7 +64,8 @@ public class AppointmentController
     private ToggleGroup filterToggleGroup;
 
     private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private static List<Appointment> appointments = new ArrayList<>();
+    private final AppointmentValidator validator = new AppointmentValidator();
+    private static Customer customer = null;
     public static Stage stage = new Stage();
     private static Appointment appointment = null;
     private static boolean isShowingAppointments = false;
@@ -75,17 +73,17 @@ public class AppointmentController
     private static List<String> contacts = DataManager.getInstance().contacts.stream().map(c -> c.getName()).collect(Collectors.toList());
 
     /**
-     * Displays on the stage the appointments
-     * @param appointments list of appointments to show
+     * Displays on the stage the appointments of a customer
+     * @param customer customer whose appointments are shown
      * @throws IOException
      */
-    public void showAppointments(List<Appointment> appointments) throws IOException
+    public void showAppointments(Customer customer) throws IOException
     {
         isShowingAppointments = true;
-        this.appointments = appointments;
+        this.customer = customer;
         FXMLLoader fxmlLoader = new FXMLLoader();
         fxmlLoader.setLocation(getClass().getResource("/resources/views/appointments-view.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 1000, 400);
+        Scene scene = new Scene(MetricRegistry.getInstance().time("fxml.load.appointments-view", fxmlLoader::load), 1000, 400);
         this.stage.setTitle("Appointments");
         this.stage.setScene(scene);
 
@@ -100,22 +98,20 @@ public class AppointmentController
     @FXML
     public void initialize() {
         if (isShowingAppointments) {
-            List<Appointment> appointmentsToShow = cloneAppointmentsList(appointments);
+            List<Appointment> appointmentsToShow = Appointment.copyAll(customer.getAppointments());
             appointmentTable.setItems(FXCollections.observableList(appointmentsToShow));
             // add a change listener
 
             filterToggleGroup.selectedToggleProperty().addListener((ob, o, n) -> {
                 RadioButton rb = (RadioButton)filterToggleGroup.getSelectedToggle();
                 if (rb.getId().equals("filterWeek")) {
-                    List<Appointment> appointmentsNoFilter = cloneAppointmentsList(appointments);
-                    List<Appointment> appointmentsByCurrentWeek = filterByCurrentWeek(appointmentsNoFilter);
+                    List<Appointment> appointmentsByCurrentWeek = Appointment.copyAll(filterByCurrentWeek());
                     appointmentTable.setItems(FXCollections.observableList(appointmentsByCurrentWeek));
                 } else if (rb.getId().equals("filterMonth")) {
-                    List<Appointment> appointmentsNoFilter = cloneAppointmentsList(appointments);
-                    List<Appointment> appointmentsByCurrentMonth = filterByCurrentMonth(appointmentsNoFilter);
+                    List<Appointment> appointmentsByCurrentMonth = Appointment.copyAll(filterByCurrentMonth());
                     appointmentTable.setItems(FXCollections.observableList(appointmentsByCurrentMonth));
                 } else {
-                    List<Appointment> appointmentsNoFilter = cloneAppointmentsList(appointments);
+                    List<Appointment> appointmentsNoFilter = Appointment.copyAll(customer.getAppointments());
                     appointmentTable.setItems(FXCollections.observableList(appointmentsNoFilter));
                 }
             });
@@ -159,7 +155,7 @@ public class AppointmentController
         isAddingAppointment = true;
         FXMLLoader fxmlLoader = new FXMLLoader();
         fxmlLoader.setLocation(getClass().getResource("/resources/views/modify-appointment.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 600, 600);
+        Scene scene = new Scene(MetricRegistry.getInstance().time("fxml.load.modify-appointment", fxmlLoader::load), 600, 600);
         Stage stage = new Stage();
         stage.setTitle("Add Appointment");
         stage.setScene(scene);
@@ -184,7 +180,7 @@ public class AppointmentController
         } else {
             FXMLLoader fxmlLoader = new FXMLLoader();
             fxmlLoader.setLocation(getClass().getResource("/resources/views/modify-appointment.fxml"));
-            Scene scene = new Scene(fxmlLoader.load(), 600, 600);
+            Scene scene = new Scene(MetricRegistry.getInstance().time("fxml.load.modify-appointment", fxmlLoader::load), 600, 600);
             Stage stage = new Stage();
             stage.setTitle("Edit Appointment");
             stage.setScene(scene);
@@ -221,16 +217,15 @@ public class AppointmentController
     /**
      * Method that handles the logic to execute when the button to confirm action is pressed
      * Lambda expression is used in this method to find the contact specified on UI form from the list of contacts based on name
-     * Lambda expression is used in this method to find the user specified on UI form from the list of users based on id
      * @throws IOException
      */
     @FXML
     public void onConfirm() throws IOException {
         if (isAddingAppointment) {
             Optional<Contact> contact = DataManager.getInstance().contacts.stream().filter(c -> c.getName().equals(contactList.getSelectionModel().getSelectedItem())).findFirst();
-            Optional<User> user = DataManager.getInstance().users.stream().filter(u -> u.getId() == Integer.parseInt(this.userId.getText().trim())).findFirst();
+            User user = DataManager.getInstance().getUserById(Integer.parseInt(this.userId.getText().trim()));
 
-            if (!user.isPresent()) {
+            if (user == null) {
                 Alert errorAlert = new Alert(Alert.AlertType.ERROR);
                 errorAlert.setTitle("Error");
                 errorAlert.setHeaderText("Non Existing User");
@@ -247,20 +242,20 @@ public class AppointmentController
 
             Appointment appointment = new Appointment(0, this.title.getText().trim(), this.description.getText().trim(),
                 this.locationAppointment.getText().trim(), this.type.getText().trim(), startDateZoned, endDateZoned,
-                Integer.parseInt(this.customerId.getText().trim()), contact.get(), user.get());
+                Integer.parseInt(this.customerId.getText().trim()), contact.get(), user);
             Customer customer = DataManager.getInstance().getCustomerById(Integer.parseInt(this.customerId.getText().trim()));
 
             if (fieldsValid(appointment, customer)) {
                 customer.addAppointment(appointment);
-                showAppointments(customer.getAppointments());
+                showAppointments(customer);
                 Stage stage = (Stage) confirmButton.getScene().getWindow();
                 stage.close();
             }
         } else {
             Optional<Contact> contact = DataManager.getInstance().contacts.stream().filter(c -> c.getName().equals(contactList.getSelectionModel().getSelectedItem())).findFirst();
-            Optional<User> user = DataManager.getInstance().users.stream().filter(u -> u.getId() == Integer.parseInt(this.userId.getText().trim())).findFirst();
+            User user = DataManager.getInstance().getUserById(Integer.parseInt(this.userId.getText().trim()));
 
-            if (!user.isPresent()) {
+            if (user == null) {
                 Alert errorAlert = new Alert(Alert.AlertType.ERROR);
                 errorAlert.setTitle("Error");
                 errorAlert.setHeaderText("Non Existing User");
@@ -277,17 +272,16 @@ public class AppointmentController
             int id  = Integer.parseInt(this.idTextField.getText().trim());
             Appointment appointment = new Appointment( id, this.title.getText().trim(), this.description.getText().trim(),
                 this.locationAppointment.getText().trim(), this.type.getText().trim(), startDateZoned ,
-                endDateZoned, Integer.parseInt(this.customerId.getText().trim()), contact.get(), user.get());
+                endDateZoned, Integer.parseInt(this.customerId.getText().trim()), contact.get(), user);
             Customer customer = DataManager.getInstance().getCustomerById(Integer.parseInt(this.customerId.getText().trim()));
-            Appointment existingAppointment = DataManager.getInstance().appointments.stream().filter(a -> a.getId() == id)
-                    .findFirst().get();
+            Appointment existingAppointment = DataManager.getInstance().getAppointmentById(id);
             if (fieldsValid(appointment, customer)) {
                 appointment.setCreateDate(existingAppointment.getCreateDate());
                 appointment.setCreatedBy(existingAppointment.getCreatedBy());
                 appointment.setLastUpdate(existingAppointment.getLastUpdate());
                 appointment.setLastUpdatedBy(existingAppointment.getLastUpdatedBy());
                 customer.editAppointment(appointment);
-                showAppointments(customer.getAppointments());
+                showAppointments(customer);
                 Stage stage = (Stage) confirmButton.getScene().getWindow();
                 stage.close();
             }
@@ -296,126 +290,43 @@ public class AppointmentController
 
     /**
      * Helper method that checks if fields on UI are valid
+     * The rules are held by the appointment validator, problems are shown in an alert
      * @return true if valid otherwise false
      */
     private boolean fieldsValid(Appointment appointment, Customer customer) {
-        String title = this.title.getText().trim();
-        String description = this.description.getText().trim();
-        String location = this.locationAppointment.getText().trim();
         String contact = contactList.getSelectionModel().getSelectedItem();
-        String type = this.type.getText().trim();
-        String startTime = this.startTime.getText().trim();
-        String endTime = this.endTime.getText().trim();
-        String customerId = this.customerId.getText().trim();
-        String userId = this.userId.getText().trim();
-
-        if (title.isEmpty() || description.isEmpty() || location.isEmpty() || contact.isEmpty() || type.isEmpty()
-            || startTime.isEmpty() || endTime.isEmpty() || customerId.isEmpty() || userId.isEmpty() ) {
-            Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-            errorAlert.setTitle("Error");
-            errorAlert.setHeaderText("Missing Fields");
-            errorAlert.setContentText("Please provide value for all fields");
-            errorAlert.showAndWait();
-        } else if(!isDateValid(startTime) || !isDateValid(endTime)) {
-            Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-            errorAlert.setTitle("Error");
-            errorAlert.setHeaderText("Incorrect Fields");
-            errorAlert.setContentText("Please provide valid value for dates");
-            errorAlert.showAndWait();
-        } else if (DataManager.getInstance().getCustomerById(Integer.parseInt(customerId)) == null) {
+        AppointmentValidator.Problem problem = validator.checkFields(this.title.getText(), this.description.getText(),
+            this.locationAppointment.getText(), contact, this.type.getText(), this.startTime.getText(),
+            this.endTime.getText(), this.customerId.getText(), this.userId.getText());
+        if (problem == null) {
+            problem = validator.checkSchedule(appointment, customer);
+        }
+        if (problem != null) {
             Alert errorAlert = new Alert(Alert.AlertType.ERROR);
             errorAlert.setTitle("Error");
-            errorAlert.setHeaderText("Non Existing Customer");
-            errorAlert.setContentText("Please provide a valid customer id");
+            errorAlert.setHeaderText(problem.getHeader());
+            errorAlert.setContentText(problem.getMessage());
             errorAlert.showAndWait();
-        } else {
-            ZonedDateTime start = appointment.getStartDate();
-            ZonedDateTime end = appointment.getEndDate();
-            if (start.isAfter(end)) {
-                Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                errorAlert.setTitle("Error");
-                errorAlert.setHeaderText("Incorrect Dates");
-                errorAlert.setContentText("Start Date of appointment needs to be before End Date");
-                errorAlert.showAndWait();
-            } else {
-                if (!appointment.isAppointmentWithinBusinessHours(appointment)) {
-                    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                    errorAlert.setTitle("Error");
-                    errorAlert.setHeaderText("Incorrect Dates");
-                    errorAlert.setContentText("Appointment is not scheduled within business hours of 8am to 10pm EST time");
-                    errorAlert.showAndWait();
-                } else {
-                    if (customer.isAppointmentOverlapping(appointment, customer.getAppointments())) {
-                        Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                        errorAlert.setTitle("Error");
-                        errorAlert.setHeaderText("Incorrect Dates");
-                        errorAlert.setContentText("Appointment is overlapping with current existing appointments. Please correct");
-                        errorAlert.showAndWait();
-                    } else {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Helper method that verifies if a string date is valid
-     * @param date string date to verify
-     * @return true if valid otherwise false
-     */
-    private boolean isDateValid(String date) {
-        try {
-            this.formatter.parse(date);
-        } catch (DateTimeParseException e) {
             return false;
         }
         return true;
     }
 
     /**
-     * Helper method to deep clone a list of appointments
-     * @param appointments list of appointments to copy
-     * @return list of appointments
-     */
-    private List<Appointment> cloneAppointmentsList(List<Appointment> appointments) {
-        List<Appointment> appointmentList = new ArrayList<>();
-
-        for(Appointment appointment : appointments) {
-            Appointment appointmentCopy = new Appointment(appointment.getId(), appointment.getTitle(), appointment.getDescription(),
-                appointment.getLocationAppointment(), appointment.getType(), appointment.getStartDate(), appointment.getEndDate(),
-                appointment.getCustomerId(), appointment.getContact(), appointment.getUser());
-            appointmentList.add(appointmentCopy);
-        }
-        return appointmentList;
-    }
-
-    /**
-     * Helper method to filter a list of appointments by current week
-     * Lambda expression is used in this method to filter appointments by current week
-     * @param appointments appointments to filter
-     * @return filtered list of appointments
+     * Helper method to retrieve the customer's appointments of the current week
+     * The week starts on the first day of week of the default locale
+     * @return list of appointments starting this week
      */
-    private List<Appointment> filterByCurrentWeek(List<Appointment> appointments) {
-        LocalDate date = LocalDate.now();
-        int weekOfYear = date.get(WeekFields.of(Locale.getDefault()).weekOfYear());
-        List<Appointment> filteredList = appointments.stream().filter(a -> a.getStartDate()
-            .get(WeekFields.of(Locale.getDefault()).weekOfYear()) == weekOfYear).collect(Collectors.toList());
-        return filteredList;
+    private List<Appointment> filterByCurrentWeek() {
+        return DataManager.getInstance().appointmentsOfWeek(LocalDate.now(), customer.getId());
     }
 
     /**
-     * Helper method to filter a list of appointments by current month
-     * Lambda expression is used in this method to filter appointments by current month
-     * @param appointments appointments to filter
-     * @return filtered list of appointments
+     * Helper method to retrieve the customer's appointments of the current month
+     * @return list of appointments starting this month
      */
-    private List<Appointment> filterByCurrentMonth(List<Appointment> appointments) {
-        LocalDate date = LocalDate.now();
-        List<Appointment> filteredList = appointments.stream().filter(a -> a.getStartDate().getMonthValue() == date.getMonthValue())
-            .collect(Collectors.toList());
-        return filteredList;
+    private List<Appointment> filterByCurrentMonth() {
+        return DataManager.getInstance().appointmentsOfMonth(LocalDate.now(), customer.getId());
     }
 
 }
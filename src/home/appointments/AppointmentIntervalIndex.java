@@ -0,0 +1,207 @@
+package home.appointments;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * Class that keeps appointments ordered by their start time so time range and overlap queries
+ * only visit the appointments near the range being checked.
+ * Start and end times are stored as epoch seconds in parallel arrays so queries do not allocate.
+ */
+public class AppointmentIntervalIndex
+{
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] starts;
+    private long[] ends;
+    private Appointment[] appointments;
+    private int size = 0;
+    private long maxDuration = 0;
+
+    /**
+     * Constructor to create an empty index
+     */
+    public AppointmentIntervalIndex() {
+        starts = new long[MIN_CAPACITY];
+        ends = new long[MIN_CAPACITY];
+        appointments = new Appointment[MIN_CAPACITY];
+    }
+
+    /**
+     * Constructor to create an index holding the given appointments
+     * @param initialAppointments appointments to index
+     */
+    public AppointmentIntervalIndex(final Collection<Appointment> initialAppointments) {
+        replaceAll(initialAppointments);
+    }
+
+    /**
+     * Replaces the content of the index with the given appointments
+     * @param newAppointments appointments to index
+     */
+    public void replaceAll(Collection<Appointment> newAppointments) {
+        Appointment[] sorted = newAppointments.toArray(new Appointment[0]);
+        Arrays.sort(sorted, Comparator.comparingLong(a -> a.getStartDate().toEpochSecond()));
+        int capacity = Math.max(MIN_CAPACITY, sorted.length);
+        starts = new long[capacity];
+        ends = new long[capacity];
+        appointments = Arrays.copyOf(sorted, capacity);
+        size = sorted.length;
+        maxDuration = 0;
+        for (int i = 0; i < size; i++) {
+            starts[i] = sorted[i].getStartDate().toEpochSecond();
+            ends[i] = sorted[i].getEndDate().toEpochSecond();
+            maxDuration = Math.max(maxDuration, ends[i] - starts[i]);
+        }
+    }
+
+    /**
+     * Adds an appointment to the index
+     * @param appointment appointment to add
+     */
+    public void add(Appointment appointment) {
+        long start = appointment.getStartDate().toEpochSecond();
+        long end = appointment.getEndDate().toEpochSecond();
+        if (size == starts.length) {
+            int capacity = size << 1;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            appointments = Arrays.copyOf(appointments, capacity);
+        }
+        int position = firstStartAfter(start);
+        int moved = size - position;
+        if (moved > 0) {
+            System.arraycopy(starts, position, starts, position + 1, moved);
+            System.arraycopy(ends, position, ends, position + 1, moved);
+            System.arraycopy(appointments, position, appointments, position + 1, moved);
+        }
+        starts[position] = start;
+        ends[position] = end;
+        appointments[position] = appointment;
+        size++;
+        maxDuration = Math.max(maxDuration, end - start);
+    }
+
+    /**
+     * Removes an appointment from the index, matching it by id
+     * @param appointment appointment to remove
+     * @return true if an appointment was removed otherwise false
+     */
+    public boolean remove(Appointment appointment) {
+        int id = appointment.getId();
+        long start = appointment.getStartDate().toEpochSecond();
+        int position = firstStartAtOrAfter(start);
+        while (position < size && starts[position] == start && appointments[position].getId() != id) {
+            position++;
+        }
+        if (position >= size || starts[position] != start) {
+            // the stored copy may have a different start time, fall back to a scan by id
+            position = 0;
+            while (position < size && appointments[position].getId() != id) {
+                position++;
+            }
+            if (position == size) {
+                return false;
+            }
+        }
+        int moved = size - position - 1;
+        if (moved > 0) {
+            System.arraycopy(starts, position + 1, starts, position, moved);
+            System.arraycopy(ends, position + 1, ends, position, moved);
+            System.arraycopy(appointments, position + 1, appointments, position, moved);
+        }
+        size--;
+        appointments[size] = null;
+        return true;
+    }
+
+    /**
+     * Checks if any indexed appointment overlaps the given time range
+     * (StartA &lt; EndB) and (EndA &gt; StartB) is used to check for overlaps
+     * @param start start of the range in epoch seconds
+     * @param end end of the range in epoch seconds
+     * @param ignoredId id of an appointment to leave out of the check, such as the appointment being edited
+     * @return true if an appointment overlaps otherwise false
+     */
+    public boolean overlaps(long start, long end, int ignoredId) {
+        // appointments starting more than the longest duration before the range cannot reach into it
+        for (int i = firstStartAfter(start - maxDuration - 1); i < size && starts[i] < end; i++) {
+            if (ends[i] > start && appointments[i].getId() != ignoredId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs an action for every appointment starting inside a time range, in start time order
+     * @param from start of the range in epoch seconds, inclusive
+     * @param to end of the range in epoch seconds, exclusive
+     * @param action action to run for each appointment
+     */
+    public void forEachStartingBetween(long from, long to, Consumer<Appointment> action) {
+        for (int i = firstStartAtOrAfter(from); i < size && starts[i] < to; i++) {
+            action.accept(appointments[i]);
+        }
+    }
+
+    /**
+     * Retrieves the appointment at a position in start time order
+     * @param position position of the appointment, from 0 to size() - 1
+     * @return the appointment at the position
+     */
+    public Appointment get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of " + size);
+        }
+        return appointments[position];
+    }
+
+    /**
+     * Retrieves the number of appointments in the index
+     * @return number of appointments
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Helper method to find the first position whose start is at or after a time
+     * @param time epoch seconds
+     * @return position in the arrays
+     */
+    private int firstStartAtOrAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Helper method to find the first position whose start is after a time
+     * @param time epoch seconds
+     * @return position in the arrays
+     */
+    private int firstStartAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
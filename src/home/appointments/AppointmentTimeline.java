@@ -0,0 +1,112 @@
+package home.appointments;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import home.customer.IntIndex;
+
+/**
+ * Class that keeps every loaded appointment ordered by start time, for the range queries of the whole schedule.
+ * Appointments are held in a tree keyed by the start time and id they were added with, and an id index gives
+ * that key back, so adding, replacing and removing one appointment takes logarithmic time whatever the
+ * number of appointments, and the stored copy is found even when the appointment passed in has a new start time.
+ * The per customer and per contact lists stay in the array based AppointmentIntervalIndex, which is faster for
+ * the few appointments they hold.
+ */
+public class AppointmentTimeline
+{
+    private final TreeMap<Key, Appointment> byStart = new TreeMap<>();
+    private final IntIndex<Key> keysById = new IntIndex<>();
+
+    /**
+     * Replaces the content of the timeline with the given appointments
+     * @param newAppointments appointments to keep
+     */
+    public void replaceAll(Collection<Appointment> newAppointments) {
+        byStart.clear();
+        keysById.clear();
+        for (Appointment appointment : newAppointments) {
+            add(appointment);
+        }
+    }
+
+    /**
+     * Adds an appointment, replacing the appointment with the same id if there is one
+     * @param appointment appointment to add
+     */
+    public void add(Appointment appointment) {
+        Key key = new Key(appointment.getStartDate().toEpochSecond(), appointment.getId());
+        Key previous = keysById.put(appointment.getId(), key);
+        if (previous != null) {
+            byStart.remove(previous);
+        }
+        byStart.put(key, appointment);
+    }
+
+    /**
+     * Removes an appointment, matching it by id
+     * @param appointment appointment to remove
+     * @return true if an appointment was removed otherwise false
+     */
+    public boolean remove(Appointment appointment) {
+        Key key = keysById.remove(appointment.getId());
+        return key != null && byStart.remove(key) != null;
+    }
+
+    /**
+     * Runs an action for every appointment starting inside a time range, in start time order
+     * @param from start of the range in epoch seconds, inclusive
+     * @param to end of the range in epoch seconds, exclusive
+     * @param action action to run for each appointment
+     */
+    public void forEachStartingBetween(long from, long to, Consumer<Appointment> action) {
+        if (from >= to) {
+            return;
+        }
+        for (Map.Entry<Key, Appointment> entry
+            : byStart.subMap(new Key(from, Integer.MIN_VALUE), true, new Key(to, Integer.MIN_VALUE), false).entrySet()) {
+            action.accept(entry.getValue());
+        }
+    }
+
+    /**
+     * Retrieves the number of appointments in the timeline
+     * @return number of appointments
+     */
+    public int size() {
+        return byStart.size();
+    }
+
+    /**
+     * Class that holds the start time and id an appointment was added with, appointments with the same start
+     * are ordered by id
+     */
+    private static final class Key implements Comparable<Key>
+    {
+        private final long start;
+        private final int id;
+
+        private Key(final long start, final int id) {
+            this.start = start;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byStartTime = Long.compare(start, other.start);
+            return byStartTime != 0 ? byStartTime : Integer.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && compareTo((Key) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(start) * 31 + id;
+        }
+    }
+}
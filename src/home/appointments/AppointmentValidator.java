@@ -0,0 +1,131 @@
+package home.appointments;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import home.customer.Customer;
+import home.customer.DataManager;
+
+/**
+ * Class that holds the rules an appointment must follow before it is saved.
+ * It does not depend on JavaFX so the same rules are used by the appointment form and by bulk imports.
+ * The checks only read data, so one validator can be used from several threads.
+ */
+public class AppointmentValidator
+{
+    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Checks that every field has a value, that the dates are valid and that the customer exists
+     * @param title title of the appointment
+     * @param description description of the appointment
+     * @param location location of the appointment
+     * @param contact contact name of the appointment
+     * @param type type of the appointment
+     * @param startTime start date as yyyy-MM-dd HH:mm:ss
+     * @param endTime end date as yyyy-MM-dd HH:mm:ss
+     * @param customerId customer id of the appointment
+     * @param userId user id of the appointment
+     * @return the first problem found otherwise null
+     */
+    public Problem checkFields(String title, String description, String location, String contact, String type,
+        String startTime, String endTime, String customerId, String userId)
+    {
+        if (isBlank(title) || isBlank(description) || isBlank(location) || isBlank(contact) || isBlank(type)
+            || isBlank(startTime) || isBlank(endTime) || isBlank(customerId) || isBlank(userId)) {
+            return new Problem("Missing Fields", "Please provide value for all fields");
+        }
+        if (!isDateValid(startTime) || !isDateValid(endTime)) {
+            return new Problem("Incorrect Fields", "Please provide valid value for dates");
+        }
+        try {
+            if (DataManager.getInstance().getCustomerById(Integer.parseInt(customerId)) == null) {
+                return new Problem("Non Existing Customer", "Please provide a valid customer id");
+            }
+        } catch (NumberFormatException e) {
+            return new Problem("Non Existing Customer", "Please provide a valid customer id");
+        }
+        return null;
+    }
+
+    /**
+     * Checks that the appointment ends after it starts, is within business hours and does not overlap
+     * the customer's existing appointments
+     * @param appointment appointment to check
+     * @param customer customer of the appointment
+     * @return the first problem found otherwise null
+     */
+    public Problem checkSchedule(Appointment appointment, Customer customer) {
+        ZonedDateTime start = appointment.getStartDate();
+        ZonedDateTime end = appointment.getEndDate();
+        if (start.isAfter(end)) {
+            return new Problem("Incorrect Dates", "Start Date of appointment needs to be before End Date");
+        }
+        if (!appointment.isAppointmentWithinBusinessHours(appointment)) {
+            return new Problem("Incorrect Dates", "Appointment is not scheduled within business hours of 8am to 10pm EST time");
+        }
+        if (customer.isAppointmentOverlapping(appointment, customer.getAppointments())) {
+            return new Problem("Incorrect Dates", "Appointment is overlapping with current existing appointments. Please correct");
+        }
+        return null;
+    }
+
+    /**
+     * Helper method that verifies if a string date is valid
+     * @param date string date to verify
+     * @return true if valid otherwise false
+     */
+    private boolean isDateValid(String date) {
+        try {
+            this.formatter.parse(date);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to check if a field has no value
+     * @param value value of the field
+     * @return true if the value is null or empty otherwise false
+     */
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * Class that describes why an appointment is not valid
+     */
+    public static class Problem
+    {
+        private final String header;
+        private final String message;
+
+        /**
+         * Constructor to create a validation problem
+         * @param header short title of the problem
+         * @param message explanation of the problem
+         */
+        public Problem(final String header, final String message) {
+            this.header = header;
+            this.message = message;
+        }
+
+        /**
+         * Retrieves the short title of the problem
+         * @return title of the problem
+         */
+        public String getHeader() {
+            return header;
+        }
+
+        /**
+         * Retrieves the explanation of the problem
+         * @return explanation of the problem
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
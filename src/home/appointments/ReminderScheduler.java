@@ -0,0 +1,223 @@
+package home.appointments;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import home.customer.IntIndex;
+
+/**
+ * Class that fires a reminder shortly before each appointment starts.
+ * Only the reminders due within a rolling horizon are armed as timers, the rest are picked up
+ * by a periodic refill that asks for the appointments starting in the next window.
+ * Timers wait on a delay queue so nothing runs between reminders.
+ * A reminder fires once per start time, editing an appointment only arms it again when its start changes.
+ */
+public class ReminderScheduler
+{
+    private final Duration leadTime;
+    private final Duration horizon;
+    private final BiFunction<ZonedDateTime, ZonedDateTime, List<Appointment>> appointmentsStartingBetween;
+    private final Consumer<Appointment> onReminder;
+    private final ScheduledThreadPoolExecutor executor;
+    private final IntIndex<Reminder> pendingReminders = new IntIndex<>();
+    // start of each appointment whose reminder already fired, until that start has passed
+    private final IntIndex<ZonedDateTime> firedReminders = new IntIndex<>();
+    private ZonedDateTime armedUntil;
+
+    /**
+     * Constructor to create a reminder scheduler
+     * @param leadTime how long before an appointment starts its reminder fires
+     * @param horizon how far ahead reminders are armed as timers
+     * @param appointmentsStartingBetween range query used to find the appointments of the next window
+     * @param onReminder action to run when a reminder fires, called on the scheduler thread
+     */
+    public ReminderScheduler(
+        final Duration leadTime,
+        final Duration horizon,
+        final BiFunction<ZonedDateTime, ZonedDateTime, List<Appointment>> appointmentsStartingBetween,
+        final Consumer<Appointment> onReminder)
+    {
+        this.leadTime = leadTime;
+        this.horizon = horizon;
+        this.appointmentsStartingBetween = appointmentsStartingBetween;
+        this.onReminder = onReminder;
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "appointment-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Arms the reminders of the first window and starts the periodic refill
+     */
+    public void start() {
+        long refillMillis = horizon.toMillis() / 2;
+        executor.scheduleAtFixedRate(this::refill, 0, refillMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the scheduler and drops every pending reminder
+     */
+    public void stop() {
+        executor.shutdownNow();
+        synchronized (this) {
+            pendingReminders.clear();
+            firedReminders.clear();
+        }
+    }
+
+    /**
+     * Registers the reminder of a new or edited appointment, replacing any reminder it had before
+     * When the start did not change the armed reminder is kept and a reminder that already fired is not repeated
+     * @param appointment appointment that was added or edited
+     */
+    public synchronized void appointmentChanged(Appointment appointment) {
+        Reminder pending = pendingReminders.get(appointment.getId());
+        if (pending != null && isSameStart(pending.appointment.getStartDate(), appointment.getStartDate())) {
+            // the reminder fires at the same time, with the edited values
+            pending.appointment = appointment;
+            return;
+        }
+        if (isSameStart(firedReminders.get(appointment.getId()), appointment.getStartDate())) {
+            return;
+        }
+        cancel(appointment.getId());
+        firedReminders.remove(appointment.getId());
+        arm(appointment, ZonedDateTime.now());
+    }
+
+    /**
+     * Cancels the reminder of an appointment that was removed
+     * @param appointment appointment that was removed
+     */
+    public synchronized void appointmentRemoved(Appointment appointment) {
+        cancel(appointment.getId());
+        firedReminders.remove(appointment.getId());
+    }
+
+    /**
+     * Retrieves the number of reminders currently armed
+     * @return number of armed reminders
+     */
+    public synchronized int getPendingCount() {
+        return pendingReminders.size();
+    }
+
+    /**
+     * Helper method that runs one refill on the scheduler thread, errors are logged and the next refill still runs
+     */
+    private void refill() {
+        try {
+            refillWindow();
+        } catch (RuntimeException e) {
+            // an exception leaving a scheduled task would cancel every later refill
+            System.out.println("Error with arming appointment reminders " + e);
+        }
+    }
+
+    /**
+     * Helper method that arms the reminders of the appointments starting in the next window
+     */
+    private void refillWindow() {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime windowEnd = now.plus(horizon);
+        ZonedDateTime windowStart;
+        synchronized (this) {
+            windowStart = armedUntil != null && armedUntil.isAfter(now) ? armedUntil : now;
+        }
+        // only reminders entering the window are armed so reminders that already fired are not repeated
+        List<Appointment> upcoming = appointmentsStartingBetween.apply(windowStart.plus(leadTime), windowEnd.plus(leadTime));
+        synchronized (this) {
+            armedUntil = windowEnd;
+            for (Appointment appointment : upcoming) {
+                if (!pendingReminders.containsKey(appointment.getId()) && !firedReminders.containsKey(appointment.getId())) {
+                    arm(appointment, now);
+                }
+            }
+            List<Integer> started = new ArrayList<>();
+            firedReminders.forEachEntry((id, start) -> {
+                if (!start.isAfter(now)) {
+                    started.add(id);
+                }
+            });
+            started.forEach(firedReminders::remove);
+        }
+    }
+
+    /**
+     * Helper method that schedules the reminder of an appointment when it is due inside the armed window
+     * @param appointment appointment to remind of
+     * @param now current time
+     */
+    private void arm(Appointment appointment, ZonedDateTime now) {
+        ZonedDateTime start = appointment.getStartDate();
+        ZonedDateTime remindAt = start.minus(leadTime);
+        if (!start.isAfter(now) || armedUntil == null || remindAt.isAfter(armedUntil)) {
+            return;
+        }
+        long delayMillis = Math.max(0, Duration.between(now, remindAt).toMillis());
+        Reminder reminder = new Reminder(appointment);
+        reminder.future = executor.schedule(reminder, delayMillis, TimeUnit.MILLISECONDS);
+        pendingReminders.put(appointment.getId(), reminder);
+    }
+
+    /**
+     * Helper method to check if two start times are the same instant
+     * @param first first start, may be null
+     * @param second second start
+     * @return true if both are the same instant otherwise false
+     */
+    private static boolean isSameStart(ZonedDateTime first, ZonedDateTime second) {
+        return first != null && first.toInstant().equals(second.toInstant());
+    }
+
+    /**
+     * Helper method that cancels the pending reminder of an appointment
+     * @param id id of the appointment
+     */
+    private void cancel(int id) {
+        Reminder reminder = pendingReminders.remove(id);
+        if (reminder != null) {
+            reminder.future.cancel(false);
+        }
+    }
+
+    /**
+     * Class that represents one armed reminder
+     */
+    private class Reminder implements Runnable
+    {
+        private Appointment appointment;
+        private ScheduledFuture<?> future;
+
+        private Reminder(final Appointment appointment) {
+            this.appointment = appointment;
+        }
+
+        /**
+         * Runs the reminder action unless the reminder was replaced or cancelled meanwhile
+         */
+        @Override
+        public void run() {
+            Appointment remindedAppointment;
+            synchronized (ReminderScheduler.this) {
+                remindedAppointment = appointment;
+                if (pendingReminders.get(remindedAppointment.getId()) != this) {
+                    return;
+                }
+                pendingReminders.remove(remindedAppointment.getId());
+                firedReminders.put(remindedAppointment.getId(), remindedAppointment.getStartDate());
+            }
+            onReminder.accept(remindedAppointment);
+        }
+    }
+}
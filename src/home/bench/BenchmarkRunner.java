@@ -0,0 +1,197 @@
+package home.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that measures the time and the heap allocation of an operation.
+ * Each benchmark runs warmup iterations that are thrown away, so the JIT compiler has compiled the operation,
+ * then measurement iterations of a fixed duration. The time per operation is the average over the measurement
+ * iterations and the allocation per operation is read from the allocation counter of the running thread.
+ * Results of the operations are folded into a field so the JIT compiler cannot drop the work as unused.
+ */
+public class BenchmarkRunner
+{
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<Result> results = new ArrayList<>();
+    private long sink = 0;
+
+    /**
+     * Constructor to create a runner
+     * @param warmupIterations iterations run before measuring
+     * @param measurementIterations iterations measured
+     * @param iterationMillis duration of one iteration in milliseconds
+     */
+    public BenchmarkRunner(final int warmupIterations, final int measurementIterations, final long iterationMillis) {
+        this.warmupIterations = Math.max(0, warmupIterations);
+        this.measurementIterations = Math.max(1, measurementIterations);
+        this.iterationNanos = Math.max(1, iterationMillis) * 1_000_000;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    /**
+     * Runs a benchmark and prints its result
+     * @param name name of the benchmark
+     * @param size data size the benchmark runs against
+     * @param operation operation to measure
+     * @return the result
+     * @throws Exception if the operation fails
+     */
+    public Result run(String name, int size, Operation operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(operation);
+        }
+        long operations = 0;
+        long nanos = 0;
+        long allocatedBytes = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long allocatedBefore = allocatedBytes();
+            long[] iteration = runIteration(operation);
+            allocatedBytes += allocatedBytes() - allocatedBefore;
+            operations += iteration[0];
+            nanos += iteration[1];
+        }
+        Result result = new Result(name, size, operations, (double) nanos / operations,
+            allocatedBytes >= 0 ? (double) allocatedBytes / operations : Double.NaN);
+        results.add(result);
+        System.out.println(result.describe());
+        return result;
+    }
+
+    /**
+     * Retrieves the results of every benchmark run so far
+     * @return results, in the order the benchmarks ran
+     */
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Retrieves the value the operation results were folded into, printed so it stays in use
+     * @return folded results
+     */
+    public long getSink() {
+        return sink;
+    }
+
+    /**
+     * Helper method that runs the operation over and over for the duration of an iteration
+     * @param operation operation to run
+     * @return number of operations and nanoseconds they took
+     * @throws Exception if the operation fails
+     */
+    private long[] runIteration(Operation operation) throws Exception {
+        long operations = 0;
+        long started = System.nanoTime();
+        long elapsed;
+        do {
+            // the clock is read every few operations so fast operations are not dominated by nanoTime
+            for (int i = 0; i < 16; i++) {
+                sink += fold(operation.run());
+            }
+            operations += 16;
+            elapsed = System.nanoTime() - started;
+        } while (elapsed < iterationNanos);
+        return new long[] { operations, elapsed };
+    }
+
+    /**
+     * Helper method that reduces an operation result to a number without walking it
+     * Collections give their size and other objects their identity hash, so hashing a large result is not timed
+     * @param value result of the operation
+     * @return number folded into the sink
+     */
+    private static long fold(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        } else if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return value.hashCode();
+        }
+        return System.identityHashCode(value);
+    }
+
+    /**
+     * Helper method that reads how many bytes the current thread has allocated
+     * @return allocated bytes, -1 when the JVM does not count them
+     */
+    private long allocatedBytes() {
+        return threads.isThreadAllocatedMemoryEnabled() ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * Interface for the operation a benchmark measures
+     */
+    public interface Operation
+    {
+        /**
+         * Runs the operation once
+         * @return the result of the operation, consumed so the work is not optimized away
+         * @throws Exception if the operation fails
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * Class that holds the measurement of one benchmark
+     */
+    public static class Result
+    {
+        private final String name;
+        private final int size;
+        private final long operations;
+        private final double nanosPerOperation;
+        private final double bytesPerOperation;
+
+        private Result(final String name, final int size, final long operations, final double nanosPerOperation,
+            final double bytesPerOperation)
+        {
+            this.name = name;
+            this.size = size;
+            this.operations = operations;
+            this.nanosPerOperation = nanosPerOperation;
+            this.bytesPerOperation = bytesPerOperation;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public double getNanosPerOperation() {
+            return nanosPerOperation;
+        }
+
+        public double getBytesPerOperation() {
+            return bytesPerOperation;
+        }
+
+        /**
+         * Retrieves the result as one line of text
+         * @return result summary
+         */
+        public String describe() {
+            return String.format("%-56s size %9d  %14.1f ns/op  %12.1f B/op  (%d ops)", name, size, nanosPerOperation,
+                bytesPerOperation, operations);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package home.bench;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+
+import home.appointments.Appointment;
+import home.bulk.DataGenerator;
+import home.customer.Customer;
+import home.customer.DataManager;
+import home.customer.InMemoryRepository;
+import home.reports.ReportAggregates;
+import home.reports.ReportEngine;
+
+/**
+ * This is the command line entry point of the benchmarks of the scheduling core.
+ * Every size runs in its own JVM, so the data and the JIT profile of one size do not affect the next one.
+ * The data is generated with a fixed seed into the in-memory repository, so no database is needed and
+ * two runs measure the same records.
+ *
+ * Usage: SchedulingBenchmarks [sizes, comma separated number of customers]
+ * Options: -Dbench.warmup=3 -Dbench.iterations=5 -Dbench.iterationMillis=500 -Dbench.filter=name
+ * -Dbench.appointmentsPerCustomer=5
+ */
+public class SchedulingBenchmarks
+{
+    private static final long SEED = 1;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 6);
+
+    private final BenchmarkRunner runner;
+    private final String filter;
+
+    /**
+     * Constructor to create the benchmarks
+     * @param runner runner measuring each benchmark
+     * @param filter only benchmarks whose name contains it are run, null to run every benchmark
+     */
+    public SchedulingBenchmarks(final BenchmarkRunner runner, final String filter) {
+        this.runner = runner;
+        this.filter = filter;
+    }
+
+    /**
+     * Runs the benchmarks for each size and exits with status 1 if any of them fails
+     * @param args comma separated sizes, defaults to 1000,10000,100000
+     */
+    public static void main(String[] args) {
+        String[] sizes = (args.length > 0 ? args[0] : "1000,10000,100000").split(",");
+        int status = 0;
+        try {
+            if (sizes.length == 1) {
+                BenchmarkRunner runner = new BenchmarkRunner(Integer.getInteger("bench.warmup", 3),
+                    Integer.getInteger("bench.iterations", 5), Long.getLong("bench.iterationMillis", 500L));
+                new SchedulingBenchmarks(runner, System.getProperty("bench.filter")).run(Integer.parseInt(sizes[0].trim()),
+                    Integer.getInteger("bench.appointmentsPerCustomer", 5));
+                System.out.println("sink " + runner.getSink());
+            } else {
+                for (String size : sizes) {
+                    if (fork(size.trim()) != 0) {
+                        status = 1;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Error with running benchmarks " + e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Helper method that runs the benchmarks of one size in a new JVM with the same options as this one
+     * @param size number of customers
+     * @return exit status of the JVM
+     * @throws Exception if the JVM cannot be started
+     */
+    private static int fork(String size) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        Module module = SchedulingBenchmarks.class.getModule();
+        if (module.isNamed()) {
+            command.add("--module-path");
+            command.add(System.getProperty("jdk.module.path"));
+            command.add("-m");
+            command.add(module.getName() + "/" + SchedulingBenchmarks.class.getName());
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(SchedulingBenchmarks.class.getName());
+        }
+        command.add(size);
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+
+    /**
+     * Generates the data of a size and runs every benchmark against it
+     * @param size number of customers
+     * @param appointmentsPerCustomer number of appointments of each customer
+     * @throws Exception if the data cannot be generated or a benchmark fails
+     */
+    public void run(int size, int appointmentsPerCustomer) throws Exception {
+        DataManager dataManager = DataManager.getInstance();
+        InMemoryRepository repository = new InMemoryRepository();
+        repository.seedReferenceData();
+        dataManager.setRepository(repository);
+        new DataGenerator(SEED, FIRST_DAY, 10_000, 1000, "bench").generate(size, appointmentsPerCustomer);
+        dataManager.loadReferenceData();
+        dataManager.loadCustomers();
+        System.out.println("Benchmarking " + dataManager.customers.size() + " customers and "
+            + dataManager.appointments.size() + " appointments");
+
+        lookupBenchmarks(dataManager, size);
+        loadBenchmarks(dataManager, size);
+        scheduleBenchmarks(dataManager, size);
+        reportBenchmarks(dataManager, size);
+    }
+
+    /**
+     * Helper method that measures the id lookups
+     * @param dataManager data manager holding the data
+     * @param size size the benchmarks are reported under
+     * @throws Exception if a benchmark fails
+     */
+    private void lookupBenchmarks(DataManager dataManager, int size) throws Exception {
+        int[] customerIds = shuffledIds(dataManager.customers.size(), i -> dataManager.customers.get(i).getId());
+        int[] userIds = shuffledIds(dataManager.users.size(), i -> dataManager.users.get(i).getId());
+        int[] next = { 0 };
+        run("DataManager.getCustomerById", size,
+            () -> dataManager.getCustomerById(customerIds[next[0] = (next[0] + 1) % customerIds.length]));
+        run("DataManager.getUserById", size, () -> dataManager.getUserById(userIds[next[0] = (next[0] + 1) % userIds.length]));
+    }
+
+    /**
+     * Helper method that measures loading every customer from the in-memory repository, one operation reads all
+     * customers. The rows are copied from memory, so the time of mapping a JDBC result set is not included
+     * @param dataManager data manager holding the data
+     * @param size size the benchmarks are reported under
+     * @throws Exception if a benchmark fails
+     */
+    private void loadBenchmarks(DataManager dataManager, int size) throws Exception {
+        run("DataManager.loadCustomers in-memory", size, () -> {
+            int[] count = { 0 };
+            dataManager.loadCustomers(batch -> count[0] += batch.size(), 1000);
+            return count[0];
+        });
+    }
+
+    /**
+     * Helper method that measures the overlap and business hours checks, the list copy and the date filters
+     * The overlap checks run against one customer holding size appointments that do not overlap
+     * @param dataManager data manager holding the data
+     * @param size number of appointments of the checked customer
+     * @throws Exception if a benchmark fails
+     */
+    private void scheduleBenchmarks(DataManager dataManager, int size) throws Exception {
+        Appointment template = dataManager.appointments.get(0);
+        ZonedDateTime firstStart = FIRST_DAY.atTime(9, 0).atZone(ZoneId.of("America/New_York"));
+        List<Appointment> schedule = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ZonedDateTime start = firstStart.plusDays(i);
+            schedule.add(new Appointment(i + 1, "Benchmark", "Benchmark", "Online", "Review", start, start.plusHours(1),
+                1, template.getContact(), template.getUser()));
+        }
+        Customer customer = new Customer(1, "Benchmark", "Address", "00000", "000-000-0000", schedule, null);
+        List<Appointment> scheduleCopy = new ArrayList<>(schedule);
+        // the probe falls after every appointment, so the list check compares it with all of them
+        ZonedDateTime probeStart = firstStart.plusDays(size).plusHours(2);
+        Appointment probe = new Appointment(0, "Probe", "Probe", "Online", "Review", probeStart, probeStart.plusHours(1),
+            1, template.getContact(), template.getUser());
+        run("Customer.isAppointmentOverlapping list", size, () -> customer.isAppointmentOverlapping(probe, scheduleCopy));
+        run("Customer.isAppointmentOverlapping own index", size,
+            () -> customer.isAppointmentOverlapping(probe, customer.getAppointments()));
+
+        List<Appointment> appointments = dataManager.appointments;
+        int[] next = { 0 };
+        run("Appointment.isAppointmentWithinBusinessHours", size, () -> {
+            Appointment appointment = appointments.get(next[0] = (next[0] + 1) % appointments.size());
+            return appointment.isAppointmentWithinBusinessHours(appointment);
+        });
+
+        Customer generatedCustomer = dataManager.customers.get(0);
+        run("Appointment.copyAll customer appointments", size, () -> Appointment.copyAll(generatedCustomer.getAppointments()));
+        run("Appointment.copyAll " + size + " appointments", size, () -> Appointment.copyAll(schedule));
+        ZonedDateTime weekStart = FIRST_DAY.atStartOfDay(ZoneId.systemDefault());
+        run("DataManager.appointmentsStartingBetween week", size,
+            () -> dataManager.appointmentsStartingBetween(weekStart, weekStart.plusWeeks(1)));
+        // the filters of the appointments view, which copies what they return
+        run("DataManager.appointmentsOfWeek customer", size,
+            () -> Appointment.copyAll(dataManager.appointmentsOfWeek(FIRST_DAY, generatedCustomer.getId())));
+        run("DataManager.appointmentsOfMonth customer", size,
+            () -> Appointment.copyAll(dataManager.appointmentsOfMonth(FIRST_DAY, generatedCustomer.getId())));
+    }
+
+    /**
+     * Helper method that measures the three report groupings, read from the live totals and regrouped from scratch
+     * @param dataManager data manager holding the data
+     * @param size size the benchmarks are reported under
+     * @throws Exception if a benchmark fails
+     */
+    private void reportBenchmarks(DataManager dataManager, int size) throws Exception {
+        ReportAggregates aggregates = dataManager.getReportAggregates();
+        run("ReportAggregates.getAppointmentEntries", size, aggregates::getAppointmentEntries);
+        run("ReportAggregates.getCustomerEntries", size, () -> aggregates.getCustomerEntries(customerId -> {
+            Customer customer = dataManager.getCustomerById(customerId);
+            return customer != null ? customer.getName() : String.valueOf(customerId);
+        }));
+        run("ReportAggregates.getAppointmentsByContact", size, aggregates::getAppointmentsByContact);
+        ReportEngine engine = new ReportEngine();
+        run("ReportEngine.runSequential", size, () -> engine.runSequential(dataManager.appointments));
+        run("ReportEngine.run", size, () -> engine.run(dataManager.appointments));
+        // the default chunk size keeps small sizes sequential, this engine splits every size across the pool
+        int chunkSize = Math.max(1, dataManager.appointments.size() / (4 * ForkJoinPool.commonPool().getParallelism()));
+        ReportEngine splitEngine = new ReportEngine(ForkJoinPool.commonPool(), chunkSize);
+        run("ReportEngine.run chunk " + chunkSize, size, () -> splitEngine.run(dataManager.appointments));
+    }
+
+    /**
+     * Helper method that runs a benchmark unless the filter leaves it out
+     * @param name name of the benchmark
+     * @param size size the benchmark is reported under
+     * @param operation operation to measure
+     * @throws Exception if the operation fails
+     */
+    private void run(String name, int size, BenchmarkRunner.Operation operation) throws Exception {
+        if (filter == null || name.contains(filter)) {
+            runner.run(name, size, operation);
+        }
+    }
+
+    /**
+     * Helper method that lists ids in a fixed pseudo random order, so lookups do not walk the index in order
+     * @param count number of ids
+     * @param idAt gives the id at a position
+     * @return shuffled ids
+     */
+    private static int[] shuffledIds(int count, IntUnaryOperator idAt) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = idAt.applyAsInt(i);
+        }
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,332 @@
+package home.bulk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import home.appointments.Appointment;
+import home.appointments.AppointmentIntervalIndex;
+import home.appointments.AppointmentValidator;
+import home.appointments.Contact;
+import home.appointments.User;
+import home.customer.Customer;
+import home.customer.DataManager;
+import home.customer.Division;
+import home.customer.IntIndex;
+
+/**
+ * Class that imports customers and appointments from CSV files in three stages.
+ * Rows are parsed from the file one chunk at a time, each chunk is validated in parallel with the same rules
+ * as the appointment form, and the valid rows of the chunk are inserted with JDBC batches inside one transaction.
+ * Only one chunk is held in memory, so the size of the file is not limited by the heap.
+ */
+public class BulkImporter
+{
+    private static final String[] CUSTOMER_COLUMNS = { "customer_name", "address", "postal_code", "phone", "division_id" };
+    private static final String[] APPOINTMENT_COLUMNS = { "title", "description", "location", "contact", "type",
+        "start", "end", "customer_id", "user_id" };
+
+    private final int chunkSize;
+    private final int batchSize;
+    private final String importedBy;
+    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final AppointmentValidator validator = new AppointmentValidator();
+
+    /**
+     * Constructor to create an importer
+     * @param chunkSize number of rows validated and committed together
+     * @param batchSize number of rows sent to the database per executeBatch call
+     * @param importedBy user name recorded as creator of the imported rows
+     */
+    public BulkImporter(final int chunkSize, final int batchSize, final String importedBy) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.importedBy = importedBy;
+    }
+
+    /**
+     * Imports customers from a CSV file with the columns customer_name, address, postal_code, phone and division_id
+     * @param file CSV file to import
+     * @return report of the import
+     * @throws IOException if the file cannot be read or a column is missing
+     * @throws SQLException if the existing data cannot be loaded
+     */
+    public ImportReport importCustomers(Path file) throws IOException, SQLException {
+        ImportReport report = new ImportReport("Customers");
+        long started = System.nanoTime();
+        ensureDataLoaded();
+        try (CsvReader csv = new CsvReader(file)) {
+            int[] columns = findColumns(csv, CUSTOMER_COLUMNS);
+            List<Row<Customer>> chunk;
+            while (!(chunk = readChunk(csv, columns)).isEmpty()) {
+                report.rowsRead(chunk.size());
+                chunk.parallelStream().forEach(this::validateCustomer);
+                writeCustomers(chunk, report);
+            }
+        }
+        report.setElapsedMillis((System.nanoTime() - started) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Imports appointments from a CSV file with the columns title, description, location, contact, type,
+     * start, end, customer_id and user_id. Dates use the yyyy-MM-dd HH:mm:ss format in the local time zone.
+     * @param file CSV file to import
+     * @return report of the import
+     * @throws IOException if the file cannot be read or a column is missing
+     * @throws SQLException if the existing data cannot be loaded
+     */
+    public ImportReport importAppointments(Path file) throws IOException, SQLException {
+        ImportReport report = new ImportReport("Appointments");
+        long started = System.nanoTime();
+        ensureDataLoaded();
+        Map<String, Contact> contactsByName = new HashMap<>();
+        for (Contact contact : DataManager.getInstance().contacts) {
+            contactsByName.put(contact.getName(), contact);
+        }
+        try (CsvReader csv = new CsvReader(file)) {
+            int[] columns = findColumns(csv, APPOINTMENT_COLUMNS);
+            List<Row<Appointment>> chunk;
+            while (!(chunk = readChunk(csv, columns)).isEmpty()) {
+                report.rowsRead(chunk.size());
+                chunk.parallelStream().forEach(row -> validateAppointment(row, contactsByName));
+                writeAppointments(chunk, report);
+            }
+        }
+        report.setElapsedMillis((System.nanoTime() - started) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Helper method that loads the data the rows are validated against when it is not loaded yet
+     * @throws SQLException if the customers cannot be loaded
+     */
+    private void ensureDataLoaded() throws SQLException {
+        DataManager dataManager = DataManager.getInstance();
+        dataManager.loadReferenceData();
+        if (dataManager.customers.isEmpty()) {
+            dataManager.loadCustomers();
+        }
+    }
+
+    /**
+     * Helper method that finds the position of each required column in the header
+     * @param csv reader positioned after the header
+     * @param names names of the required columns
+     * @return positions of the columns, in the order of the names
+     * @throws IOException if a column is missing
+     */
+    private int[] findColumns(CsvReader csv, String[] names) throws IOException {
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = csv.columnIndex(names[i]);
+            if (columns[i] < 0) {
+                throw new IOException("Missing column " + names[i]);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Helper method that reads the next chunk of rows, keeping only the required columns
+     * @param csv reader to read from
+     * @param columns positions of the required columns
+     * @return rows of the chunk, empty at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    private <T> List<Row<T>> readChunk(CsvReader csv, int[] columns) throws IOException {
+        List<Row<T>> chunk = new ArrayList<>(Math.min(chunkSize, 10_000));
+        List<String> record;
+        while (chunk.size() < chunkSize && (record = csv.next()) != null) {
+            String[] values = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = columns[i] < record.size() ? record.get(columns[i]).trim() : "";
+            }
+            chunk.add(new Row<>(csv.getRecordLineNumber(), values));
+        }
+        return chunk;
+    }
+
+    /**
+     * Helper method that checks a customer row and builds its customer, run in parallel for the rows of a chunk
+     * @param row row to validate
+     */
+    private void validateCustomer(Row<Customer> row) {
+        String[] values = row.values;
+        for (String value : values) {
+            if (value.isEmpty()) {
+                row.problem = "Please provide value for all fields";
+                return;
+            }
+        }
+        Division division;
+        try {
+            division = DataManager.getInstance().getDivisionById(Integer.parseInt(values[4]));
+        } catch (NumberFormatException e) {
+            division = null;
+        }
+        if (division == null) {
+            row.problem = "Please provide a valid division id";
+            return;
+        }
+        Customer customer = new Customer(0, values[0], values[1], values[2], values[3], new ArrayList<>(), division);
+        ZonedDateTime now = ZonedDateTime.now();
+        customer.setCreateDate(now);
+        customer.setCreatedBy(importedBy);
+        customer.setLastUpdate(now);
+        customer.setLastUpdatedBy(importedBy);
+        row.record = customer;
+    }
+
+    /**
+     * Helper method that checks an appointment row and builds its appointment, run in parallel for the rows of a chunk
+     * The appointment is checked against the customer's saved appointments, overlaps between rows of the
+     * same file are checked when the chunk is written
+     * @param row row to validate
+     * @param contactsByName contacts by name
+     */
+    private void validateAppointment(Row<Appointment> row, Map<String, Contact> contactsByName) {
+        String[] v = row.values;
+        AppointmentValidator.Problem problem = validator.checkFields(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8]);
+        if (problem != null) {
+            row.problem = problem.getMessage();
+            return;
+        }
+        User user;
+        try {
+            user = DataManager.getInstance().getUserById(Integer.parseInt(v[8]));
+        } catch (NumberFormatException e) {
+            user = null;
+        }
+        if (user == null) {
+            row.problem = "Please provide a valid user id";
+            return;
+        }
+        Contact contact = contactsByName.get(v[3]);
+        if (contact == null) {
+            row.problem = "Please provide a valid contact name";
+            return;
+        }
+        ZonedDateTime start = ZonedDateTime.of(LocalDateTime.parse(v[5], formatter), ZoneId.systemDefault());
+        ZonedDateTime end = ZonedDateTime.of(LocalDateTime.parse(v[6], formatter), ZoneId.systemDefault());
+        int customerId = Integer.parseInt(v[7]);
+        Appointment appointment = new Appointment(0, v[0], v[1], v[2], v[4], start, end, customerId, contact, user);
+        problem = validator.checkSchedule(appointment, DataManager.getInstance().getCustomerById(customerId));
+        if (problem != null) {
+            row.problem = problem.getMessage();
+            return;
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        appointment.setCreateDate(now);
+        appointment.setCreatedBy(importedBy);
+        appointment.setLastUpdate(now);
+        appointment.setLastUpdatedBy(importedBy);
+        row.record = appointment;
+    }
+
+    /**
+     * Helper method that inserts the valid customers of a chunk in one transaction and registers them
+     * @param chunk validated rows
+     * @param report report receiving the outcome of each row
+     */
+    private void writeCustomers(List<Row<Customer>> chunk, ImportReport report) {
+        List<Customer> accepted = new ArrayList<>(chunk.size());
+        List<Row<Customer>> acceptedRows = new ArrayList<>(chunk.size());
+        for (Row<Customer> row : chunk) {
+            if (row.problem != null) {
+                report.reject(row.lineNumber, row.problem);
+            } else {
+                accepted.add(row.record);
+                acceptedRows.add(row);
+            }
+        }
+        try {
+            DataManager.getInstance().insertCustomers(accepted, batchSize);
+        } catch (SQLException e) {
+            rejectAll(acceptedRows, e, report);
+            return;
+        }
+        DataManager.getInstance().registerCustomers(accepted);
+        report.rowsImported(accepted.size());
+    }
+
+    /**
+     * Helper method that inserts the valid appointments of a chunk in one transaction and registers them
+     * Rows overlapping an earlier row of the same file are rejected
+     * @param chunk validated rows
+     * @param report report receiving the outcome of each row
+     */
+    private void writeAppointments(List<Row<Appointment>> chunk, ImportReport report) {
+        List<Appointment> accepted = new ArrayList<>(chunk.size());
+        List<Row<Appointment>> acceptedRows = new ArrayList<>(chunk.size());
+        IntIndex<AppointmentIntervalIndex> pendingByCustomer = new IntIndex<>();
+        for (Row<Appointment> row : chunk) {
+            if (row.problem != null) {
+                report.reject(row.lineNumber, row.problem);
+                continue;
+            }
+            Appointment appointment = row.record;
+            AppointmentIntervalIndex pending = pendingByCustomer.get(appointment.getCustomerId());
+            if (pending == null) {
+                pending = new AppointmentIntervalIndex();
+                pendingByCustomer.put(appointment.getCustomerId(), pending);
+            }
+            // every pending appointment has id 0, so no id is ignored
+            if (pending.overlaps(appointment.getStartDate().toEpochSecond(), appointment.getEndDate().toEpochSecond(), -1)) {
+                report.reject(row.lineNumber, "Appointment is overlapping with another appointment of the import");
+                continue;
+            }
+            pending.add(appointment);
+            accepted.add(appointment);
+            acceptedRows.add(row);
+        }
+        try {
+            DataManager.getInstance().insertAppointments(accepted, batchSize);
+        } catch (SQLException e) {
+            rejectAll(acceptedRows, e, report);
+            return;
+        }
+        for (Appointment appointment : accepted) {
+            DataManager.getInstance().getCustomerById(appointment.getCustomerId()).registerAppointment(appointment);
+        }
+        report.rowsImported(accepted.size());
+    }
+
+    /**
+     * Helper method that rejects every row of a chunk whose transaction was rolled back
+     * @param rows rows of the chunk that were sent to the database
+     * @param e error of the transaction
+     * @param report report receiving the rejections
+     */
+    private <T> void rejectAll(List<Row<T>> rows, SQLException e, ImportReport report) {
+        System.out.println("Error with importing a chunk of rows " + e.getMessage());
+        for (Row<T> row : rows) {
+            report.reject(row.lineNumber, "Chunk rolled back: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Class that holds one row of the file while it goes through the stages
+     * @param <T> type of record built from the row
+     */
+    private static class Row<T>
+    {
+        private final long lineNumber;
+        private final String[] values;
+        private T record;
+        private String problem;
+
+        private Row(final long lineNumber, final String[] values) {
+            this.lineNumber = lineNumber;
+            this.values = values;
+        }
+    }
+}
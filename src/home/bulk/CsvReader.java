@@ -0,0 +1,119 @@
+package home.bulk;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that reads a CSV file one record at a time.
+ * The first record is the header, quoted values may contain separators, doubled quotes and line breaks.
+ * A UTF-8 byte order mark at the start of the file, as written by spreadsheet programs, is skipped.
+ */
+public class CsvReader implements Closeable
+{
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private long lineNumber = 1;
+    private long recordLineNumber = 0;
+
+    /**
+     * Constructor to open a CSV file and read its header
+     * @param file UTF-8 file to read
+     * @throws IOException if the file cannot be read
+     */
+    public CsvReader(final Path file) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        reader.mark(1);
+        if (reader.read() != BYTE_ORDER_MARK) {
+            reader.reset();
+        }
+        List<String> header = next();
+        if (header != null) {
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(), i);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the position of a column in each record
+     * @param name name of the column, case insensitive
+     * @return position of the column otherwise -1
+     */
+    public int columnIndex(String name) {
+        return columns.getOrDefault(name.toLowerCase(), -1);
+    }
+
+    /**
+     * Reads the next record
+     * @return values of the record otherwise null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public List<String> next() throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        recordLineNumber = lineNumber;
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        value.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                    value.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n') {
+                lineNumber++;
+                break;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Retrieves the line of the file the last record started on
+     * @return line number, starting at 1 for the header
+     */
+    public long getRecordLineNumber() {
+        return recordLineNumber;
+    }
+
+    /**
+     * Closes the file
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
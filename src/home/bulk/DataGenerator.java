@@ -0,0 +1,249 @@
+package home.bulk;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToIntFunction;
+
+import home.appointments.Appointment;
+import home.appointments.Contact;
+import home.appointments.User;
+import home.customer.Country;
+import home.customer.Customer;
+import home.customer.DataManager;
+import home.customer.Division;
+import home.customer.IntIndex;
+import home.customer.Repository;
+
+/**
+ * Class that fills the schedule with synthetic customers and appointments to reproduce production volumes.
+ * Every customer and its appointments are drawn from a random generator seeded with the seed and the position
+ * of the customer, so the same seed always produces the same data however the work is split into chunks.
+ * Customers are spread over the existing divisions and each one gets appointments on separate days inside the
+ * 8am - 10pm America/New_York business hours, so they never overlap.
+ * Rows are inserted one chunk at a time with batched inserts, and the next chunk of customers is built
+ * in the background while the appointments of the current one are inserted.
+ */
+public class DataGenerator
+{
+    private static final ZoneId BUSINESS_ZONE = ZoneId.of("America/New_York");
+    private static final int OPENING_MINUTE = 8 * 60;
+    private static final int CLOSING_MINUTE = 22 * 60;
+    private static final int SLOT_MINUTES = 15;
+    private static final String[] FIRST_NAMES = { "Ava", "Ben", "Chloe", "Daniel", "Emma", "Felix", "Grace", "Henry",
+        "Isla", "Jack", "Kate", "Liam", "Mia", "Noah", "Olivia", "Paul", "Quinn", "Ruby", "Sam", "Tara" };
+    private static final String[] LAST_NAMES = { "Adams", "Brown", "Clark", "Davis", "Evans", "Fisher", "Garcia",
+        "Hughes", "Irwin", "Jones", "King", "Lee", "Martin", "Nguyen", "Owens", "Patel", "Reed", "Smith", "Turner", "Young" };
+    private static final String[] STREETS = { "Main Street", "Oak Avenue", "Maple Drive", "Cedar Lane", "Park Road",
+        "Hill Street", "Lake View", "River Road" };
+    private static final String[] TYPES = { "Planning Session", "De-Briefing", "Consultation", "Follow-up", "Review" };
+    private static final String[] LOCATIONS = { "Phoenix, Arizona", "White Plains, New York", "Montreal, Canada",
+        "London, England", "Online" };
+
+    private final long seed;
+    private final LocalDate firstDay;
+    private final int chunkSize;
+    private final int batchSize;
+    private final String createdBy;
+
+    /**
+     * Constructor to create a generator
+     * @param seed seed of the random data, the same seed produces the same data
+     * @param firstDay earliest day an appointment is scheduled on
+     * @param chunkSize number of customers built and inserted together, with their appointments
+     * @param batchSize number of rows sent to the database per batch
+     * @param createdBy user name recorded as creator of the generated rows
+     */
+    public DataGenerator(final long seed, final LocalDate firstDay, final int chunkSize, final int batchSize,
+        final String createdBy)
+    {
+        this.seed = seed;
+        this.firstDay = firstDay;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.createdBy = createdBy;
+    }
+
+    /**
+     * Generates customers and their appointments and inserts them through the data manager
+     * The generated rows are not added to the loaded lists, they are read by the next load
+     * @param customerCount number of customers to generate
+     * @param appointmentsPerCustomer number of appointments of each customer
+     * @return reports of the customers and of the appointments that were inserted
+     * @throws SQLException if a chunk cannot be inserted, earlier chunks stay inserted
+     */
+    public List<ImportReport> generate(int customerCount, int appointmentsPerCustomer) throws SQLException {
+        DataManager dataManager = DataManager.getInstance();
+        // the reference rows are read on their own, loading every existing appointment is not needed here
+        Repository repository = dataManager.getRepository();
+        IntIndex<Country> countries = new IntIndex<>();
+        repository.findCountries().forEach(country -> countries.put(country.getCountryId(), country));
+        List<Division> divisions = sortedById(repository.findDivisions(countries::get), Division::getDivisionId);
+        List<Contact> contacts = sortedById(repository.findContacts(), Contact::getId);
+        List<User> users = sortedById(repository.findUsers(), User::getId);
+        if (divisions.isEmpty() || contacts.isEmpty() || users.isEmpty()) {
+            throw new IllegalStateException("Divisions, contacts and users are needed to generate data");
+        }
+
+        ImportReport customerReport = new ImportReport("Generated customers");
+        ImportReport appointmentReport = new ImportReport("Generated appointments");
+        long started = System.nanoTime();
+        CompletableFuture<List<Customer>> nextChunk = buildCustomersAsync(0, Math.min(chunkSize, customerCount), divisions);
+        for (int first = 0; first < customerCount; first += chunkSize) {
+            List<Customer> chunk = join(nextChunk);
+            int next = first + chunkSize;
+            customerReport.rowsRead(chunk.size());
+            dataManager.insertCustomers(chunk, batchSize);
+            customerReport.rowsImported(chunk.size());
+
+            // the next customers are built while the appointments of this chunk are inserted
+            nextChunk = next < customerCount
+                ? buildCustomersAsync(next, Math.min(next + chunkSize, customerCount), divisions)
+                : CompletableFuture.completedFuture(List.of());
+            List<Appointment> appointments = new ArrayList<>(chunk.size() * appointmentsPerCustomer);
+            for (int i = 0; i < chunk.size(); i++) {
+                buildAppointments(first + i, chunk.get(i).getId(), appointmentsPerCustomer, contacts, users, appointments);
+            }
+            appointmentReport.rowsRead(appointments.size());
+            dataManager.insertAppointments(appointments, batchSize);
+            appointmentReport.rowsImported(appointments.size());
+
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            customerReport.setElapsedMillis(elapsedMillis);
+            appointmentReport.setElapsedMillis(elapsedMillis);
+            System.out.println("Generated " + (first + chunk.size()) + " of " + customerCount + " customers in "
+                + elapsedMillis + "ms");
+        }
+        return List.of(customerReport, appointmentReport);
+    }
+
+    /**
+     * Helper method that builds a range of customers on the background executor
+     * @param from position of the first customer, inclusive
+     * @param to position of the last customer, exclusive
+     * @param divisions divisions the customers are spread over
+     * @return future of the customers, in order of position
+     */
+    private CompletableFuture<List<Customer>> buildCustomersAsync(int from, int to, List<Division> divisions) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Customer> customers = new ArrayList<>(Math.max(0, to - from));
+            for (int position = from; position < to; position++) {
+                customers.add(buildCustomer(position, divisions));
+            }
+            return customers;
+        }, DataManager.getBackgroundExecutor());
+    }
+
+    /**
+     * Helper method that builds the customer at a position
+     * @param position position of the customer among the generated customers
+     * @param divisions divisions the customers are spread over
+     * @return customer with id 0
+     */
+    private Customer buildCustomer(int position, List<Division> divisions) {
+        SplittableRandom random = randomFor(position, 0);
+        String name = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+        String address = (1 + random.nextInt(9999)) + " " + pick(random, STREETS);
+        String postalCode = String.format("%05d", random.nextInt(100_000));
+        String phone = String.format("%03d-%03d-%04d", 200 + random.nextInt(800), random.nextInt(1000), random.nextInt(10_000));
+        Division division = divisions.get(random.nextInt(divisions.size()));
+        Customer customer = new Customer(0, name, address, postalCode, phone, new ArrayList<>(), division);
+        ZonedDateTime now = ZonedDateTime.now();
+        customer.setCreateDate(now);
+        customer.setCreatedBy(createdBy);
+        customer.setLastUpdate(now);
+        customer.setLastUpdatedBy(createdBy);
+        return customer;
+    }
+
+    /**
+     * Helper method that builds the appointments of the customer at a position
+     * Each appointment is on a later day than the one before, so the appointments of a customer never overlap,
+     * and starts and ends on a quarter hour inside business hours
+     * @param position position of the customer among the generated customers
+     * @param customerId id of the inserted customer
+     * @param count number of appointments to build
+     * @param contacts contacts the appointments are spread over
+     * @param users users the appointments are spread over
+     * @param appointments list receiving the appointments
+     */
+    private void buildAppointments(int position, int customerId, int count, List<Contact> contacts, List<User> users,
+        List<Appointment> appointments)
+    {
+        SplittableRandom random = randomFor(position, 1);
+        ZoneId localZone = ZoneId.systemDefault();
+        ZonedDateTime now = ZonedDateTime.now();
+        LocalDate day = firstDay.plusDays(random.nextInt(30));
+        for (int i = 0; i < count; i++) {
+            int minutes = SLOT_MINUTES * (1 + random.nextInt(4));
+            int slots = (CLOSING_MINUTE - OPENING_MINUTE - minutes) / SLOT_MINUTES;
+            int startMinute = OPENING_MINUTE + SLOT_MINUTES * random.nextInt(slots + 1);
+            // the wall clock time is set directly, counting minutes from midnight would shift on daylight saving days
+            ZonedDateTime start = ZonedDateTime.of(day, LocalTime.MIDNIGHT.plusMinutes(startMinute), BUSINESS_ZONE)
+                .withZoneSameInstant(localZone);
+            String type = pick(random, TYPES);
+            Appointment appointment = new Appointment(0, type + " " + (i + 1), type + " with customer " + customerId,
+                pick(random, LOCATIONS), type, start, start.plusMinutes(minutes), customerId,
+                contacts.get(random.nextInt(contacts.size())), users.get(random.nextInt(users.size())));
+            appointment.setCreateDate(now);
+            appointment.setCreatedBy(createdBy);
+            appointment.setLastUpdate(now);
+            appointment.setLastUpdatedBy(createdBy);
+            appointments.add(appointment);
+            day = day.plusDays(1 + random.nextInt(3));
+        }
+    }
+
+    /**
+     * Helper method that creates the random generator of one customer, independent of every other customer
+     * @param position position of the customer among the generated customers
+     * @param stream 0 for the customer's own fields, 1 for its appointments
+     * @return random generator
+     */
+    private SplittableRandom randomFor(int position, int stream) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + position * 2L + stream);
+    }
+
+    /**
+     * Helper method to pick a random value
+     * @param random random generator
+     * @param values values to pick from
+     * @return one of the values
+     */
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Helper method that copies records ordered by id, so the picks do not depend on the order they were read in
+     * @param records records to order
+     * @param id gives the id of a record
+     * @return records ordered by id
+     */
+    private static <T> List<T> sortedById(List<T> records, ToIntFunction<T> id) {
+        List<T> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparingInt(id));
+        return sorted;
+    }
+
+    /**
+     * Helper method that waits for a chunk of customers being built
+     * @param chunk future of the chunk
+     * @return customers of the chunk
+     */
+    private static List<Customer> join(CompletableFuture<List<Customer>> chunk) {
+        try {
+            return chunk.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+}
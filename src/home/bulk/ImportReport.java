@@ -0,0 +1,163 @@
+package home.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class that holds the outcome of a bulk import: how many rows were read and saved, how fast,
+ * and why the rejected rows were not saved. Only the first rejected rows are kept with their reason, so a file
+ * where every row fails does not hold a reason per row in memory; the others are only counted.
+ */
+public class ImportReport
+{
+    static final int MAX_REJECTED_SAMPLES = 100;
+
+    private final String name;
+    private final List<RejectedRow> rejectedRows = new ArrayList<>();
+    private long rowsRead = 0;
+    private long rowsImported = 0;
+    private long rejectedCount = 0;
+    private long elapsedMillis = 0;
+
+    /**
+     * Constructor to create an empty report
+     * @param name name of what was imported, used when describing the report
+     */
+    public ImportReport(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Counts rows read from the file
+     * @param rows number of rows read
+     */
+    void rowsRead(long rows) {
+        rowsRead += rows;
+    }
+
+    /**
+     * Counts rows saved in the database
+     * @param rows number of rows saved
+     */
+    void rowsImported(long rows) {
+        rowsImported += rows;
+    }
+
+    /**
+     * Records a row that was not saved, its reason is kept for the first MAX_REJECTED_SAMPLES rows only
+     * @param lineNumber line of the file the row starts on
+     * @param reason why the row was rejected
+     */
+    void reject(long lineNumber, String reason) {
+        rejectedCount++;
+        if (rejectedRows.size() < MAX_REJECTED_SAMPLES) {
+            rejectedRows.add(new RejectedRow(lineNumber, reason));
+        }
+    }
+
+    /**
+     * Sets how long the import took
+     * @param elapsedMillis duration in milliseconds
+     */
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Retrieves the number of rows read from the file
+     * @return number of rows read
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Retrieves the number of rows saved in the database
+     * @return number of rows saved
+     */
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    /**
+     * Retrieves the first rows that were not saved, in file order
+     * @return at most MAX_REJECTED_SAMPLES rejected rows
+     */
+    public List<RejectedRow> getRejectedRows() {
+        return Collections.unmodifiableList(rejectedRows);
+    }
+
+    /**
+     * Retrieves the number of rows that were not saved, including those whose reason was not kept
+     * @return number of rejected rows
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Retrieves how long the import took
+     * @return duration in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Retrieves the number of rows read per second
+     * @return rows per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedMillis > 0 ? rowsRead * 1000.0 / elapsedMillis : rowsRead;
+    }
+
+    /**
+     * Retrieves the report as text, with one line per kept rejected row and a count of the others
+     * @return report summary
+     */
+    public String describe() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(name).append(": ").append(rowsImported).append(" of ").append(rowsRead).append(" rows imported in ")
+            .append(elapsedMillis).append("ms (").append(Math.round(getRowsPerSecond())).append(" rows/s), ")
+            .append(rejectedCount).append(" rejected");
+        for (RejectedRow row : rejectedRows) {
+            summary.append(System.lineSeparator()).append("  line ").append(row.getLineNumber()).append(": ").append(row.getReason());
+        }
+        if (rejectedCount > rejectedRows.size()) {
+            summary.append(System.lineSeparator()).append("  and ").append(rejectedCount - rejectedRows.size())
+                .append(" more rejected rows");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Class that represents a row that was not saved
+     */
+    public static class RejectedRow
+    {
+        private final long lineNumber;
+        private final String reason;
+
+        private RejectedRow(final long lineNumber, final String reason) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+        }
+
+        /**
+         * Retrieves the line of the file the row starts on
+         * @return line number
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Retrieves why the row was rejected
+         * @return reason of the rejection
+         */
+        public String getReason() {
+            return reason;
+        }
+    }
+}
@@ -2,25 +2,36 @@ package home.customer;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 
 import home.LogInController;
 import home.appointments.Appointment;
+import home.appointments.AppointmentIntervalIndex;
 
 /**
  * Class that represents a customer record
  */
 public class Customer {
-    private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    /** Field bits used to track which columns were changed, in the order of the update columns */
+    public static final int NAME = 1;
+    public static final int ADDRESS = 1 << 1;
+    public static final int POSTAL_CODE = 1 << 2;
+    public static final int PHONE = 1 << 3;
+    public static final int DIVISION = 1 << 4;
+    public static final int LAST_UPDATE = 1 << 5;
+    public static final int LAST_UPDATED_BY = 1 << 6;
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private int id;
     private String name;
     private String address;
     private String postalCode;
     private String phoneNumber;
     private List<Appointment> appointments;
+    private AppointmentIntervalIndex appointmentSchedule;
     private Division division;
     private String divisionName;
     private String countryName;
@@ -28,6 +39,7 @@ public class Customer {
     private String createdBy;
     private ZonedDateTime lastUpdate;
     private String lastUpdatedBy;
+    private int dirtyFields = 0;
 
     /**
      * Constructor to instantiate a customer object
@@ -53,6 +65,7 @@ public class Customer {
         this.postalCode = postalCode;
         this.phoneNumber = phoneNumber;
         this.appointments = appointments;
+        this.appointmentSchedule = new AppointmentIntervalIndex(appointments);
         this.division = division;
     }
 
@@ -89,6 +102,9 @@ public class Customer {
      */
     public void setName(final String name)
     {
+        if (!Objects.equals(this.name, name)) {
+            dirtyFields |= NAME;
+        }
         this.name = name;
     }
 
@@ -107,6 +123,9 @@ public class Customer {
      */
     public void setAddress(final String address)
     {
+        if (!Objects.equals(this.address, address)) {
+            dirtyFields |= ADDRESS;
+        }
         this.address = address;
     }
 
@@ -125,6 +144,9 @@ public class Customer {
      */
     public void setPostalCode(final String postalCode)
     {
+        if (!Objects.equals(this.postalCode, postalCode)) {
+            dirtyFields |= POSTAL_CODE;
+        }
         this.postalCode = postalCode;
     }
 
@@ -143,6 +165,9 @@ public class Customer {
      */
     public void setPhoneNumber(final String phoneNumber)
     {
+        if (!Objects.equals(this.phoneNumber, phoneNumber)) {
+            dirtyFields |= PHONE;
+        }
         this.phoneNumber = phoneNumber;
     }
 
@@ -159,6 +184,9 @@ public class Customer {
      * @param division division object
      */
     public void setDivision(final Division division) {
+        if (this.division == null || division == null || this.division.getDivisionId() != division.getDivisionId()) {
+            dirtyFields |= DIVISION;
+        }
         this.division = division;
     }
 
@@ -176,6 +204,19 @@ public class Customer {
      */
     public void setAppointments(final List<Appointment> appointments) {
         this.appointments = appointments;
+        this.appointmentSchedule = new AppointmentIntervalIndex(appointments);
+    }
+
+    /**
+     * retrieves the customer's appointments starting inside a time range, ordered by start time
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return list of appointments starting in the range
+     */
+    public List<Appointment> getAppointmentsStartingBetween(ZonedDateTime from, ZonedDateTime to) {
+        List<Appointment> appointmentsInRange = new ArrayList<>();
+        appointmentSchedule.forEachStartingBetween(from.toEpochSecond(), to.toEpochSecond(), appointmentsInRange::add);
+        return appointmentsInRange;
     }
 
     /**
@@ -189,61 +230,94 @@ public class Customer {
         appointment.setLastUpdatedBy(LogInController.userLoggedOn.getUsername());
         int newId = DataManager.getInstance().insertAppointment(appointment);
         appointment.setId(newId);
+        registerAppointment(appointment);
+    }
+
+    /**
+     * adds an appointment that is already stored in the database, such as an imported appointment
+     * @param appointment appointment to add, with its database id set
+     */
+    public void registerAppointment(Appointment appointment) {
         this.appointments.add(appointment);
-        DataManager.getInstance().appointments.add(appointment);
+        this.appointmentSchedule.add(appointment);
+        DataManager.getInstance().appointmentAdded(appointment);
     }
 
     /**
      * removes an appointment from the customer
+     * The appointment is matched by id so copies shown on screen remove the stored appointment
      * @param appointment appointment to remove
      */
     public void removeAppointment(Appointment appointment) {
         DataManager.getInstance().removeAppointment(appointment);
-        this.appointments.remove(appointment);
-        DataManager.getInstance().appointments.remove(appointment);
+        unregisterAppointment(appointment);
+    }
+
+    /**
+     * removes an appointment that is no longer in the database from the customer, such as one deleted elsewhere
+     * @param appointment appointment to remove
+     */
+    void unregisterAppointment(Appointment appointment) {
+        Appointment existingAppointment = DataManager.getInstance().appointmentRemoved(appointment);
+        this.appointments.remove(existingAppointment != null ? existingAppointment : appointment);
+        this.appointmentSchedule.remove(existingAppointment != null ? existingAppointment : appointment);
     }
 
     /**
      * edits an existing customer's appointment
-     * Lambda expression is used in this method to find the appointment to edit from list of appointments
+     * The appointment being replaced is found through the appointment id index
      * @param appointment appointment to update
      */
     public void editAppointment(Appointment appointment) {
+        Appointment storedAppointment = DataManager.getInstance().getAppointmentById(appointment.getId());
+        if (storedAppointment != null && storedAppointment != appointment) {
+            appointment.trackChangesFrom(storedAppointment);
+            // columns of an earlier edit whose update failed are written again with this one
+            appointment.markDirty(storedAppointment.getDirtyFields());
+        }
+        if (appointment.getDirtyFields() == 0) {
+            // nothing was edited, so nothing is written
+            return;
+        }
         appointment.setLastUpdate(ZonedDateTime.now());
         appointment.setLastUpdatedBy(LogInController.userLoggedOn.getUsername());
-        DataManager.getInstance().updateAppointment(appointment);
+        DataManager.getInstance().saveAppointment(appointment);
         //update local lists of appointments
-        Optional<Appointment> existingAppointment = this.appointments.stream().filter(c -> c.getId() == appointment.getId()).findFirst();
-        if (existingAppointment.isPresent()) {
-            appointments.set(appointments.indexOf(existingAppointment.get()), appointment);
-        }
-        Optional<Appointment> globalAppointment = DataManager.getInstance().appointments.stream().filter(c -> c.getId() == appointment.getId()).findFirst();
-        if (globalAppointment.isPresent()) {
-            DataManager.getInstance().appointments.set(DataManager.getInstance().appointments.indexOf(globalAppointment.get()), appointment);
+        Appointment existingAppointment = DataManager.getInstance().appointmentEdited(appointment);
+        int position = existingAppointment != null ? appointments.indexOf(existingAppointment) : -1;
+        if (position >= 0) {
+            appointments.set(position, appointment);
+            appointmentSchedule.remove(existingAppointment);
+            appointmentSchedule.add(appointment);
         }
     }
 
     /**
      * Method to check for overlapping appointments
-     * Lambda expression is used in this method to filter out the same appointment from list of appointments.
+     * The appointment with the same id as the new appointment is left out of the check.
+     * When checking against the customer's own appointments the interval index is used so only
+     * appointments near the new appointment's time are compared.
      * @param newAppointment new appointment
      * @param existingAppointments list of customer existing appointments
      * @return true if new appointment overlaps else false
-     *  (StartA <= EndB) and (EndA >= StartB) function to check overlaps
+     *  (StartA < EndB) and (EndA > StartB) function to check overlaps
      *  if yes return false otherwise true
      *
      */
     public boolean isAppointmentOverlapping(Appointment newAppointment, List<Appointment> existingAppointments) {
-        ZonedDateTime newAppStart = newAppointment.getStartDate();
-        ZonedDateTime newAppEnd = newAppointment.getEndDate();
-        List<Appointment> appointmentsToCheck = existingAppointments.stream()
-            .filter(a -> a.getId() != newAppointment.getId()).collect(Collectors.toList());
-
-        for (Appointment appointment : appointmentsToCheck) {
-            int diff1 = newAppEnd.compareTo(appointment.getStartDate());
-            int diff2 = appointment.getEndDate().compareTo(newAppStart);
+        long newAppStart = newAppointment.getStartDate().toEpochSecond();
+        long newAppEnd = newAppointment.getEndDate().toEpochSecond();
+        if (existingAppointments == this.appointments) {
+            return appointmentSchedule.overlaps(newAppStart, newAppEnd, newAppointment.getId());
+        }
 
-            if (diff1 > 0 && diff2 > 0) return true;
+        for (int i = 0; i < existingAppointments.size(); i++) {
+            Appointment appointment = existingAppointments.get(i);
+            if (appointment.getId() != newAppointment.getId()
+                && newAppEnd > appointment.getStartDate().toEpochSecond()
+                && appointment.getEndDate().toEpochSecond() > newAppStart) {
+                return true;
+            }
         }
         return false;
     }
@@ -315,6 +389,9 @@ public class Customer {
      */
     public void setLastUpdate(final ZonedDateTime lastUpdate)
     {
+        if (!isSameInstant(this.lastUpdate, lastUpdate)) {
+            dirtyFields |= LAST_UPDATE;
+        }
         this.lastUpdate = lastUpdate;
     }
 
@@ -333,6 +410,62 @@ public class Customer {
      */
     public void setLastUpdatedBy(final String lastUpdatedBy)
     {
+        if (!Objects.equals(this.lastUpdatedBy, lastUpdatedBy)) {
+            dirtyFields |= LAST_UPDATED_BY;
+        }
         this.lastUpdatedBy = lastUpdatedBy;
     }
+
+    /**
+     * Retrieves the fields changed since the customer was loaded or last saved, as a combination of the field bits
+     * @return changed fields, 0 when the customer has no unsaved change
+     */
+    public int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    /**
+     * Marks fields as changed so they are written by the next update
+     * @param fields field bits to mark
+     */
+    public void markDirty(final int fields) {
+        dirtyFields |= fields;
+    }
+
+    /**
+     * Marks fields as saved, called once they are written to the database
+     * @param fields field bits that were written
+     */
+    public void clearDirtyFields(final int fields) {
+        dirtyFields &= ~fields;
+    }
+
+    /**
+     * Replaces the changed fields with the fields whose values differ from a previous version of this customer
+     * Used when an edit builds a new customer object instead of calling the setters of the stored one
+     * @param previous customer as it was before the edit
+     */
+    public void trackChangesFrom(final Customer previous) {
+        int fields = 0;
+        fields |= Objects.equals(name, previous.name) ? 0 : NAME;
+        fields |= Objects.equals(address, previous.address) ? 0 : ADDRESS;
+        fields |= Objects.equals(postalCode, previous.postalCode) ? 0 : POSTAL_CODE;
+        fields |= Objects.equals(phoneNumber, previous.phoneNumber) ? 0 : PHONE;
+        fields |= division != null && previous.division != null
+            && division.getDivisionId() == previous.division.getDivisionId() ? 0 : DIVISION;
+        fields |= isSameInstant(lastUpdate, previous.lastUpdate) ? 0 : LAST_UPDATE;
+        fields |= Objects.equals(lastUpdatedBy, previous.lastUpdatedBy) ? 0 : LAST_UPDATED_BY;
+        dirtyFields = fields;
+    }
+
+    /**
+     * Helper method to check if two dates are the same instant to the second, the precision the database stores,
+     * whatever their time zones
+     * @param first first date, may be null
+     * @param second second date, may be null
+     * @return true if both are null or the same second otherwise false
+     */
+    private static boolean isSameInstant(ZonedDateTime first, ZonedDateTime second) {
+        return first == null ? second == null : second != null && first.toEpochSecond() == second.toEpochSecond();
+    }
 }
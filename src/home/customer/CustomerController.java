@@ -1,26 +1,31 @@
 package home.customer;
 
 import java.io.IOException;
-import java.sql.SQLException;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 
 import home.appointments.Appointment;
 import home.appointments.AppointmentController;
 import home.reports.ReportController;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.layout.HBox;
 import javafx.util.Callback;
 
 /**
@@ -33,20 +38,101 @@ public class CustomerController
 
     @FXML
     private TableView customerTable;
+    @FXML
+    private HBox loadingPane;
+    @FXML
+    private ProgressBar loadingProgress;
+    @FXML
+    private Label loadingLabel;
     private static boolean loggedOnView = true;
+    private static final long SYNC_INTERVAL_SECONDS = 30;
 
     /**
      * Method that will initialize the javafx window
+     * Customers are loaded on a background thread and added to the table in batches as they arrive
      */
     @FXML
-    public void initialize() throws SQLException {
-        DataManager.getInstance().loadCustomers();
-        ObservableList<Customer> list = DataManager.getInstance().getCustomers();
+    public void initialize() {
+        ObservableList<Customer> list = FXCollections.observableArrayList();
         customerTable.setItems(list);
         addButtonToTable();
 
+        Task<Integer> loadTask = createLoadCustomersTask(list);
+        loadingProgress.progressProperty().bind(loadTask.progressProperty());
+        loadingLabel.textProperty().bind(loadTask.messageProperty());
+        loadTask.setOnSucceeded(event -> {
+            loadingPane.setVisible(false);
+            loadingPane.setManaged(false);
+            startSync(list);
+            showUpcomingAppointments();
+        });
+        loadTask.setOnFailed(event -> {
+            loadingProgress.progressProperty().unbind();
+            loadingLabel.textProperty().unbind();
+            loadingLabel.setText("Loading failed");
+            Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+            errorAlert.setTitle("Error");
+            errorAlert.setHeaderText("Loading Customers");
+            errorAlert.setContentText("Customers could not be loaded: " + loadTask.getException().getMessage());
+            errorAlert.showAndWait();
+        });
+        DataManager.getBackgroundExecutor().execute(loadTask);
+    }
+
+    /**
+     * Helper method that creates the background task loading the customers into the table
+     * Each batch of rows is handed to the JavaFX application thread as soon as it is read
+     * @param list list shown by the customers table
+     * @return task that loads the customers and returns how many were loaded
+     */
+    private Task<Integer> createLoadCustomersTask(ObservableList<Customer> list) {
+        return new Task<>() {
+            @Override
+            protected Integer call() throws Exception {
+                DataManager dataManager = DataManager.getInstance();
+                updateMessage("Loading reference data...");
+                dataManager.loadReferenceDataAsync().join();
+                int total = dataManager.countCustomers();
+                int[] loaded = {0};
+                updateMessage("Loading customers...");
+                dataManager.loadCustomers(batch -> {
+                    loaded[0] += batch.size();
+                    updateProgress(loaded[0], Math.max(total, loaded[0]));
+                    updateMessage("Loaded " + loaded[0] + " of " + total + " customers");
+                    Platform.runLater(() -> {
+                        dataManager.registerCustomers(batch);
+                        list.addAll(batch);
+                    });
+                }, 200);
+                return loaded[0];
+            }
+        };
+    }
+
+    /**
+     * Helper method that starts merging edits made on other workstations into the table
+     * The interval is read from the syncIntervalSeconds system property, 0 turns the polling off but customers
+     * loaded from a snapshot are still reconciled once
+     * @param list list shown by the customers table
+     */
+    private void startSync(ObservableList<Customer> list) {
+        long intervalSeconds = Math.max(0, Long.getLong("syncIntervalSeconds", SYNC_INTERVAL_SECONDS));
+        DataManager.getInstance().startSync(Duration.ofSeconds(intervalSeconds), Platform::runLater, changes -> {
+            list.addAll(changes.getAddedCustomers());
+            if (!changes.getDeletedCustomers().isEmpty()) {
+                list.removeAll(new HashSet<>(changes.getDeletedCustomers()));
+            }
+            // edited customers are updated in place, so their rows only need to be redrawn
+            customerTable.refresh();
+        });
+    }
+
+    /**
+     * Helper method that shows the upcoming appointments alert once after log in and starts the reminders
+     */
+    private void showUpcomingAppointments() {
         if (loggedOnView) {
-            String messageText = checkForUpcomingAppointment(list);
+            String messageText = checkForUpcomingAppointment();
             Alert confirmationAlert = new Alert(Alert.AlertType.CONFIRMATION, "", ButtonType.OK);
             confirmationAlert.setResizable(true);
             confirmationAlert.getDialogPane().setMinHeight(500);
@@ -55,6 +141,7 @@ public class CustomerController
             confirmationAlert.setHeaderText("Upcoming Appointments");
             confirmationAlert.setContentText(messageText);
             confirmationAlert.showAndWait();
+            DataManager.getInstance().startReminders(appointment -> Platform.runLater(() -> showReminder(appointment)));
         }
     }
 
@@ -112,8 +199,15 @@ public class CustomerController
             confirmationAlert.setContentText("Customer with ID :" + customer.getId() + " will be deleted");
             confirmationAlert.showAndWait();
             if (confirmationAlert.getResult() == ButtonType.OK) {
-                DataManager.getInstance().deleteCustomer(customer);
-                customerTable.getItems().remove(customer);
+                if (DataManager.getInstance().deleteCustomer(customer)) {
+                    customerTable.getItems().remove(customer);
+                } else {
+                    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                    errorAlert.setTitle("Error");
+                    errorAlert.setHeaderText("Delete Customer");
+                    errorAlert.setContentText("Customer with ID :" + customer.getId() + " could not be deleted");
+                    errorAlert.showAndWait();
+                }
             }
         } else {
             Alert errorAlert = new Alert(Alert.AlertType.ERROR);
@@ -130,13 +224,7 @@ public class CustomerController
     @FXML
     public void onAppointmentReport() {
         ReportController reportController = new ReportController();
-
-        List<Appointment> allAppointments = new ArrayList<>();
-        for (Object customer : customerTable.getItems()) {
-            Customer existingCustomer = (Customer) customer;
-            allAppointments.addAll(existingCustomer.getAppointments());
-        }
-        reportController.showAppointmentReport(allAppointments);
+        reportController.showAppointmentReport();
     }
 
     /**
@@ -145,12 +233,7 @@ public class CustomerController
     @FXML
     public void onContactReport() {
         ReportController reportController = new ReportController();
-        List<Appointment> allAppointments = new ArrayList<>();
-        for (Object customer : customerTable.getItems()) {
-            Customer existingCustomer = (Customer) customer;
-            allAppointments.addAll(existingCustomer.getAppointments());
-        }
-        reportController.showContactReport(allAppointments);
+        reportController.showContactReport();
     }
 
     /**
@@ -159,12 +242,7 @@ public class CustomerController
     @FXML
     public void onCustomerReport() {
         ReportController reportController = new ReportController();
-        List<Appointment> allAppointments = new ArrayList<>();
-        for (Object customer : customerTable.getItems()) {
-            Customer existingCustomer = (Customer) customer;
-            allAppointments.addAll(existingCustomer.getAppointments());
-        }
-        reportController.showCustomerReport(allAppointments);
+        reportController.showCustomerReport();
     }
 
     /**
@@ -182,7 +260,7 @@ public class CustomerController
                             Customer customer = getTableView().getItems().get(getIndex());
                             System.out.println("Customer: " + customer.getName());
                             try {
-                                appointmentController.showAppointments(customer.getAppointments());
+                                appointmentController.showAppointments(customer);
                             } catch (IOException e) {
                                 int x = 0;
                             }
@@ -207,31 +285,39 @@ public class CustomerController
         customerTable.getColumns().add(colBtn);
     }
 
+    /**
+     * Helper method that shows a reminder for an appointment about to start without blocking the window
+     * @param appointment appointment about to start
+     */
+    private void showReminder(Appointment appointment) {
+        Alert reminderAlert = new Alert(Alert.AlertType.INFORMATION);
+        reminderAlert.setTitle("Reminder");
+        reminderAlert.setHeaderText("Upcoming Appointment");
+        reminderAlert.setContentText("Appointment ID: " + appointment.getId() + "--- Appointment Time: "
+            + appointment.getStartDateString() + "\nCustomer ID: " + appointment.getCustomerId());
+        reminderAlert.show();
+    }
+
     /**
      * Helper method that will check if the user has an upcoming appointment in the next 15 minutes.
-     * @param customers list of customers
+     * The appointments are found with a range query on the time ordered appointment index.
      * @return label to show upcoming appointments or label to show there are no upcoming appointments.
      */
-    private String checkForUpcomingAppointment(List<Customer> customers) {
+    private String checkForUpcomingAppointment() {
         ZonedDateTime currentTime = ZonedDateTime.now().withZoneSameInstant(ZoneId.systemDefault());
-        List<Appointment> upcomingApps = new ArrayList<>();
+        List<Appointment> upcomingApps = DataManager.getInstance()
+            .appointmentsStartingBetween(currentTime, currentTime.plusMinutes(15));
 
-        for (Customer customer : customers) {
-            for(Appointment appointment : customer.getAppointments()) {
-                long minuteDiff = ChronoUnit.SECONDS.between(currentTime, appointment.getStartDate());
-                if (minuteDiff >= 0 && minuteDiff <=15) {
-                    upcomingApps.add(appointment);
-                }
-            }
+        if (upcomingApps.isEmpty()) {
+            return "There are no upcoming appointments at the moment!";
         }
 
-        String upcomingAppointments = "";
+        StringBuilder upcomingAppointments = new StringBuilder();
         for (Appointment appointment : upcomingApps) {
-            upcomingAppointments = upcomingAppointments + "Appointment ID: " + appointment.getId() + "--- Appointment Time: " + appointment.getStartDateString() + "\n";
-            return upcomingAppointments;
+            upcomingAppointments.append("Appointment ID: ").append(appointment.getId())
+                .append("--- Appointment Time: ").append(appointment.getStartDateString()).append("\n");
         }
-
-        return "There are no upcoming appointments at the moment!";
+        return upcomingAppointments.toString();
     }
 
 }
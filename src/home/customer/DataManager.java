@@ -1,32 +1,91 @@
 package home.customer;
 
-import java.sql.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.temporal.WeekFields;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
-import home.JDBC;
 import home.LogInController;
 import home.appointments.Appointment;
+import home.appointments.AppointmentTimeline;
 import home.appointments.Contact;
+import home.appointments.ReminderScheduler;
 import home.appointments.User;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import home.metrics.Counter;
+import home.metrics.MetricRegistry;
+import home.reports.ReportAggregates;
 
 /**
  * Class that encapsulates the logic for interacting with database data.
  */
 public class DataManager
 {
+    private final IntIndex<Country> countryIndex = new IntIndex<>();
+    private final IntIndex<Division> divisionIndex = new IntIndex<>();
+    private final IntIndex<Contact> contactIndex = new IntIndex<>();
+    private final IntIndex<User> userIndex = new IntIndex<>();
+    private final IntIndex<Appointment> appointmentIndex = new IntIndex<>();
+    private final IntIndex<Customer> customerIndex = new IntIndex<>();
     public List<Customer> customers = new ArrayList<>();
-    public List<Country> countries = getAllCountries();
-    public List<Division> divisions = getAllDivisions();
-    public List<Contact> contacts = getAllContacts();
-    public List<User> users = getAllUsers();
-    public List<Appointment> appointments = getAllAppointments();
+    public List<Country> countries = new ArrayList<>();
+    public List<Division> divisions = new ArrayList<>();
+    public List<Contact> contacts = new ArrayList<>();
+    public List<User> users = new ArrayList<>();
+    // removing an appointment moves the last one into its place, so the list is in no particular order
+    public List<Appointment> appointments = new ArrayList<>();
+    private final IntIndex<Integer> appointmentPositions = new IntIndex<>();
+    private final AppointmentTimeline appointmentTimeline = new AppointmentTimeline();
+    private final ReportAggregates reportAggregates = new ReportAggregates();
+    private ReminderScheduler reminderScheduler = null;
+    private CompletableFuture<Void> referenceDataLoad = null;
+    private volatile StartupLoader startupLoader = null;
+    private volatile WriteBehindQueue writeBehindQueue = null;
+    private DeltaSync deltaSync = null;
+    private volatile MeteredRepository repository = new MeteredRepository(Repository.forName(System.getProperty("repository")));
+    private Path snapshotFile = null;
+    private List<Customer> snapshotCustomers = null;
+    private long loadedTombstoneId = -1;
+    // read alongside the loading stages, only the delta sync needs it
+    private volatile CompletableFuture<Void> tombstoneIdRead = CompletableFuture.completedFuture(null);
+    private boolean warmStarted = false;
+    private volatile boolean referenceDataFailed = false;
+    private static final ExecutorService backgroundExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "data-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int WRITE_BEHIND_BATCH_SIZE = 500;
+    private static final MetricRegistry metrics = MetricRegistry.getInstance();
+    private static final Counter SNAPSHOT_HITS = metrics.counter("cache.snapshot.hits");
+    private static final Counter SNAPSHOT_MISSES = metrics.counter("cache.snapshot.misses");
+    private static final Counter CUSTOMER_HITS = metrics.counter("cache.customer.hits");
+    private static final Counter CUSTOMER_MISSES = metrics.counter("cache.customer.misses");
+    private static final Counter APPOINTMENT_HITS = metrics.counter("cache.appointment.hits");
+    private static final Counter APPOINTMENT_MISSES = metrics.counter("cache.appointment.misses");
+    private static final Counter USER_HITS = metrics.counter("cache.user.hits");
+    private static final Counter USER_MISSES = metrics.counter("cache.user.misses");
+    private static final Counter CONTACT_HITS = metrics.counter("cache.contact.hits");
+    private static final Counter CONTACT_MISSES = metrics.counter("cache.contact.misses");
     private static DataManager instance = new DataManager();
 
     /**
@@ -51,127 +110,375 @@ public class DataManager
     }
 
     /**
-     * Method that retrieves all appointments from database
-     * Lambda expression used to find user from list of users
-     * Lamdba expression used to find contact from list of contacts
+     * Retrieves the executor used to run database work away from the JavaFX application thread
+     *
+     * @return executor backed by daemon threads
+     */
+    public static Executor getBackgroundExecutor() {
+        return backgroundExecutor;
+    }
+
+    /**
+     * Loads countries, divisions, contacts, users and appointments from the database
+     * These are needed before customers can be loaded or a user can log in
+     */
+    public void loadReferenceData() {
+        loadReferenceDataAsync().join();
+    }
+
+    /**
+     * Starts loading the reference data on background threads
+     * When a snapshot file is enabled and valid the data comes from the snapshot and only the users are read
+     * from the database, otherwise divisions wait for countries and appointments wait for users and contacts
+     * while the other loads run in parallel
+     * Calling it again returns the load already started
+     *
+     * @return future that completes when the reference data is loaded
+     */
+    public synchronized CompletableFuture<Void> loadReferenceDataAsync() {
+        if (referenceDataLoad == null) {
+            if (snapshotFile != null) {
+                referenceDataLoad = CompletableFuture.supplyAsync(() -> DataSnapshot.read(snapshotFile), backgroundExecutor)
+                    .thenCompose(snapshot -> {
+                        (snapshot != null ? SNAPSHOT_HITS : SNAPSHOT_MISSES).increment();
+                        return snapshot != null ? loadFromSnapshot(snapshot) : loadFromDatabase();
+                    });
+            } else {
+                referenceDataLoad = loadFromDatabase();
+            }
+        }
+        return referenceDataLoad;
+    }
+
+    /**
+     * Helper method that reads the reference data from the database as a graph of loading stages
+     * The latest tombstone id is read at the same time as the first stages, off the loading critical path,
+     * and startSync waits for it before it starts following deletions
+     *
+     * @return future that completes when the reference data is loaded
+     */
+    private CompletableFuture<Void> loadFromDatabase() {
+        tombstoneIdRead = CompletableFuture.runAsync(this::readLatestTombstoneId, backgroundExecutor);
+        StartupLoader loader = new StartupLoader(backgroundExecutor);
+        StartupLoader.Stage countriesStage = loader.stage("countries", () -> countries = getAllCountries());
+        loader.stage("divisions", () -> divisions = getAllDivisions(), countriesStage);
+        StartupLoader.Stage contactsStage = loader.stage("contacts", () -> contacts = getAllContacts());
+        StartupLoader.Stage usersStage = loader.stage("users", () -> users = getAllUsers());
+        loader.stage("appointments", () -> {
+            appointments = getAllAppointments();
+            indexAppointmentPositions();
+            synchronized (appointmentTimeline) {
+                appointmentTimeline.replaceAll(appointments);
+            }
+            reportAggregates.replaceAll(appointments);
+        }, contactsStage, usersStage);
+        startupLoader = loader;
+        return loader.run().thenRun(() -> System.out.println(loader.describeTimings()));
+    }
+
+    /**
+     * Helper method that reads the latest tombstone id, the point the delta sync follows deletions from
+     * When it cannot be read the sync starts following deletions at its first poll
+     */
+    private void readLatestTombstoneId() {
+        try {
+            loadedTombstoneId = repository.findLatestTombstoneId();
+        } catch (SQLException e) {
+            System.out.println("Error with retrieving the latest tombstone " + e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method that takes the reference data, appointments and customers from a snapshot
+     * Users are read from the database because the snapshot does not store passwords, and countries, divisions
+     * and contacts are read again because the delta sync does not follow those tables
+     * The customers are handed out by the next loadCustomers call and reconciled by startSync
+     *
+     * @param snapshot snapshot that was read
+     * @return future that completes when the users and the other reference rows are read again and the snapshot
+     * records point to them
+     */
+    private CompletableFuture<Void> loadFromSnapshot(DataSnapshot snapshot) {
+        long started = System.nanoTime();
+        countries = snapshot.getCountries();
+        countries.forEach(country -> countryIndex.put(country.getCountryId(), country));
+        divisions = snapshot.getDivisions();
+        divisions.forEach(division -> divisionIndex.put(division.getDivisionId(), division));
+        contacts = snapshot.getContacts();
+        contacts.forEach(contact -> contactIndex.put(contact.getId(), contact));
+        users = snapshot.getUsers();
+        users.forEach(user -> userIndex.put(user.getId(), user));
+        appointments = snapshot.getAppointments();
+        appointments.forEach(appointment -> appointmentIndex.put(appointment.getId(), appointment));
+        indexAppointmentPositions();
+        synchronized (appointmentTimeline) {
+            appointmentTimeline.replaceAll(appointments);
+        }
+        reportAggregates.replaceAll(appointments);
+        snapshotCustomers = snapshot.getCustomers();
+        loadedTombstoneId = snapshot.getTombstoneId();
+        warmStarted = true;
+        System.out.println("Snapshot loaded in " + (System.nanoTime() - started) / 1_000_000 + "ms ("
+            + appointments.size() + " appointments, " + snapshotCustomers.size() + " customers)");
+        return CompletableFuture.allOf(CompletableFuture.runAsync(() -> users = getAllUsers(), backgroundExecutor),
+            CompletableFuture.runAsync(this::reloadReferenceRows, backgroundExecutor))
+            .thenRun(this::resolveSnapshotReferences);
+    }
+
+    /**
+     * Helper method that points the appointments and customers of a snapshot to the users, contacts and divisions
+     * read again from the database, so edits made to those rows through the live lists reach them
+     * Records whose related row is no longer in the database keep the row from the snapshot
+     */
+    private void resolveSnapshotReferences() {
+        for (Appointment appointment : appointments) {
+            Contact contact = contactIndex.get(appointment.getContact().getId());
+            if (contact != null) {
+                appointment.setContact(contact);
+            }
+            User user = userIndex.get(appointment.getUserId());
+            if (user != null) {
+                appointment.setUser(user);
+            }
+        }
+        List<Customer> fromSnapshot;
+        synchronized (this) {
+            fromSnapshot = snapshotCustomers;
+        }
+        if (fromSnapshot != null) {
+            for (Customer customer : fromSnapshot) {
+                Division division = divisionIndex.get(customer.getDivision().getDivisionId());
+                if (division != null) {
+                    customer.setDivision(division);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that replaces the countries, divisions and contacts taken from a snapshot with the rows in the
+     * database, so rows added since the snapshot was written resolve when appointments and customers are synced
+     * The snapshot rows are kept when the database cannot be read
+     */
+    private void reloadReferenceRows() {
+        try {
+            List<Country> countriesFromDB = repository.findCountries();
+            IntIndex<Country> countriesById = new IntIndex<>();
+            countriesFromDB.forEach(country -> countriesById.put(country.getCountryId(), country));
+            List<Division> divisionsFromDB = repository.findDivisions(countriesById::get);
+            List<Contact> contactsFromDB = repository.findContacts();
+            countriesFromDB.forEach(country -> countryIndex.put(country.getCountryId(), country));
+            divisionsFromDB.forEach(division -> divisionIndex.put(division.getDivisionId(), division));
+            contactsFromDB.forEach(contact -> contactIndex.put(contact.getId(), contact));
+            countries = countriesFromDB;
+            divisions = divisionsFromDB;
+            contacts = contactsFromDB;
+        } catch (SQLException e) {
+            System.out.println("Error with reloading reference data " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps a local snapshot of the loaded data for the next launch, must be called before the data is loaded
+     * The snapshot is read by loadReferenceDataAsync and written by saveSnapshot
+     *
+     * @param file snapshot file
+     */
+    public synchronized void enableSnapshot(Path file) {
+        snapshotFile = file;
+    }
+
+    /**
+     * Writes the loaded data to the snapshot file, used when the application exits
+     * Nothing is written when no snapshot file is enabled or the customers were never loaded
+     */
+    public void saveSnapshot() {
+        if (snapshotFile == null || customers.isEmpty()) {
+            return;
+        }
+        long tombstoneId = deltaSync != null ? deltaSync.getTombstoneWatermark() : loadedTombstoneId;
+        try {
+            DataSnapshot.write(snapshotFile, countries, divisions, contacts, users, customers, appointments,
+                Math.max(0, tombstoneId));
+        } catch (IOException e) {
+            System.out.println("Error with saving the snapshot " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks if reading countries, divisions, contacts, users or appointments failed, in which case the lists
+     * hold only what could be read
+     *
+     * @return true if a read of the reference data failed otherwise false
+     */
+    public boolean hasReferenceDataErrors() {
+        return referenceDataFailed;
+    }
+
+    /**
+     * Retrieves how long each reference data stage took to load
+     *
+     * @return stage durations in milliseconds by stage name, empty before loading started
+     */
+    public synchronized Map<String, Long> getStartupTimings() {
+        return startupLoader != null ? startupLoader.getStageMillis() : Map.of();
+    }
+
+    /**
+     * Method that retrieves all appointments from database and indexes them by id
+     * Users and contacts are looked up through their id indexes
      * @return list of appointments from database
      */
     public List<Appointment> getAllAppointments() {
         List<Appointment> appointments = new ArrayList<>();
         try {
-            String query = "select appointment_id, title, description, location, type, " +
-                "start, end, customer_id, user_id, contact_id, create_date, created_by, " +
-                    "last_update, last_updated_by from appointments";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-            ResultSet resultSet = myStmt.executeQuery();
-            while (resultSet.next()) {
-                int appointmentId = resultSet.getInt("appointment_id");
-                String title = resultSet.getString("title");
-                String description = resultSet.getString("description");
-                String location = resultSet.getString("location");
-                String type = resultSet.getString("type");
-                String createdBy = resultSet.getString("created_by");
-                String updatedBy = resultSet.getString("last_updated_by");
-                int customerId = resultSet.getInt("customer_id");
-                int userId = resultSet.getInt("user_id");
-                int contactId = resultSet.getInt("contact_id");
-                Timestamp startTimestamp = resultSet.getTimestamp("start");
-                ZonedDateTime startZonedDateTime = ZonedDateTime.ofInstant(startTimestamp.toInstant(), ZoneId.systemDefault());
-                Timestamp endTimestamp = resultSet.getTimestamp("end");
-                ZonedDateTime endZonedDateTime = ZonedDateTime.ofInstant(endTimestamp.toInstant(), ZoneId.systemDefault());
-                User user = users.stream().filter(u -> u.getId() == userId).findFirst().get();
-                Contact contact = contacts.stream().filter(c -> c.getId() == contactId).findFirst().get();
-                Appointment appointment = new Appointment(appointmentId, title, description, location, type, startZonedDateTime,
-                    endZonedDateTime, customerId, contact, user);
-                Timestamp created = resultSet.getTimestamp("create_date");
-                ZonedDateTime createdZone = ZonedDateTime.ofInstant(created.toInstant(), ZoneId.systemDefault());
-                Timestamp updated = resultSet.getTimestamp("last_update");
-                ZonedDateTime updatedZone = ZonedDateTime.ofInstant(updated.toInstant(), ZoneId.systemDefault());
-                appointment.setCreatedBy(createdBy);
-                appointment.setCreateDate(createdZone);
-                appointment.setLastUpdatedBy(updatedBy);
-                appointment.setLastUpdate(updatedZone);
-                appointments.add(appointment);
-            }
-            JDBC.getConnection().close();
+            appointments = repository.findAppointments(contactIndex::get, userIndex::get);
         } catch (SQLException e) {
             System.out.println("Error with retrieving appointments " + e.getMessage());
+            referenceDataFailed = true;
+        }
+        for (Appointment appointment : appointments) {
+            appointmentIndex.put(appointment.getId(), appointment);
         }
         return  appointments;
     }
+
     /**
      * Loads the customers from the database and stores a local copy
      */
     public void loadCustomers() throws SQLException {
-        String query = "select customer_id, customer_name, address, postal_code, phone, division_id, create_date, " +
-                "created_by, last_update, last_updated_by from customers";
-        PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-
-        ResultSet resultSet = myStmt.executeQuery();
-        while (resultSet.next()) {
-            int customerId = resultSet.getInt("customer_id");
-            String customerName = resultSet.getString("customer_name");
-            String customerAddress = resultSet.getString("address");
-            String customerPhone = resultSet.getString("phone");
-            String customerPostal = resultSet.getString("postal_code");
-            String createdBy = resultSet.getString("created_by");
-            String updatedBy = resultSet.getString("last_updated_by");
-            int divisionId = resultSet.getInt("division_id");
-            Division division = getDivisionById(divisionId);
-            List<Appointment> customerApppointments = appointments.stream().
-                filter(a -> a.getCustomerId() == customerId).collect(Collectors.toList());
-            Customer customer = new Customer(customerId, customerName, customerAddress, customerPostal, customerPhone,
-                customerApppointments, division);
-            Timestamp created = resultSet.getTimestamp("create_date");
-            ZonedDateTime createdZone = ZonedDateTime.ofInstant(created.toInstant(), ZoneId.systemDefault());
-            Timestamp updated = resultSet.getTimestamp("last_update");
-            ZonedDateTime updatedZone = ZonedDateTime.ofInstant(updated.toInstant(), ZoneId.systemDefault());
-            customer.setCreatedBy(createdBy);
-            customer.setCreateDate(createdZone);
-            customer.setLastUpdatedBy(updatedBy);
-            customer.setLastUpdate(updatedZone);
+        loadCustomers(this::registerCustomers, 500);
+    }
+
+    /**
+     * Reads the customers from the database and hands them over in batches as the rows arrive
+     * Appointments are grouped by customer id in a single pass before the customer rows are read
+     * Batches are not stored by this method, the consumer is expected to call registerCustomers
+     *
+     * @param onBatch consumer receiving each batch of customers
+     * @param batchSize number of customers per batch
+     */
+    public void loadCustomers(Consumer<List<Customer>> onBatch, int batchSize) throws SQLException {
+        List<Customer> fromSnapshot = takeSnapshotCustomers();
+        if (fromSnapshot != null) {
+            for (int i = 0; i < fromSnapshot.size(); i += batchSize) {
+                onBatch.accept(new ArrayList<>(fromSnapshot.subList(i, Math.min(fromSnapshot.size(), i + batchSize))));
+            }
+            return;
+        }
+        IntIndex<List<Appointment>> appointmentsByCustomer = groupAppointmentsByCustomer(appointments);
+        List<Customer> batch = new ArrayList<>(Math.min(batchSize, 10_000));
+        repository.findCustomers(this::getDivisionById, appointmentsByCustomer::remove, customer -> {
+            batch.add(customer);
+            if (batch.size() >= batchSize) {
+                onBatch.accept(new ArrayList<>(batch));
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            onBatch.accept(batch);
+        }
+    }
+
+    /**
+     * Helper method that hands out the customers of the snapshot once, later loads read the database
+     *
+     * @return customers of the snapshot, or null when there are none to hand out
+     */
+    private synchronized List<Customer> takeSnapshotCustomers() {
+        List<Customer> fromSnapshot = snapshotCustomers;
+        snapshotCustomers = null;
+        return fromSnapshot;
+    }
+
+    /**
+     * Counts the customers stored in the database, used to report loading progress
+     *
+     * @return number of customers
+     */
+    public int countCustomers() throws SQLException {
+        synchronized (this) {
+            if (snapshotCustomers != null) {
+                return snapshotCustomers.size();
+            }
+        }
+        return repository.countCustomers();
+    }
+
+    /**
+     * Stores loaded customers in the local list of customers and the customer id index
+     *
+     * @param loadedCustomers customers read from the database
+     */
+    public void registerCustomers(List<Customer> loadedCustomers) {
+        for (Customer customer : loadedCustomers) {
             customers.add(customer);
+            customerIndex.put(customer.getId(), customer);
         }
-        JDBC.getConnection().close();
+    }
+
+    /**
+     * Helper method that buckets appointments by their customer id
+     * @param appointments appointments to group
+     * @return index of appointment lists by customer id
+     */
+    private static IntIndex<List<Appointment>> groupAppointmentsByCustomer(List<Appointment> appointments) {
+        IntIndex<List<Appointment>> appointmentsByCustomer = new IntIndex<>();
+        for (Appointment appointment : appointments) {
+            List<Appointment> customerAppointments = appointmentsByCustomer.get(appointment.getCustomerId());
+            if (customerAppointments == null) {
+                customerAppointments = new ArrayList<>();
+                appointmentsByCustomer.put(appointment.getCustomerId(), customerAppointments);
+            }
+            customerAppointments.add(appointment);
+        }
+        return appointmentsByCustomer;
     }
 
     /**
      * Method to retrieve a user by id
-     * Lambda expression used her to find a user by its id from list of users
      * @param id user id
      * @return user object found otherwise null
      */
     public User getUserById(int id) {
-        Optional<User> user = users.stream().filter(u -> u.getId() == id).findFirst();
-        if (user.isPresent()) {
-            return user.get();
-        }
-        return null;
+        User user = userIndex.get(id);
+        (user != null ? USER_HITS : USER_MISSES).increment();
+        return user;
+    }
+
+    /**
+     * Method to retrieve a contact by id
+     * @param id contact id
+     * @return contact object found otherwise null
+     */
+    public Contact getContactById(int id) {
+        Contact contact = contactIndex.get(id);
+        (contact != null ? CONTACT_HITS : CONTACT_MISSES).increment();
+        return contact;
     }
 
     /**
      * Method to retrieve a customer by id
-     * Lambda expression used here to find a customer by its id from list of customers
      *
      * @param id identifier to filter by
      * @return the customer found if nothing found will return null
      */
     public Customer getCustomerById(int id) {
-        Optional<Customer> customer = customers.stream().filter(c -> c.getId() == id).findFirst();
-        if (customer.isPresent()) {
-            return customer.get();
-        }
-        return null;
+        Customer customer = customerIndex.get(id);
+        (customer != null ? CUSTOMER_HITS : CUSTOMER_MISSES).increment();
+        return customer;
     }
 
     /**
-     * returns the list of customers in the application
+     * Method to retrieve an appointment by id
      *
-     * @return observable list of customers
+     * @param id appointment id
+     * @return the appointment found otherwise null
      */
-    public ObservableList<Customer> getCustomers()
-    {
-        return FXCollections.observableArrayList(customers);
+    public Appointment getAppointmentById(int id) {
+        Appointment appointment = appointmentIndex.get(id);
+        (appointment != null ? APPOINTMENT_HITS : APPOINTMENT_MISSES).increment();
+        return appointment;
     }
 
     /**
@@ -187,49 +494,552 @@ public class DataManager
         int customerId = insertCustomer(customer);
         customer.setId(customerId);
         customers.add(customer);
+        customerIndex.put(customerId, customer);
     }
 
     /**
      * logic to remove a customer from the list of customers
      *
      * @param customer
+     * @return true if the customer was deleted from the database otherwise false
+     */
+    public boolean deleteCustomer(Customer customer) {
+        return deleteCustomers(List.of(customer));
+    }
+
+    /**
+     * logic to remove several customers and their appointments from the local lists
+     * The local lists are only changed once the database delete has been committed
+     *
+     * @param customersToDelete customers to delete
+     * @return true if the customers were deleted from the database otherwise false
+     */
+    public boolean deleteCustomers(List<Customer> customersToDelete) {
+        if (!removeCustomers(customersToDelete)) {
+            return false;
+        }
+        forgetCustomers(customersToDelete);
+        return true;
+    }
+
+    /**
+     * Helper method that removes customers and their appointments from the local lists and indexes
+     *
+     * @param customersToDelete customers that are no longer in the database
+     */
+    private void forgetCustomers(List<Customer> customersToDelete) {
+        IntIndex<Customer> deletedCustomers = new IntIndex<>(customersToDelete.size());
+        for (Customer customer : customersToDelete) {
+            deletedCustomers.put(customer.getId(), customer);
+            for (Appointment appointment : customer.getAppointments()) {
+                appointmentIndex.remove(appointment.getId());
+                synchronized (appointmentTimeline) {
+                    appointmentTimeline.remove(appointment);
+                }
+                reportAggregates.appointmentRemoved(appointment);
+                if (reminderScheduler != null) {
+                    reminderScheduler.appointmentRemoved(appointment);
+                }
+            }
+            customerIndex.remove(customer.getId());
+            if (writeBehindQueue != null) {
+                writeBehindQueue.customerRemoved(customer.getId());
+                customer.getAppointments().forEach(a -> writeBehindQueue.appointmentRemoved(a.getId()));
+            }
+        }
+        // one pass over each list removes every deleted customer and appointment
+        appointments.removeIf(a -> deletedCustomers.containsKey(a.getCustomerId()));
+        indexAppointmentPositions();
+        customers.removeIf(c -> deletedCustomers.containsKey(c.getId()));
+    }
+
+    /**
+     * Helper method that records the position of every appointment in the list of appointments, so an edited or
+     * removed appointment is found by id instead of by searching the list
      */
-    public void deleteCustomer(Customer customer) {
-        removeCustomer(customer);
-        //appointments.removeAll(customer.getAppointments());
-        customers.remove(customer);
+    private void indexAppointmentPositions() {
+        appointmentPositions.clear();
+        for (int i = 0; i < appointments.size(); i++) {
+            appointmentPositions.put(appointments.get(i).getId(), i);
+        }
     }
 
     /**
      * logic to edit a customer from the list of customers
-     * Lambda expression used here to find a customer by its id from list of customers
      *
      * @param customer
      */
     public void editCustomer(Customer customer) {
+        Customer existingCustomer = customerIndex.get(customer.getId());
+        if (existingCustomer != null && existingCustomer != customer) {
+            customer.trackChangesFrom(existingCustomer);
+            // columns of an earlier edit whose update failed are written again with this one
+            customer.markDirty(existingCustomer.getDirtyFields());
+        }
+        if (customer.getDirtyFields() == 0) {
+            // nothing was edited, so nothing is written
+            return;
+        }
         // TODO Convert Local Time Zone to UTC time zone for appointments dates
         customer.setLastUpdate(ZonedDateTime.now());
         customer.setLastUpdatedBy(LogInController.userLoggedOn.getUsername());
-        updateCustomer(customer);
-        Optional<Customer> existingCustomer = customers.stream().filter(c -> c.getId() == customer.getId()).findFirst();
-        if (existingCustomer.isPresent()) {
-            customers.set(customers.indexOf(existingCustomer.get()), customer);
+        saveCustomer(customer);
+        customerIndex.put(customer.getId(), customer);
+        if (existingCustomer != null && existingCustomer != customer) {
+            customers.set(customers.indexOf(existingCustomer), customer);
+        }
+    }
+
+    /**
+     * Method to retrieve the appointments starting inside a time range, ordered by start time
+     * Only the appointments inside the range are visited through the time ordered appointment index
+     *
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @return list of appointments starting in the range
+     */
+    public List<Appointment> appointmentsStartingBetween(ZonedDateTime from, ZonedDateTime to) {
+        List<Appointment> appointmentsInRange = new ArrayList<>();
+        synchronized (appointmentTimeline) {
+            appointmentTimeline.forEachStartingBetween(from.toEpochSecond(), to.toEpochSecond(), appointmentsInRange::add);
+        }
+        return appointmentsInRange;
+    }
+
+    /**
+     * Method to retrieve one customer's appointments starting inside a time range, ordered by start time
+     * Only the appointments inside the range are visited through the customer's appointment index
+     *
+     * @param from start of the range, inclusive
+     * @param to end of the range, exclusive
+     * @param customerId id of the customer
+     * @return list of appointments starting in the range, empty if the customer does not exist
+     */
+    public List<Appointment> appointmentsStartingBetween(ZonedDateTime from, ZonedDateTime to, int customerId) {
+        Customer customer = getCustomerById(customerId);
+        if (customer == null) {
+            return new ArrayList<>();
+        }
+        return customer.getAppointmentsStartingBetween(from, to);
+    }
+
+    /**
+     * Method to retrieve one customer's appointments starting in the week of a day, ordered by start time
+     * The week starts on the first day of week of the default locale
+     *
+     * @param day any day of the week
+     * @param customerId id of the customer
+     * @return list of appointments starting that week
+     */
+    public List<Appointment> appointmentsOfWeek(LocalDate day, int customerId) {
+        LocalDate weekStart = day.with(WeekFields.of(Locale.getDefault()).dayOfWeek(), 1);
+        ZonedDateTime from = weekStart.atStartOfDay(ZoneId.systemDefault());
+        ZonedDateTime to = weekStart.plusWeeks(1).atStartOfDay(ZoneId.systemDefault());
+        return appointmentsStartingBetween(from, to, customerId);
+    }
+
+    /**
+     * Method to retrieve one customer's appointments starting in the month of a day, ordered by start time
+     *
+     * @param day any day of the month
+     * @param customerId id of the customer
+     * @return list of appointments starting that month
+     */
+    public List<Appointment> appointmentsOfMonth(LocalDate day, int customerId) {
+        LocalDate monthStart = day.withDayOfMonth(1);
+        ZonedDateTime from = monthStart.atStartOfDay(ZoneId.systemDefault());
+        ZonedDateTime to = monthStart.plusMonths(1).atStartOfDay(ZoneId.systemDefault());
+        return appointmentsStartingBetween(from, to, customerId);
+    }
+
+    /**
+     * Retrieves the report totals kept up to date as appointments change
+     *
+     * @return report aggregates of all appointments
+     */
+    public ReportAggregates getReportAggregates() {
+        return reportAggregates;
+    }
+
+    /**
+     * Starts firing a reminder shortly before each appointment starts, for as long as the application runs
+     * Calling it again while reminders are running has no effect
+     *
+     * @param onReminder action to run when a reminder fires, called on a background thread
+     */
+    public void startReminders(Consumer<Appointment> onReminder) {
+        if (reminderScheduler == null) {
+            reminderScheduler = new ReminderScheduler(Duration.ofMinutes(15), Duration.ofHours(6),
+                this::appointmentsStartingBetween, onReminder);
+            reminderScheduler.start();
+        }
+    }
+
+    /**
+     * Stops the appointment reminders
+     */
+    public void stopReminders() {
+        if (reminderScheduler != null) {
+            reminderScheduler.stop();
+            reminderScheduler = null;
         }
     }
 
+    /**
+     * Starts polling the database for customers and appointments changed or deleted by other workstations
+     * Rows changed after the latest loaded last_update are merged into the local lists and indexes
+     * Calling it again while the sync is running has no effect
+     *
+     * @param interval time between two polls, zero to only reconcile data loaded from a snapshot
+     * @param applyExecutor executor the changes are merged on, the thread that owns the local lists
+     * @param onChanges action to run on the apply executor after changes were merged
+     */
+    public void startSync(Duration interval, Executor applyExecutor, Consumer<DeltaSync.Changes> onChanges) {
+        if (deltaSync == null) {
+            ZonedDateTime watermark = ZonedDateTime.ofInstant(Instant.EPOCH, ZoneId.systemDefault());
+            for (Customer customer : customers) {
+                if (customer.getLastUpdate() != null && customer.getLastUpdate().isAfter(watermark)) {
+                    watermark = customer.getLastUpdate();
+                }
+            }
+            for (Appointment appointment : appointments) {
+                if (appointment.getLastUpdate() != null && appointment.getLastUpdate().isAfter(watermark)) {
+                    watermark = appointment.getLastUpdate();
+                }
+            }
+            if (interval.isZero() && !warmStarted) {
+                return;
+            }
+            // a tombstone id that failed to read leaves -1, so the sync follows deletions from its first poll
+            tombstoneIdRead.exceptionally(e -> null).join();
+            deltaSync = new DeltaSync(this, interval, applyExecutor, onChanges);
+            // data from a snapshot is reconciled right away, even when periodic polling is off
+            deltaSync.start(watermark, loadedTombstoneId, warmStarted);
+        }
+    }
+
+    /**
+     * Stops polling the database for changes
+     * The latest tombstone read is kept, so a snapshot saved afterwards starts the next sync from it
+     */
+    public void stopSync() {
+        if (deltaSync != null) {
+            deltaSync.stop();
+            if (deltaSync.getTombstoneWatermark() >= 0) {
+                loadedTombstoneId = deltaSync.getTombstoneWatermark();
+            }
+            deltaSync = null;
+        }
+    }
+
+    /**
+     * Reads the customers whose last_update is at or after a time
+     *
+     * @param since earliest last_update to read
+     * @return changed customers, without appointments
+     * @throws SQLException if the customers cannot be read
+     */
+    List<Customer> fetchCustomersChangedSince(Timestamp since) throws SQLException {
+        return repository.findCustomersChangedSince(since, this::getDivisionById);
+    }
+
+    /**
+     * Reads the appointments whose last_update is at or after a time
+     *
+     * @param since earliest last_update to read
+     * @return changed appointments
+     * @throws SQLException if the appointments cannot be read
+     */
+    List<Appointment> fetchAppointmentsChangedSince(Timestamp since) throws SQLException {
+        return repository.findAppointmentsChangedSince(since, contactIndex::get, userIndex::get);
+    }
+
+    /**
+     * Reads the id of every customer in the database
+     *
+     * @return customer ids in ascending order
+     * @throws SQLException if the ids cannot be read
+     */
+    int[] fetchCustomerIds() throws SQLException {
+        return repository.findCustomerIds();
+    }
+
+    /**
+     * Reads the id of every appointment in the database
+     *
+     * @return appointment ids in ascending order
+     * @throws SQLException if the ids cannot be read
+     */
+    int[] fetchAppointmentIds() throws SQLException {
+        return repository.findAppointmentIds();
+    }
+
+    /**
+     * Reads the tombstones recorded after a tombstone id, oldest first
+     *
+     * @param afterId id of the last tombstone already applied
+     * @return tombstones of the rows deleted since then
+     * @throws SQLException if the tombstones cannot be read
+     */
+    List<DeltaSync.Tombstone> fetchTombstonesAfter(long afterId) throws SQLException {
+        return repository.findTombstonesAfter(afterId);
+    }
+
+    /**
+     * Reads the id of the latest tombstone, the point deletions are synced from
+     *
+     * @return latest tombstone id, 0 when there is none
+     * @throws SQLException if the tombstones cannot be read
+     */
+    long fetchLatestTombstoneId() throws SQLException {
+        return repository.findLatestTombstoneId();
+    }
+
+    /**
+     * Merges rows changed or deleted by other workstations into the local lists and indexes
+     * Records with unsaved local changes keep the local values, rows that match the local copy are skipped
+     *
+     * @param changedCustomers customers read from the database
+     * @param changedAppointments appointments read from the database
+     * @param tombstones rows deleted from the database
+     * @return the changes that were merged
+     */
+    DeltaSync.Changes applyRemoteChanges(List<Customer> changedCustomers, List<Appointment> changedAppointments,
+        List<DeltaSync.Tombstone> tombstones)
+    {
+        DeltaSync.Changes changes = new DeltaSync.Changes();
+        for (Customer remoteCustomer : changedCustomers) {
+            Customer customer = customerIndex.get(remoteCustomer.getId());
+            if (customer == null) {
+                registerCustomers(List.of(remoteCustomer));
+                changes.customerAdded(remoteCustomer);
+            } else if (customer.getDirtyFields() == 0) {
+                remoteCustomer.trackChangesFrom(customer);
+                if (remoteCustomer.getDirtyFields() != 0) {
+                    // the stored customer is updated in place so its appointments and table row stay attached
+                    customer.setName(remoteCustomer.getName());
+                    customer.setAddress(remoteCustomer.getAddress());
+                    customer.setPostalCode(remoteCustomer.getPostalCode());
+                    customer.setPhoneNumber(remoteCustomer.getPhoneNumber());
+                    customer.setDivision(remoteCustomer.getDivision());
+                    customer.setLastUpdate(remoteCustomer.getLastUpdate());
+                    customer.setLastUpdatedBy(remoteCustomer.getLastUpdatedBy());
+                    customer.clearDirtyFields(~0);
+                    changes.customerChanged(customer);
+                }
+            }
+        }
+        for (Appointment remoteAppointment : changedAppointments) {
+            Appointment appointment = appointmentIndex.get(remoteAppointment.getId());
+            if (appointment != null) {
+                remoteAppointment.trackChangesFrom(appointment);
+                if (appointment.getDirtyFields() != 0 || remoteAppointment.getDirtyFields() == 0) {
+                    continue;
+                }
+                forgetAppointment(appointment);
+            }
+            remoteAppointment.clearDirtyFields(~0);
+            Customer owner = customerIndex.get(remoteAppointment.getCustomerId());
+            if (owner != null) {
+                owner.registerAppointment(remoteAppointment);
+            } else {
+                appointmentAdded(remoteAppointment);
+            }
+            changes.appointmentChanged();
+        }
+        List<Customer> deletedCustomers = new ArrayList<>();
+        for (DeltaSync.Tombstone tombstone : tombstones) {
+            if (DeltaSync.Tombstone.APPOINTMENTS.equals(tombstone.getTableName())) {
+                Appointment appointment = appointmentIndex.get(tombstone.getRecordId());
+                if (appointment != null) {
+                    if (writeBehindQueue != null) {
+                        writeBehindQueue.appointmentRemoved(appointment.getId());
+                    }
+                    forgetAppointment(appointment);
+                    changes.appointmentDeleted();
+                }
+            } else if (DeltaSync.Tombstone.CUSTOMERS.equals(tombstone.getTableName())) {
+                Customer customer = customerIndex.get(tombstone.getRecordId());
+                if (customer != null) {
+                    deletedCustomers.add(customer);
+                    changes.customerDeleted(customer);
+                }
+            }
+        }
+        if (!deletedCustomers.isEmpty()) {
+            forgetCustomers(deletedCustomers);
+        }
+        return changes;
+    }
+
+    /**
+     * Helper method that removes an appointment from its customer and from the local lists and indexes
+     *
+     * @param appointment appointment that is no longer stored as it is
+     */
+    private void forgetAppointment(Appointment appointment) {
+        Customer owner = customerIndex.get(appointment.getCustomerId());
+        if (owner != null) {
+            owner.unregisterAppointment(appointment);
+        } else {
+            appointmentRemoved(appointment);
+        }
+    }
+
+    /**
+     * Retrieves the repository records are loaded and saved through
+     * Every call made through it is recorded in the db latency metrics, getDelegate tells which store is in use
+     *
+     * @return the repository
+     */
+    public MeteredRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Loads and saves records through another repository from now on, must be called before the data is loaded
+     * The repository is chosen at startup by the repository system property, memory for the in-memory store
+     * and MySQL otherwise
+     * The data manager times every call it makes to the repository in the db latency metrics
+     *
+     * @param repository repository to use
+     */
+    public synchronized void setRepository(Repository repository) {
+        this.repository = new MeteredRepository(repository);
+    }
+
+    /**
+     * Saves customer and appointment edits in the background from now on
+     * Edits are kept in a journal file until they are saved, and edits left there by a previous run are saved first
+     *
+     * @param journalFile file the pending edits are kept in
+     * @param maxDelayMillis longest time an edit waits before it is sent to the database
+     * @throws IOException if the journal cannot be opened
+     */
+    public synchronized void enableWriteBehind(Path journalFile, long maxDelayMillis) throws IOException {
+        if (writeBehindQueue == null) {
+            writeBehindQueue = new WriteBehindQueue(this, journalFile, maxDelayMillis, WRITE_BEHIND_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Saves every pending edit and goes back to saving edits right away, used before the application exits
+     *
+     * @return true if nothing is left pending otherwise false
+     */
+    public synchronized boolean flushWrites() {
+        if (writeBehindQueue == null) {
+            return true;
+        }
+        boolean saved = writeBehindQueue.close();
+        writeBehindQueue = null;
+        return saved;
+    }
+
+    /**
+     * Saves an edited customer, in the background when write-behind is enabled otherwise right away
+     *
+     * @param customer customer to save
+     */
+    public void saveCustomer(Customer customer) {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.customerChanged(customer);
+        } else {
+            updateCustomer(customer);
+        }
+    }
+
+    /**
+     * Saves an edited appointment, in the background when write-behind is enabled otherwise right away
+     *
+     * @param appointment appointment to save
+     */
+    public void saveAppointment(Appointment appointment) {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.appointmentChanged(appointment);
+        } else {
+            updateAppointment(appointment);
+        }
+    }
+
+    /**
+     * Adds a newly created appointment to the list of appointments and its id index
+     * @param appointment appointment that was added
+     */
+    void appointmentAdded(Appointment appointment) {
+        appointmentPositions.put(appointment.getId(), appointments.size());
+        appointments.add(appointment);
+        appointmentIndex.put(appointment.getId(), appointment);
+        synchronized (appointmentTimeline) {
+            appointmentTimeline.add(appointment);
+        }
+        reportAggregates.appointmentAdded(appointment);
+        if (reminderScheduler != null) {
+            reminderScheduler.appointmentChanged(appointment);
+        }
+    }
+
+    /**
+     * Replaces an edited appointment in the list of appointments and its id index
+     * @param appointment appointment with the new values
+     * @return the appointment it replaced otherwise null
+     */
+    Appointment appointmentEdited(Appointment appointment) {
+        Appointment existingAppointment = appointmentIndex.put(appointment.getId(), appointment);
+        Integer position = appointmentPositions.get(appointment.getId());
+        if (position != null) {
+            appointments.set(position, appointment);
+        } else {
+            appointmentPositions.put(appointment.getId(), appointments.size());
+            appointments.add(appointment);
+        }
+        synchronized (appointmentTimeline) {
+            // the stored copy is found and replaced by id, whatever its start time was
+            appointmentTimeline.add(appointment);
+        }
+        reportAggregates.appointmentEdited(existingAppointment, appointment);
+        if (reminderScheduler != null) {
+            reminderScheduler.appointmentChanged(appointment);
+        }
+        return existingAppointment;
+    }
+
+    /**
+     * Removes an appointment from the list of appointments and its id index
+     * @param appointment appointment that was removed
+     * @return the indexed appointment that was removed otherwise null
+     */
+    Appointment appointmentRemoved(Appointment appointment) {
+        Appointment existingAppointment = appointmentIndex.remove(appointment.getId());
+        Integer position = appointmentPositions.remove(appointment.getId());
+        if (position != null) {
+            // the last appointment takes the free position, so nothing after it is shifted
+            Appointment last = appointments.remove(appointments.size() - 1);
+            if (position < appointments.size()) {
+                appointments.set(position, last);
+                appointmentPositions.put(last.getId(), position);
+            }
+        }
+        synchronized (appointmentTimeline) {
+            appointmentTimeline.remove(existingAppointment != null ? existingAppointment : appointment);
+        }
+        reportAggregates.appointmentRemoved(existingAppointment != null ? existingAppointment : appointment);
+        if (reminderScheduler != null) {
+            reminderScheduler.appointmentRemoved(appointment);
+        }
+        return existingAppointment;
+    }
+
     /**
      * method to retrieve a division by its id
-     * Lambda expression heer used to find a division by its id from list of divisions
      *
      * @param divisionId division id
      * @return the division found otherwise null
      */
     public Division getDivisionById(int divisionId) {
-        Optional<Division> division = divisions.stream().filter(d -> d.getDivisionId() == divisionId).findFirst();
-        if (division.get() != null) {
-            return division.get();
-        }
-        return null;
+        return divisionIndex.get(divisionId);
     }
 
     /**
@@ -263,100 +1073,76 @@ public class DataManager
     }
 
     /**
-     * method to retrieve all divisions from DB
-     * Lambda expression used to retrieve country based on id from list of countries
+     * method to retrieve all divisions from DB and index them by id
+     * Countries are looked up through their id index
      * @return list of divisions
      */
     public List<Division> getAllDivisions() {
         List<Division> divisionsFromDB = new ArrayList<>();
         try {
-            String query = "select division_id, division, country_id from first_level_divisions";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-            ResultSet resultSet = myStmt.executeQuery();
-            while (resultSet.next()) {
-                int divsionId = resultSet.getInt("division_id");
-                String divisionName = resultSet.getString("division");
-                int countryId = resultSet.getInt("country_id");
-                Country country = countries.stream().filter(c -> c.getCountryId() == countryId).findFirst().get();
-                Division division = new Division(divsionId, divisionName, country);
-                divisionsFromDB.add(division);
-            }
-            JDBC.getConnection().close();
+            divisionsFromDB = repository.findDivisions(countryIndex::get);
         } catch (SQLException e) {
             System.out.println("Error with retrieving divisions " + e.getMessage());
+            referenceDataFailed = true;
+        }
+        for (Division division : divisionsFromDB) {
+            divisionIndex.put(division.getDivisionId(), division);
         }
         return  divisionsFromDB;
     }
 
     /**
-     * method to retrieve all countries from db
+     * method to retrieve all countries from db and index them by id
      *
      * @return list of all countries
      */
     public List<Country> getAllCountries() {
         List<Country> countriesFromDB = new ArrayList<>();
         try {
-            String query = "select country_id, country from countries";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-            ResultSet resultSet = myStmt.executeQuery();
-            while (resultSet.next()) {
-                int countryId = resultSet.getInt("country_id");
-                String countryName = resultSet.getString("country");
-                Country country = new Country(countryId, countryName);
-                countriesFromDB.add(country);
-            }
-            JDBC.getConnection().close();
+            countriesFromDB = repository.findCountries();
         } catch (SQLException e) {
             System.out.println("Error with retrieving countries " + e.getMessage());
+            referenceDataFailed = true;
+        }
+        for (Country country : countriesFromDB) {
+            countryIndex.put(country.getCountryId(), country);
         }
         return  countriesFromDB;
     }
 
     /**
-     * Method that helps retrieve all contacts from Database
+     * Method that helps retrieve all contacts from Database and index them by id
      *
      * @return list of contacts from database
      */
     public List<Contact> getAllContacts(){
         List<Contact> contactsFromDB = new ArrayList<>();
         try {
-           String query = "select contact_id, contact_name, email from contacts";
-           PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-           ResultSet resultSet = myStmt.executeQuery();
-           while (resultSet.next()) {
-               int contactId = resultSet.getInt("contact_id");
-               String contactName = resultSet.getString("contact_name");
-               String contactEmail = resultSet.getString("email");
-               Contact contact = new Contact(contactId, contactName, contactEmail);
-               contactsFromDB.add(contact);
-           }
-           JDBC.getConnection().close();
+            contactsFromDB = repository.findContacts();
         } catch (SQLException e) {
               System.out.println("Error with retrieving contacts " + e.getMessage());
+              referenceDataFailed = true;
+        }
+        for (Contact contact : contactsFromDB) {
+            contactIndex.put(contact.getId(), contact);
         }
         return  contactsFromDB;
     }
 
     /**
-     * Method that helps retrieve all users from Database
+     * Method that helps retrieve all users from Database and index them by id
      * @return  list of users from database
      */
     public List<User> getAllUsers() {
         List<User> usersFromDB = new ArrayList<>();
         try {
-            String query = "select user_id, user_name, password from users";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-            ResultSet resultSet = myStmt.executeQuery();
-            while (resultSet.next()) {
-                int userId = resultSet.getInt("user_id");
-                String userName = resultSet.getString("user_name");
-                String password = resultSet.getString("password");
-                User user = new User(userId, userName, password);
-                usersFromDB.add(user);
-            }
-            JDBC.getConnection().close();
+            usersFromDB = repository.findUsers();
         } catch (SQLException e) {
             System.out.println("Error with retrieving users " + e.getMessage());
+            referenceDataFailed = true;
+        }
+        for (User user : usersFromDB) {
+            userIndex.put(user.getId(), user);
         }
         return  usersFromDB;
     }
@@ -369,27 +1155,7 @@ public class DataManager
     public int insertCustomer(Customer customer) {
         int customerId = 0;
         try {
-            String query = "insert into customers " +
-                "(customer_name, address, postal_code, phone, create_date, created_by, last_update, " +
-                "last_updated_by, division_id) values (?,?,?,?,?,?,?,?,?)";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-            myStmt.setString(1, customer.getName());
-            myStmt.setString(2, customer.getAddress());
-            myStmt.setString(3, customer.getPostalCode());
-            myStmt.setString(4, customer.getPhoneNumber());
-            ZonedDateTime utcCreate = customer.getCreateDate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(5, Timestamp.from(utcCreate.toInstant()));
-            myStmt.setString(6, customer.getCreatedBy());
-            ZonedDateTime utcLastUpdate = customer.getLastUpdate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(7, Timestamp.from(utcLastUpdate.toInstant()));
-            myStmt.setString(8, customer.getLastUpdatedBy());
-            myStmt.setInt(9, customer.getDivision().getDivisionId());
-            myStmt.executeUpdate();
-            ResultSet res = myStmt.getGeneratedKeys();
-            if (res.next()) {
-                customerId = res.getInt(1);
-            }
-            JDBC.getConnection().close();
+            customerId = repository.insertCustomer(customer);
         } catch (SQLException e) {
             System.out.println("Error with inserting a new customer " + e.getMessage());
         }
@@ -397,94 +1163,58 @@ public class DataManager
     }
 
     /**
-     * Updates a customer record on database
+     * Updates the changed columns of a customer record on database, nothing is sent when no column changed
      * @param customer customer to update
      */
     public void updateCustomer(Customer customer) {
+        int fields = customer.getDirtyFields();
+        if (fields == 0) {
+            return;
+        }
         try {
-            String query = "update customers set customer_name = ?, address = ?, postal_code = ?, " +
-                "phone = ?, create_date = ?, created_by = ?, last_update = ?, " +
-                "last_updated_by = ?, division_id = ? where customer_id = ?";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-            myStmt.setString(1, customer.getName());
-            myStmt.setString(2, customer.getAddress());
-            myStmt.setString(3, customer.getPostalCode());
-            myStmt.setString(4, customer.getPhoneNumber());
-            ZonedDateTime utcCreate = customer.getCreateDate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(5, Timestamp.from(utcCreate.toInstant()));
-            myStmt.setString(6, customer.getCreatedBy());
-            ZonedDateTime utcLastUpdate = customer.getLastUpdate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(7, Timestamp.from(utcLastUpdate.toInstant()));
-            myStmt.setString(8, customer.getLastUpdatedBy());
-            myStmt.setInt(9, customer.getDivision().getDivisionId());
-            myStmt.setInt(10, customer.getId());
-            myStmt.executeUpdate();
-            JDBC.getConnection().close();
+            repository.updateCustomer(customer, fields);
+            customer.clearDirtyFields(fields);
         } catch (SQLException e) {
             System.out.println("Error with updating a customer " + e.getMessage());
         }
     }
 
     /**
-     * Deletes a customer record from database
+     * Deletes a customer record and its appointments from database in one transaction
      * @param customer customer to delete from database
+     * @return true if the delete was committed otherwise false
      */
-    public void removeCustomer(Customer customer) {
-        List<Appointment> customerAppointments = customer.getAppointments();
-
-        for (Appointment appointment : customerAppointments) {
-            try {
-                String query = "delete from appointments where appointment_id = ?";
-                PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-                myStmt.setInt(1, appointment.getId());
-                myStmt.executeUpdate();
-                JDBC.getConnection().close();
-            } catch (SQLException e) {
-                System.out.println("Error with deleting appointments" + e.getMessage());
-            }
-        }
+    public boolean removeCustomer(Customer customer) {
+        return removeCustomers(List.of(customer));
+    }
+
+    /**
+     * Deletes customer records and all their appointments from database in one transaction
+     * @param customersToRemove customers to delete from database
+     * @return true if the delete was committed otherwise false, in which case nothing was deleted
+     */
+    public boolean removeCustomers(List<Customer> customersToRemove) {
         try {
-            String query = "delete from customers where customer_id = ?";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-            myStmt.setInt(1, customer.getId());
-            myStmt.executeUpdate();
-            JDBC.getConnection().close();
+            repository.deleteCustomers(customersToRemove);
+            return true;
         } catch (SQLException e) {
-            System.out.println("Error with deleting customer " + e.getMessage());
+            System.out.println("Error with deleting customers " + e.getMessage());
         }
+        return false;
     }
 
     /**
-     * Updates an appointment record on database
+     * Updates the changed columns of an appointment record on database, nothing is sent when no column changed
      * @param appointment appointment to update
      */
     public void updateAppointment(Appointment appointment) {
+        int fields = appointment.getDirtyFields();
+        if (fields == 0) {
+            return;
+        }
         try {
-            String query = "update appointments set title = ?, description = ?, location = ?, " +
-                "type = ?, start = ?, end = ?, create_date = ?, " +
-                "created_by = ?, last_update= ?, last_updated_by = ?, " +
-                "customer_id = ?, user_id = ?, contact_id = ? where appointment_id = ?";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-            myStmt.setString(1, appointment.getTitle());
-            myStmt.setString(2, appointment.getDescription());
-            myStmt.setString(3, appointment.getLocationAppointment());
-            myStmt.setString(4, appointment.getType());
-            ZonedDateTime utcStart = appointment.getStartDate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(5, Timestamp.from(utcStart.toInstant()));
-            ZonedDateTime utcEnd = appointment.getEndDate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(6, Timestamp.from(utcEnd.toInstant()));
-            ZonedDateTime utcCreate = appointment.getCreateDate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(7, Timestamp.from(utcCreate.toInstant()));
-            myStmt.setString(8, appointment.getCreatedBy());
-            ZonedDateTime utcLastUpdate = appointment.getLastUpdate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(9, Timestamp.from(utcLastUpdate.toInstant()));
-            myStmt.setString(10, appointment.getLastUpdatedBy());
-            myStmt.setInt(11, appointment.getCustomerId());
-            myStmt.setInt(12, appointment.getUserId());
-            myStmt.setInt(13, appointment.getContact().getId());
-            myStmt.setInt(14, appointment.getId());
-            myStmt.executeUpdate();
-            JDBC.getConnection().close();
+            repository.updateAppointment(appointment, fields);
+            appointment.clearDirtyFields(fields);
         } catch (SQLException e) {
             System.out.println("Error with updating an appointment " + e.getMessage());
         }
@@ -495,11 +1225,11 @@ public class DataManager
      * @param appointment appointment to remove
      */
     public void removeAppointment(Appointment appointment) {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.appointmentRemoved(appointment.getId());
+        }
         try {
-            String query = "delete from appointments where appointment_id = ?";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query);
-            myStmt.setInt(1, appointment.getId());
-            myStmt.executeUpdate();
+            repository.deleteAppointment(appointment);
         } catch (SQLException e) {
             System.out.println("Error with deleting one appointment" + e.getMessage());
         }
@@ -513,36 +1243,97 @@ public class DataManager
     public int insertAppointment(Appointment appointment) {
         int appointmentId = 0;
         try {
-            String query = "insert into appointments " +
-                "(title, description, location, type, start, end, create_date, created_by, last_update, " +
-                "last_updated_by, customer_id, user_id, contact_id) values (?,?,?,?,?,?,?,?,?,?,?,?,?)";
-            PreparedStatement myStmt = JDBC.getConnection().prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-            myStmt.setString(1, appointment.getTitle());
-            myStmt.setString(2, appointment.getDescription());
-            myStmt.setString(3, appointment.getLocationAppointment());
-            myStmt.setString(4, appointment.getType());
-            ZonedDateTime utcStart = appointment.getStartDate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(5, Timestamp.from(utcStart.toInstant()));
-            ZonedDateTime utcEnd = appointment.getEndDate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(6, Timestamp.from(utcEnd.toInstant()));
-            ZonedDateTime utcCreate = appointment.getCreateDate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(7, Timestamp.from(utcCreate.toInstant()));
-            myStmt.setString(8, appointment.getCreatedBy());
-            ZonedDateTime utcLastUpdate = appointment.getLastUpdate().withZoneSameInstant(ZoneId.of("UTC"));
-            myStmt.setTimestamp(9, Timestamp.from(utcLastUpdate.toInstant()));
-            myStmt.setString(10, appointment.getLastUpdatedBy());
-            myStmt.setInt(11, appointment.getCustomerId());
-            myStmt.setInt(12, appointment.getUserId());
-            myStmt.setInt(13, appointment.getContact().getId());
-            appointmentId = myStmt.executeUpdate();
-            ResultSet res = myStmt.getGeneratedKeys();
-            if (res.next()) {
-                appointmentId = res.getInt(1);
-            }
-            JDBC.getConnection().close();
+            appointmentId = repository.insertAppointment(appointment);
         } catch (SQLException e) {
             System.out.println("Error with inserting a new appointment " + e.getMessage());
         }
         return appointmentId;
     }
-}
\ No newline at end of file
+
+    /**
+     * Inserts customer records in a single transaction, sending them to the database in batches
+     * The generated ids are set on the customers once the transaction is committed
+     * @param newCustomers customers to insert into database
+     * @param batchSize number of rows sent to the database per batch
+     * @throws SQLException if any insert fails, in which case no customer is inserted
+     */
+    public void insertCustomers(List<Customer> newCustomers, int batchSize) throws SQLException {
+        repository.insertCustomers(newCustomers, batchSize);
+    }
+
+    /**
+     * Inserts appointment records in a single transaction, sending them to the database in batches
+     * The generated ids are set on the appointments once the transaction is committed
+     * @param newAppointments appointments to insert into database
+     * @param batchSize number of rows sent to the database per batch
+     * @throws SQLException if any insert fails, in which case no appointment is inserted
+     */
+    public void insertAppointments(List<Appointment> newAppointments, int batchSize) throws SQLException {
+        repository.insertAppointments(newAppointments, batchSize);
+    }
+
+    /**
+     * Updates the changed columns of customer records in a single transaction, sending them to the database in batches
+     * Customers with the same changed columns share one statement, customers without changes are skipped
+     * @param changedCustomers customers to update
+     * @param batchSize number of rows sent to the database per batch
+     * @throws SQLException if any update fails, in which case no customer is updated
+     */
+    public void updateCustomers(List<Customer> changedCustomers, int batchSize) throws SQLException {
+        updateBatched(changedCustomers, batchSize, Customer::getDirtyFields, repository::updateCustomers,
+            Customer::clearDirtyFields);
+    }
+
+    /**
+     * Updates the changed columns of appointment records in a single transaction, sending them to the database in batches
+     * Appointments with the same changed columns share one statement, appointments without changes are skipped
+     * @param changedAppointments appointments to update
+     * @param batchSize number of rows sent to the database per batch
+     * @throws SQLException if any update fails, in which case no appointment is updated
+     */
+    public void updateAppointments(List<Appointment> changedAppointments, int batchSize) throws SQLException {
+        updateBatched(changedAppointments, batchSize, Appointment::getDirtyFields, repository::updateAppointments,
+            Appointment::clearDirtyFields);
+    }
+
+    /**
+     * Helper method that groups rows by their changed fields and writes every group in one transaction
+     * The changed fields of a row are marked as saved once the transaction is committed
+     * @param rows records to update
+     * @param batchSize number of rows sent to the database per batch
+     * @param dirtyFields gives the changed fields of one record
+     * @param writeGroups writes the groups of records
+     * @param clearFields marks the written fields of one record as saved
+     * @throws SQLException if any update fails, no record is marked as saved
+     */
+    private <T> void updateBatched(List<T> rows, int batchSize, ToIntFunction<T> dirtyFields, GroupWriter<T> writeGroups,
+        ObjIntConsumer<T> clearFields) throws SQLException
+    {
+        // the fields are read once so a concurrent edit cannot change them between grouping and binding
+        Map<Integer, List<T>> rowsByFields = new LinkedHashMap<>();
+        for (T row : rows) {
+            int fields = dirtyFields.applyAsInt(row);
+            if (fields != 0) {
+                rowsByFields.computeIfAbsent(fields, f -> new ArrayList<>()).add(row);
+            }
+        }
+        if (rowsByFields.isEmpty()) {
+            return;
+        }
+        writeGroups.write(rowsByFields, batchSize);
+        for (Map.Entry<Integer, List<T>> group : rowsByFields.entrySet()) {
+            for (T row : group.getValue()) {
+                clearFields.accept(row, group.getKey());
+            }
+        }
+    }
+
+    /**
+     * Interface for writing records grouped by their changed fields in one transaction
+     * @param <T> type of record
+     */
+    private interface GroupWriter<T>
+    {
+        void write(Map<Integer, List<T>> rowsByFields, int batchSize) throws SQLException;
+    }
+}
@@ -0,0 +1,400 @@
+package home.customer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import home.appointments.Appointment;
+import home.appointments.Contact;
+import home.appointments.User;
+
+/**
+ * Class that stores the loaded countries, divisions, contacts, users, customers and appointments in a local binary file
+ * so the next launch can show them without reading every table from the database.
+ * The file starts with a magic number, a format version, the payload length and a CRC32 of the payload.
+ * The payload holds a table of the distinct text values followed by the records.
+ * A file with another version, a wrong length or a wrong checksum is ignored.
+ * Passwords are not stored, users are read again from the database when the snapshot is loaded.
+ * The file holds customer contact details, so on POSIX file systems it is only readable by its owner.
+ */
+public class DataSnapshot
+{
+    private static final int MAGIC = 0x53434844;
+    private static final int VERSION = 1;
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    private final List<Country> countries = new ArrayList<>();
+    private final List<Division> divisions = new ArrayList<>();
+    private final List<Contact> contacts = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+    private final List<Appointment> appointments = new ArrayList<>();
+    private final List<Customer> customers = new ArrayList<>();
+    private long tombstoneId;
+
+    /**
+     * Constructor to create an empty snapshot
+     */
+    private DataSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the given data, replacing the previous file only once the new one is complete
+     * @param file file to write
+     * @param countries countries to store
+     * @param divisions divisions to store
+     * @param contacts contacts to store
+     * @param users users to store, without their passwords
+     * @param customers customers to store, their appointments are stored separately
+     * @param appointments appointments to store
+     * @param tombstoneId id of the latest tombstone already reflected by the data
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, List<Country> countries, List<Division> divisions, List<Contact> contacts,
+        List<User> users, List<Customer> customers, List<Appointment> appointments, long tombstoneId) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + appointments.size() * 80 + customers.size() * 48);
+        DataOutputStream output = new DataOutputStream(bytes);
+        // text values repeat a lot (types, locations, user names), so each distinct value is stored once in a
+        // table written before the records, and records refer to it by position
+        Map<String, Integer> strings = new HashMap<>();
+        output.writeLong(tombstoneId);
+        output.writeInt(countries.size());
+        for (Country country : countries) {
+            output.writeInt(country.getCountryId());
+            writeString(output, strings, country.getCountryName());
+        }
+        output.writeInt(divisions.size());
+        for (Division division : divisions) {
+            output.writeInt(division.getDivisionId());
+            writeString(output, strings, division.getDivisionName());
+            output.writeInt(division.getCountry() != null ? division.getCountry().getCountryId() : -1);
+        }
+        output.writeInt(contacts.size());
+        for (Contact contact : contacts) {
+            output.writeInt(contact.getId());
+            writeString(output, strings, contact.getName());
+            writeString(output, strings, contact.getEmail());
+        }
+        output.writeInt(users.size());
+        for (User user : users) {
+            output.writeInt(user.getId());
+            writeString(output, strings, user.getUsername());
+        }
+        output.writeInt(appointments.size());
+        for (Appointment appointment : appointments) {
+            output.writeInt(appointment.getId());
+            writeString(output, strings, appointment.getTitle());
+            writeString(output, strings, appointment.getDescription());
+            writeString(output, strings, appointment.getLocationAppointment());
+            writeString(output, strings, appointment.getType());
+            writeDate(output, appointment.getStartDate());
+            writeDate(output, appointment.getEndDate());
+            writeDate(output, appointment.getCreateDate());
+            writeString(output, strings, appointment.getCreatedBy());
+            writeDate(output, appointment.getLastUpdate());
+            writeString(output, strings, appointment.getLastUpdatedBy());
+            output.writeInt(appointment.getCustomerId());
+            output.writeInt(appointment.getUserId());
+            output.writeInt(appointment.getContact().getId());
+        }
+        output.writeInt(customers.size());
+        for (Customer customer : customers) {
+            output.writeInt(customer.getId());
+            writeString(output, strings, customer.getName());
+            writeString(output, strings, customer.getAddress());
+            writeString(output, strings, customer.getPostalCode());
+            writeString(output, strings, customer.getPhoneNumber());
+            output.writeInt(customer.getDivision().getDivisionId());
+            writeDate(output, customer.getCreateDate());
+            writeString(output, strings, customer.getCreatedBy());
+            writeDate(output, customer.getLastUpdate());
+            writeString(output, strings, customer.getLastUpdatedBy());
+        }
+        output.flush();
+        ByteArrayOutputStream tableBytes = new ByteArrayOutputStream(64 + strings.size() * 16);
+        DataOutputStream tableOutput = new DataOutputStream(tableBytes);
+        String[] table = new String[strings.size()];
+        for (Map.Entry<String, Integer> entry : strings.entrySet()) {
+            table[entry.getValue()] = entry.getKey();
+        }
+        tableOutput.writeInt(table.length);
+        for (String value : table) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            tableOutput.writeInt(utf8.length);
+            tableOutput.write(utf8);
+        }
+        tableOutput.flush();
+        bytes.writeTo(tableBytes);
+        byte[] payload = tableBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        // the snapshot holds customer names, addresses and phone numbers, so only the owner may read it
+        Files.deleteIfExists(temporaryFile);
+        if (temporaryFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temporaryFile, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        // written through the channel rather than a mapping, a mapping stays open until garbage collected and
+        // keeps the file from being moved on Windows
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(payload.length).putLong(crc.getValue()).flip();
+        ByteBuffer[] buffers = { header, ByteBuffer.wrap(payload) };
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffers[1].hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot through a memory mapping of the file
+     * Related records are linked while reading, so customers point to their divisions and appointments
+     * @param file file to read
+     * @return the snapshot, or null if there is no file or it is damaged or of another version
+     */
+    public static DataSnapshot read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                System.out.println("Ignoring snapshot " + file + " with another format");
+                return null;
+            }
+            int payloadLength = buffer.getInt();
+            long checksum = buffer.getLong();
+            if (payloadLength != size - HEADER_SIZE) {
+                System.out.println("Ignoring truncated snapshot " + file);
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != checksum) {
+                System.out.println("Ignoring damaged snapshot " + file);
+                return null;
+            }
+            return decode(buffer);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error with reading the snapshot " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Helper method that decodes the payload of a snapshot
+     * @param buffer buffer positioned at the start of the payload
+     * @return the snapshot
+     * @throws BufferUnderflowException if the payload is shorter than its content says
+     */
+    private static DataSnapshot decode(ByteBuffer buffer) {
+        DataSnapshot snapshot = new DataSnapshot();
+        ZoneId zone = ZoneId.systemDefault();
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] utf8 = new byte[buffer.getInt()];
+            buffer.get(utf8);
+            strings[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+        snapshot.tombstoneId = buffer.getLong();
+        IntIndex<Country> countryIndex = new IntIndex<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            Country country = new Country(buffer.getInt(), readString(buffer, strings));
+            snapshot.countries.add(country);
+            countryIndex.put(country.getCountryId(), country);
+        }
+        IntIndex<Division> divisionIndex = new IntIndex<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            Division division = new Division(buffer.getInt(), readString(buffer, strings), countryIndex.get(buffer.getInt()));
+            snapshot.divisions.add(division);
+            divisionIndex.put(division.getDivisionId(), division);
+        }
+        IntIndex<Contact> contactIndex = new IntIndex<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            Contact contact = new Contact(buffer.getInt(), readString(buffer, strings), readString(buffer, strings));
+            snapshot.contacts.add(contact);
+            contactIndex.put(contact.getId(), contact);
+        }
+        IntIndex<User> userIndex = new IntIndex<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            User user = new User(buffer.getInt(), readString(buffer, strings), "");
+            snapshot.users.add(user);
+            userIndex.put(user.getId(), user);
+        }
+        IntIndex<List<Appointment>> appointmentsByCustomer = new IntIndex<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            int id = buffer.getInt();
+            String title = readString(buffer, strings);
+            String description = readString(buffer, strings);
+            String location = readString(buffer, strings);
+            String type = readString(buffer, strings);
+            ZonedDateTime start = readDate(buffer, zone);
+            ZonedDateTime end = readDate(buffer, zone);
+            ZonedDateTime createDate = readDate(buffer, zone);
+            String createdBy = readString(buffer, strings);
+            ZonedDateTime lastUpdate = readDate(buffer, zone);
+            String lastUpdatedBy = readString(buffer, strings);
+            int customerId = buffer.getInt();
+            User user = userIndex.get(buffer.getInt());
+            Contact contact = contactIndex.get(buffer.getInt());
+            Appointment appointment = new Appointment(id, title, description, location, type, start, end, customerId,
+                contact, user);
+            appointment.setCreateDate(createDate);
+            appointment.setCreatedBy(createdBy);
+            appointment.setLastUpdate(lastUpdate);
+            appointment.setLastUpdatedBy(lastUpdatedBy);
+            appointment.clearDirtyFields(~0);
+            snapshot.appointments.add(appointment);
+            List<Appointment> customerAppointments = appointmentsByCustomer.get(customerId);
+            if (customerAppointments == null) {
+                customerAppointments = new ArrayList<>();
+                appointmentsByCustomer.put(customerId, customerAppointments);
+            }
+            customerAppointments.add(appointment);
+        }
+        for (int i = buffer.getInt(); i > 0; i--) {
+            int id = buffer.getInt();
+            String name = readString(buffer, strings);
+            String address = readString(buffer, strings);
+            String postalCode = readString(buffer, strings);
+            String phoneNumber = readString(buffer, strings);
+            Division division = divisionIndex.get(buffer.getInt());
+            List<Appointment> customerAppointments = appointmentsByCustomer.remove(id);
+            Customer customer = new Customer(id, name, address, postalCode, phoneNumber,
+                customerAppointments != null ? customerAppointments : new ArrayList<>(), division);
+            customer.setCreateDate(readDate(buffer, zone));
+            customer.setCreatedBy(readString(buffer, strings));
+            customer.setLastUpdate(readDate(buffer, zone));
+            customer.setLastUpdatedBy(readString(buffer, strings));
+            customer.clearDirtyFields(~0);
+            snapshot.customers.add(customer);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Retrieves the id of the latest tombstone reflected by the snapshot
+     * @return tombstone id, 0 when unknown
+     */
+    public long getTombstoneId() {
+        return tombstoneId;
+    }
+
+    /**
+     * Retrieves the countries of the snapshot
+     * @return countries
+     */
+    public List<Country> getCountries() {
+        return countries;
+    }
+
+    /**
+     * Retrieves the divisions of the snapshot
+     * @return divisions
+     */
+    public List<Division> getDivisions() {
+        return divisions;
+    }
+
+    /**
+     * Retrieves the contacts of the snapshot
+     * @return contacts
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Retrieves the users of the snapshot, which have empty passwords
+     * @return users
+     */
+    public List<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * Retrieves the appointments of the snapshot
+     * @return appointments
+     */
+    public List<Appointment> getAppointments() {
+        return appointments;
+    }
+
+    /**
+     * Retrieves the customers of the snapshot, linked to their appointments
+     * @return customers
+     */
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Helper method that writes a text value that may be null as its position in the string table
+     */
+    private static void writeString(DataOutputStream output, Map<String, Integer> strings, String value)
+        throws IOException
+    {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            Integer position = strings.get(value);
+            if (position == null) {
+                position = strings.size();
+                strings.put(value, position);
+            }
+            output.writeInt(position);
+        }
+    }
+
+    /**
+     * Helper method that reads a text value written by writeString, records with the same value share one string
+     */
+    private static String readString(ByteBuffer buffer, String[] strings) {
+        int position = buffer.getInt();
+        return position < 0 ? null : strings[position];
+    }
+
+    /**
+     * Helper method that writes a date that may be null as epoch milliseconds
+     */
+    private static void writeDate(DataOutputStream output, ZonedDateTime value) throws IOException {
+        output.writeLong(value != null ? value.toInstant().toEpochMilli() : Long.MIN_VALUE);
+    }
+
+    /**
+     * Helper method that reads a date written by writeDate, in the local time zone
+     */
+    private static ZonedDateTime readDate(ByteBuffer buffer, ZoneId zone) {
+        long epochMilli = buffer.getLong();
+        return epochMilli == Long.MIN_VALUE ? null : ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), zone);
+    }
+}
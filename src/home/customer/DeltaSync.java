@@ -0,0 +1,336 @@
+package home.customer;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import home.appointments.Appointment;
+
+/**
+ * Class that keeps the local customers and appointments in step with edits made on other workstations.
+ * On every poll it reads the rows whose last_update is after the watermark and the tombstones recorded after
+ * the tombstone watermark, then hands them to the data manager to merge without a full reload.
+ */
+public class DeltaSync
+{
+    // last_update is written with each workstation's clock to the second, so a slower commit can carry an
+    // earlier time than rows already seen. Rows are read again from a little before the watermark and rows
+    // matching the local copy are skipped when merging.
+    private static final long OVERLAP_MILLIS = 60_000;
+
+    private final DataManager dataManager;
+    private final Duration interval;
+    private final Executor applyExecutor;
+    private final Consumer<Changes> onChanges;
+    private final ScheduledThreadPoolExecutor executor;
+    private ScheduledFuture<?> scheduledPoll = null;
+    // the watermarks move forward on the apply executor once the changes read up to them are merged,
+    // so changes that fail to merge are read again by the next poll
+    private final AtomicLong watermark = new AtomicLong();
+    private final AtomicLong tombstoneWatermark = new AtomicLong(-1);
+
+    /**
+     * Constructor to create a delta sync
+     * @param dataManager data manager the changes are read and merged through
+     * @param interval time between two polls
+     * @param applyExecutor executor the changes are merged on, the thread that owns the local lists
+     * @param onChanges action to run on the apply executor after changes were merged
+     */
+    public DeltaSync(final DataManager dataManager, final Duration interval, final Executor applyExecutor,
+        final Consumer<Changes> onChanges)
+    {
+        this.dataManager = dataManager;
+        this.interval = interval;
+        this.applyExecutor = applyExecutor;
+        this.onChanges = onChanges;
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "delta-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts polling for rows changed after a time
+     * @param since latest last_update already loaded
+     * @param tombstoneId latest tombstone read before the data was loaded, -1 to follow deletions from the first poll
+     * @param reconcileNow true to run a first poll right away that also drops local records no longer in the database,
+     * used when the data came from a snapshot
+     */
+    public synchronized void start(ZonedDateTime since, long tombstoneId, boolean reconcileNow) {
+        watermark.set(since.toInstant().toEpochMilli());
+        tombstoneWatermark.set(tombstoneId);
+        if (reconcileNow) {
+            executor.execute(() -> poll(true));
+        }
+        if (scheduledPoll == null && !interval.isZero()) {
+            scheduledPoll = executor.scheduleWithFixedDelay(() -> poll(false), interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops polling
+     */
+    public synchronized void stop() {
+        if (scheduledPoll != null) {
+            scheduledPoll.cancel(false);
+            scheduledPoll = null;
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Retrieves the id of the latest tombstone merged
+     * @return tombstone id, -1 before the first poll
+     */
+    public long getTombstoneWatermark() {
+        return tombstoneWatermark.get();
+    }
+
+    /**
+     * Reads the changes since the watermarks and hands them to the apply executor to be merged
+     * The watermarks only move past the changes once they are merged, so a merge that fails or never runs
+     * leaves them to be read again by the next poll
+     * @param checkDeleted true to also read every id and drop the local records no longer in the database,
+     * which catches deletions that left no tombstone
+     * @throws SQLException if the changes cannot be read, the watermarks are left unchanged
+     */
+    public synchronized void syncNow(boolean checkDeleted) throws SQLException {
+        if (tombstoneWatermark.get() < 0) {
+            // the latest tombstone could not be read before the load, so deletions are followed from the first poll
+            tombstoneWatermark.compareAndSet(-1, dataManager.fetchLatestTombstoneId());
+        }
+        Timestamp since = new Timestamp(watermark.get() - OVERLAP_MILLIS);
+        List<Customer> changedCustomers = dataManager.fetchCustomersChangedSince(since);
+        List<Appointment> changedAppointments = dataManager.fetchAppointmentsChangedSince(since);
+        List<Tombstone> tombstones = dataManager.fetchTombstonesAfter(tombstoneWatermark.get());
+        Instant idsReadAt = Instant.now();
+        int[] customerIds = checkDeleted ? dataManager.fetchCustomerIds() : null;
+        int[] appointmentIds = checkDeleted ? dataManager.fetchAppointmentIds() : null;
+
+        long latestUpdate = watermark.get();
+        for (Customer customer : changedCustomers) {
+            latestUpdate = later(latestUpdate, customer.getLastUpdate());
+        }
+        for (Appointment appointment : changedAppointments) {
+            latestUpdate = later(latestUpdate, appointment.getLastUpdate());
+        }
+        long nextWatermark = latestUpdate;
+        long nextTombstoneWatermark = tombstones.isEmpty() ? tombstoneWatermark.get()
+            : tombstones.get(tombstones.size() - 1).getId();
+        if (changedCustomers.isEmpty() && changedAppointments.isEmpty() && tombstones.isEmpty() && !checkDeleted) {
+            return;
+        }
+        applyExecutor.execute(() -> {
+            if (checkDeleted) {
+                addMissingRecords(tombstones, customerIds, appointmentIds, idsReadAt);
+            }
+            Changes changes = dataManager.applyRemoteChanges(changedCustomers, changedAppointments, tombstones);
+            watermark.accumulateAndGet(nextWatermark, Math::max);
+            tombstoneWatermark.accumulateAndGet(nextTombstoneWatermark, Math::max);
+            if (!changes.isEmpty()) {
+                onChanges.accept(changes);
+            }
+        });
+    }
+
+    /**
+     * Helper method that adds a tombstone for each local record missing from the database ids
+     * Records saved after the ids were read are kept, they may simply be newer than the ids
+     * Runs on the apply executor, which owns the local lists
+     * @param tombstones tombstones to add to
+     * @param customerIds sorted customer ids in the database
+     * @param appointmentIds sorted appointment ids in the database
+     * @param idsReadAt time the ids were read
+     */
+    private void addMissingRecords(List<Tombstone> tombstones, int[] customerIds, int[] appointmentIds, Instant idsReadAt) {
+        for (Appointment appointment : dataManager.appointments) {
+            if (Arrays.binarySearch(appointmentIds, appointment.getId()) < 0
+                && isSavedBefore(appointment.getLastUpdate(), idsReadAt)) {
+                tombstones.add(new Tombstone(0, Tombstone.APPOINTMENTS, appointment.getId()));
+            }
+        }
+        for (Customer customer : dataManager.customers) {
+            if (Arrays.binarySearch(customerIds, customer.getId()) < 0 && isSavedBefore(customer.getLastUpdate(), idsReadAt)) {
+                tombstones.add(new Tombstone(0, Tombstone.CUSTOMERS, customer.getId()));
+            }
+        }
+    }
+
+    /**
+     * Helper method to check if a record was last saved before a time
+     * @param lastUpdate last update of the record
+     * @param time time to compare with
+     * @return true if the record was saved before the time otherwise false
+     */
+    private static boolean isSavedBefore(ZonedDateTime lastUpdate, Instant time) {
+        return lastUpdate == null || lastUpdate.toInstant().isBefore(time);
+    }
+
+    /**
+     * Helper method that runs one poll on the background thread, errors are logged and the next poll still runs
+     * @param checkDeleted true to also drop local records no longer in the database
+     */
+    private void poll(boolean checkDeleted) {
+        try {
+            syncNow(checkDeleted);
+        } catch (SQLException e) {
+            System.out.println("Error with syncing changes " + e.getMessage());
+        } catch (RuntimeException e) {
+            // an exception leaving a scheduled task would cancel every later poll
+            System.out.println("Error with syncing changes " + e);
+        }
+    }
+
+    /**
+     * Helper method that finds the later of a watermark and the last_update of a row
+     * @param millis watermark in epoch milliseconds
+     * @param lastUpdate last_update of a row that was read
+     * @return the later of the two in epoch milliseconds
+     */
+    private static long later(long millis, ZonedDateTime lastUpdate) {
+        return lastUpdate != null ? Math.max(millis, lastUpdate.toInstant().toEpochMilli()) : millis;
+    }
+
+    /**
+     * Class that describes the changes merged by one poll
+     */
+    public static class Changes
+    {
+        private final List<Customer> addedCustomers = new ArrayList<>();
+        private final List<Customer> changedCustomers = new ArrayList<>();
+        private final List<Customer> deletedCustomers = new ArrayList<>();
+        private int changedAppointments = 0;
+        private int deletedAppointments = 0;
+
+        /**
+         * Retrieves the customers that were added
+         * @return added customers
+         */
+        public List<Customer> getAddedCustomers() {
+            return addedCustomers;
+        }
+
+        /**
+         * Retrieves the customers that were edited, updated in place
+         * @return changed customers
+         */
+        public List<Customer> getChangedCustomers() {
+            return changedCustomers;
+        }
+
+        /**
+         * Retrieves the customers that were deleted
+         * @return deleted customers
+         */
+        public List<Customer> getDeletedCustomers() {
+            return deletedCustomers;
+        }
+
+        /**
+         * Retrieves the number of appointments that were added or edited
+         * @return number of changed appointments
+         */
+        public int getChangedAppointments() {
+            return changedAppointments;
+        }
+
+        /**
+         * Retrieves the number of appointments that were deleted
+         * @return number of deleted appointments
+         */
+        public int getDeletedAppointments() {
+            return deletedAppointments;
+        }
+
+        /**
+         * Method to check if the poll merged anything
+         * @return true if nothing changed otherwise false
+         */
+        public boolean isEmpty() {
+            return addedCustomers.isEmpty() && changedCustomers.isEmpty() && deletedCustomers.isEmpty()
+                && changedAppointments == 0 && deletedAppointments == 0;
+        }
+
+        void customerAdded(Customer customer) {
+            addedCustomers.add(customer);
+        }
+
+        void customerChanged(Customer customer) {
+            changedCustomers.add(customer);
+        }
+
+        void customerDeleted(Customer customer) {
+            deletedCustomers.add(customer);
+        }
+
+        void appointmentChanged() {
+            changedAppointments++;
+        }
+
+        void appointmentDeleted() {
+            deletedAppointments++;
+        }
+    }
+
+    /**
+     * Class that represents a row of the tombstone table, recorded when a customer or appointment is deleted
+     */
+    public static class Tombstone
+    {
+        public static final String CUSTOMERS = "customers";
+        public static final String APPOINTMENTS = "appointments";
+
+        private final long id;
+        private final String tableName;
+        private final int recordId;
+
+        /**
+         * Constructor to create a tombstone
+         * @param id tombstone id, increasing with each deletion
+         * @param tableName table the record was deleted from
+         * @param recordId id of the deleted record
+         */
+        public Tombstone(final long id, final String tableName, final int recordId) {
+            this.id = id;
+            this.tableName = tableName;
+            this.recordId = recordId;
+        }
+
+        /**
+         * Retrieves the tombstone id
+         * @return tombstone id, 0 for a deletion found by comparing ids
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Retrieves the table the record was deleted from
+         * @return customers or appointments
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Retrieves the id of the deleted record
+         * @return record id
+         */
+        public int getRecordId() {
+            return recordId;
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package home.customer;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import home.appointments.Appointment;
+import home.appointments.Contact;
+import home.appointments.User;
+
+/**
+ * Class that keeps the records in memory instead of a database, so the application, benchmarks and load tests
+ * run on one machine without a MySQL server.
+ * Records are stored as copies and handed out as new objects, the same way rows are read from a database,
+ * so edits only reach the store through the update methods. Every method holds the lock of the repository,
+ * which makes each call a transaction. Nothing is kept once the application exits.
+ */
+public class InMemoryRepository implements Repository
+{
+    private static final String[] STATES = { "Alabama", "Alaska", "Arizona", "Arkansas", "California", "Colorado",
+        "Connecticut", "Delaware", "District of Columbia", "Florida", "Georgia", "Hawaii", "Idaho", "Illinois",
+        "Indiana", "Iowa", "Kansas", "Kentucky", "Louisiana", "Maine", "Maryland", "Massachusetts", "Michigan",
+        "Minnesota", "Mississippi", "Missouri", "Montana", "Nebraska", "Nevada", "New Hampshire", "New Jersey",
+        "New Mexico", "New York", "North Carolina", "North Dakota", "Ohio", "Oklahoma", "Oregon", "Pennsylvania",
+        "Rhode Island", "South Carolina", "South Dakota", "Tennessee", "Texas", "Utah", "Vermont", "Virginia",
+        "Washington", "West Virginia", "Wisconsin", "Wyoming" };
+    private static final String[] PROVINCES = { "Northwest Territories", "Alberta", "British Columbia", "Manitoba",
+        "New Brunswick", "Nova Scotia", "Prince Edward Island", "Ontario", "Quebec", "Saskatchewan", "Nunavut",
+        "Yukon", "Newfoundland and Labrador" };
+    private static final String[] UK_NATIONS = { "England", "Wales", "Scotland", "Northern Ireland" };
+
+    private final List<Country> countries = new ArrayList<>();
+    private final List<Division> divisions = new ArrayList<>();
+    private final List<Contact> contacts = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+    private final IntIndex<Customer> customers = new IntIndex<>();
+    private final IntIndex<Appointment> appointments = new IntIndex<>();
+    private final IntIndex<List<Appointment>> appointmentsByCustomer = new IntIndex<>();
+    private final List<DeltaSync.Tombstone> tombstones = new ArrayList<>();
+    private int nextCustomerId = 1;
+    private int nextAppointmentId = 1;
+    private long nextTombstoneId = 1;
+
+    /**
+     * Adds the countries, divisions, contacts and users of the standard schedule database,
+     * so users can log in and customers can be created against an empty store
+     */
+    public synchronized void seedReferenceData() {
+        Country unitedStates = new Country(1, "U.S");
+        Country unitedKingdom = new Country(2, "UK");
+        Country canada = new Country(3, "Canada");
+        countries.addAll(List.of(unitedStates, unitedKingdom, canada));
+        for (int i = 0; i < STATES.length; i++) {
+            divisions.add(new Division(i + 1, STATES[i], unitedStates));
+        }
+        for (int i = 0; i < PROVINCES.length; i++) {
+            divisions.add(new Division(i + 60, PROVINCES[i], canada));
+        }
+        for (int i = 0; i < UK_NATIONS.length; i++) {
+            divisions.add(new Division(i + 101, UK_NATIONS[i], unitedKingdom));
+        }
+        contacts.add(new Contact(1, "Anika Costa", "acoasta@company.com"));
+        contacts.add(new Contact(2, "Daniel Garcia", "dgarcia@company.com"));
+        contacts.add(new Contact(3, "Li Lee", "llee@company.com"));
+        users.add(new User(1, "test", "test"));
+        users.add(new User(2, "admin", "admin"));
+    }
+
+    @Override
+    public synchronized List<Country> findCountries() {
+        List<Country> found = new ArrayList<>(countries.size());
+        for (Country country : countries) {
+            found.add(new Country(country.getCountryId(), country.getCountryName()));
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized List<Division> findDivisions(IntFunction<Country> countries) {
+        List<Division> found = new ArrayList<>(divisions.size());
+        for (Division division : divisions) {
+            found.add(new Division(division.getDivisionId(), division.getDivisionName(),
+                countries.apply(division.getCountry().getCountryId())));
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized List<Contact> findContacts() {
+        List<Contact> found = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            found.add(new Contact(contact.getId(), contact.getName(), contact.getEmail()));
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized List<User> findUsers() {
+        List<User> found = new ArrayList<>(users.size());
+        for (User user : users) {
+            found.add(new User(user.getId(), user.getUsername(), user.getPassword()));
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized List<Appointment> findAppointments(IntFunction<Contact> contacts, IntFunction<User> users) {
+        List<Appointment> found = new ArrayList<>(appointments.size());
+        for (Appointment stored : sortedById(appointments.values(), Appointment::getId)) {
+            found.add(copyOf(stored, contacts, users));
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized void findCustomers(IntFunction<Division> divisions, IntFunction<List<Appointment>> appointmentsOf,
+        Consumer<Customer> onCustomer)
+    {
+        for (Customer stored : sortedById(customers.values(), Customer::getId)) {
+            List<Appointment> customerAppointments = appointmentsOf.apply(stored.getId());
+            onCustomer.accept(copyOf(stored, divisions, customerAppointments != null ? customerAppointments : new ArrayList<>()));
+        }
+    }
+
+    @Override
+    public synchronized int countCustomers() {
+        return customers.size();
+    }
+
+    @Override
+    public synchronized List<Customer> findCustomersChangedSince(Timestamp since, IntFunction<Division> divisions) {
+        List<Customer> changed = new ArrayList<>();
+        customers.forEachValue(stored -> {
+            if (isAtOrAfter(stored.getLastUpdate(), since)) {
+                changed.add(copyOf(stored, divisions, new ArrayList<>()));
+            }
+        });
+        return sortedById(changed, Customer::getId);
+    }
+
+    @Override
+    public synchronized List<Appointment> findAppointmentsChangedSince(Timestamp since, IntFunction<Contact> contacts,
+        IntFunction<User> users)
+    {
+        List<Appointment> changed = new ArrayList<>();
+        appointments.forEachValue(stored -> {
+            if (isAtOrAfter(stored.getLastUpdate(), since)) {
+                changed.add(copyOf(stored, contacts, users));
+            }
+        });
+        return sortedById(changed, Appointment::getId);
+    }
+
+    @Override
+    public synchronized int[] findCustomerIds() {
+        int[] ids = new int[customers.size()];
+        int[] count = { 0 };
+        customers.forEachEntry((id, customer) -> ids[count[0]++] = id);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Override
+    public synchronized int[] findAppointmentIds() {
+        int[] ids = new int[appointments.size()];
+        int[] count = { 0 };
+        appointments.forEachEntry((id, appointment) -> ids[count[0]++] = id);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Override
+    public synchronized List<DeltaSync.Tombstone> findTombstonesAfter(long afterId) {
+        List<DeltaSync.Tombstone> found = new ArrayList<>();
+        for (DeltaSync.Tombstone tombstone : tombstones) {
+            if (tombstone.getId() > afterId) {
+                found.add(tombstone);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized long findLatestTombstoneId() {
+        return nextTombstoneId - 1;
+    }
+
+    @Override
+    public synchronized int insertCustomer(Customer customer) {
+        int customerId = nextCustomerId++;
+        Customer stored = copyOf(customer, id -> customer.getDivision(), new ArrayList<>());
+        stored.setId(customerId);
+        customers.put(customerId, stored);
+        customer.clearDirtyFields(~0);
+        return customerId;
+    }
+
+    @Override
+    public synchronized int insertAppointment(Appointment appointment) throws SQLException {
+        if (!customers.containsKey(appointment.getCustomerId())) {
+            throw new SQLException("Cannot add an appointment for the unknown customer " + appointment.getCustomerId());
+        }
+        int appointmentId = nextAppointmentId++;
+        Appointment stored = copyOf(appointment, id -> appointment.getContact(), id -> appointment.getUser());
+        stored.setId(appointmentId);
+        appointments.put(appointmentId, stored);
+        appointmentsOf(stored.getCustomerId()).add(stored);
+        appointment.clearDirtyFields(~0);
+        return appointmentId;
+    }
+
+    @Override
+    public synchronized void insertCustomers(List<Customer> newCustomers, int batchSize) {
+        for (Customer customer : newCustomers) {
+            customer.setId(insertCustomer(customer));
+        }
+    }
+
+    @Override
+    public synchronized void insertAppointments(List<Appointment> newAppointments, int batchSize) throws SQLException {
+        for (Appointment appointment : newAppointments) {
+            if (!customers.containsKey(appointment.getCustomerId())) {
+                throw new SQLException("Cannot add an appointment for the unknown customer " + appointment.getCustomerId());
+            }
+        }
+        for (Appointment appointment : newAppointments) {
+            appointment.setId(insertAppointment(appointment));
+        }
+    }
+
+    @Override
+    public synchronized void updateCustomer(Customer customer, int fields) {
+        Customer stored = customers.get(customer.getId());
+        if (stored == null) {
+            // an update of a missing row changes nothing, the same as in a database
+            return;
+        }
+        if ((fields & Customer.NAME) != 0) {
+            stored.setName(customer.getName());
+        }
+        if ((fields & Customer.ADDRESS) != 0) {
+            stored.setAddress(customer.getAddress());
+        }
+        if ((fields & Customer.POSTAL_CODE) != 0) {
+            stored.setPostalCode(customer.getPostalCode());
+        }
+        if ((fields & Customer.PHONE) != 0) {
+            stored.setPhoneNumber(customer.getPhoneNumber());
+        }
+        if ((fields & Customer.DIVISION) != 0) {
+            stored.setDivision(customer.getDivision());
+        }
+        if ((fields & Customer.LAST_UPDATE) != 0) {
+            stored.setLastUpdate(customer.getLastUpdate());
+        }
+        if ((fields & Customer.LAST_UPDATED_BY) != 0) {
+            stored.setLastUpdatedBy(customer.getLastUpdatedBy());
+        }
+        stored.clearDirtyFields(~0);
+    }
+
+    @Override
+    public synchronized void updateAppointment(Appointment appointment, int fields) {
+        Appointment stored = appointments.get(appointment.getId());
+        if (stored == null) {
+            return;
+        }
+        if ((fields & Appointment.TITLE) != 0) {
+            stored.setTitle(appointment.getTitle());
+        }
+        if ((fields & Appointment.DESCRIPTION) != 0) {
+            stored.setDescription(appointment.getDescription());
+        }
+        if ((fields & Appointment.LOCATION) != 0) {
+            stored.setLocationAppointment(appointment.getLocationAppointment());
+        }
+        if ((fields & Appointment.TYPE) != 0) {
+            stored.setType(appointment.getType());
+        }
+        if ((fields & Appointment.START) != 0) {
+            stored.setStartDate(appointment.getStartDate());
+        }
+        if ((fields & Appointment.END) != 0) {
+            stored.setEndDate(appointment.getEndDate());
+        }
+        if ((fields & Appointment.CUSTOMER) != 0 && stored.getCustomerId() != appointment.getCustomerId()) {
+            appointmentsOf(stored.getCustomerId()).remove(stored);
+            stored.setCustomerId(appointment.getCustomerId());
+            appointmentsOf(stored.getCustomerId()).add(stored);
+        }
+        if ((fields & Appointment.USER) != 0) {
+            stored.setUserId(appointment.getUserId());
+        }
+        if ((fields & Appointment.CONTACT) != 0) {
+            stored.setContact(appointment.getContact());
+        }
+        if ((fields & Appointment.LAST_UPDATE) != 0) {
+            stored.setLastUpdate(appointment.getLastUpdate());
+        }
+        if ((fields & Appointment.LAST_UPDATED_BY) != 0) {
+            stored.setLastUpdatedBy(appointment.getLastUpdatedBy());
+        }
+        stored.clearDirtyFields(~0);
+    }
+
+    @Override
+    public synchronized void updateCustomers(Map<Integer, List<Customer>> customersByFields, int batchSize) {
+        for (Map.Entry<Integer, List<Customer>> group : customersByFields.entrySet()) {
+            for (Customer customer : group.getValue()) {
+                updateCustomer(customer, group.getKey());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void updateAppointments(Map<Integer, List<Appointment>> appointmentsByFields, int batchSize) {
+        for (Map.Entry<Integer, List<Appointment>> group : appointmentsByFields.entrySet()) {
+            for (Appointment appointment : group.getValue()) {
+                updateAppointment(appointment, group.getKey());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void deleteCustomers(List<Customer> customersToRemove) {
+        for (Customer customer : customersToRemove) {
+            List<Appointment> customerAppointments = appointmentsByCustomer.remove(customer.getId());
+            if (customerAppointments != null) {
+                for (Appointment stored : customerAppointments) {
+                    appointments.remove(stored.getId());
+                    addTombstone(DeltaSync.Tombstone.APPOINTMENTS, stored.getId());
+                }
+            }
+            if (customers.remove(customer.getId()) != null) {
+                addTombstone(DeltaSync.Tombstone.CUSTOMERS, customer.getId());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void deleteAppointment(Appointment appointment) {
+        Appointment stored = appointments.remove(appointment.getId());
+        if (stored != null) {
+            appointmentsOf(stored.getCustomerId()).remove(stored);
+            addTombstone(DeltaSync.Tombstone.APPOINTMENTS, stored.getId());
+        }
+    }
+
+    /**
+     * Helper method that records the tombstone of a deleted record
+     * @param tableName table of the record
+     * @param recordId id of the record
+     */
+    private void addTombstone(String tableName, int recordId) {
+        tombstones.add(new DeltaSync.Tombstone(nextTombstoneId++, tableName, recordId));
+    }
+
+    /**
+     * Helper method to retrieve the stored appointments of a customer, creating the list on first use
+     * @param customerId id of the customer
+     * @return stored appointments of the customer
+     */
+    private List<Appointment> appointmentsOf(int customerId) {
+        List<Appointment> customerAppointments = appointmentsByCustomer.get(customerId);
+        if (customerAppointments == null) {
+            customerAppointments = new ArrayList<>();
+            appointmentsByCustomer.put(customerId, customerAppointments);
+        }
+        return customerAppointments;
+    }
+
+    /**
+     * Helper method that copies a customer, resolving its division through a lookup
+     * @param source customer to copy
+     * @param divisions gives the division of an id
+     * @param customerAppointments appointments of the copy
+     * @return copy with no changed fields
+     */
+    private static Customer copyOf(Customer source, IntFunction<Division> divisions, List<Appointment> customerAppointments) {
+        Division division = source.getDivision() != null ? divisions.apply(source.getDivision().getDivisionId()) : null;
+        Customer customer = new Customer(source.getId(), source.getName(), source.getAddress(), source.getPostalCode(),
+            source.getPhoneNumber(), customerAppointments, division != null ? division : source.getDivision());
+        customer.setCreateDate(source.getCreateDate());
+        customer.setCreatedBy(source.getCreatedBy());
+        customer.setLastUpdate(source.getLastUpdate());
+        customer.setLastUpdatedBy(source.getLastUpdatedBy());
+        customer.clearDirtyFields(~0);
+        return customer;
+    }
+
+    /**
+     * Helper method that copies an appointment, resolving its contact and user through lookups
+     * The source's own contact and user are kept when a lookup does not know them
+     * @param source appointment to copy
+     * @param contacts gives the contact of an id
+     * @param users gives the user of an id
+     * @return copy with no changed fields
+     */
+    private static Appointment copyOf(Appointment source, IntFunction<Contact> contacts, IntFunction<User> users) {
+        Contact contact = contacts.apply(source.getContact().getId());
+        User user = users.apply(source.getUserId());
+        Appointment appointment = new Appointment(source.getId(), source.getTitle(), source.getDescription(),
+            source.getLocationAppointment(), source.getType(), source.getStartDate(), source.getEndDate(),
+            source.getCustomerId(), contact != null ? contact : source.getContact(), user != null ? user : source.getUser());
+        appointment.setUserId(source.getUserId());
+        appointment.setCreateDate(source.getCreateDate());
+        appointment.setCreatedBy(source.getCreatedBy());
+        appointment.setLastUpdate(source.getLastUpdate());
+        appointment.setLastUpdatedBy(source.getLastUpdatedBy());
+        appointment.clearDirtyFields(~0);
+        return appointment;
+    }
+
+    /**
+     * Helper method to check if a record was last saved at or after a time
+     * @param lastUpdate last update of the record
+     * @param since time to compare with
+     * @return true if the record was saved at or after the time otherwise false
+     */
+    private static boolean isAtOrAfter(ZonedDateTime lastUpdate, Timestamp since) {
+        return lastUpdate != null && !lastUpdate.toInstant().isBefore(since.toInstant());
+    }
+
+    /**
+     * Helper method that orders stored records by id, the order a table is read in by its primary key
+     * @param records records to order
+     * @param id gives the id of a record
+     * @return records ordered by id
+     */
+    private static <T> List<T> sortedById(List<T> records, ToIntFunction<T> id) {
+        records.sort(Comparator.comparingInt(id));
+        return records;
+    }
+}
@@ -0,0 +1,243 @@
+package home.customer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Class that maps int identifiers to records without boxing the keys.
+ * It uses open addressing with linear probing so lookups by id take constant time.
+ * @param <V> type of record stored in the index
+ */
+public class IntIndex<V>
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size = 0;
+    private int mask;
+    private int resizeAt;
+
+    /**
+     * Constructor to create an empty index
+     */
+    public IntIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructor to create an index sized for an expected number of records
+     * @param expectedSize number of records expected to be stored
+     */
+    public IntIndex(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Retrieves the record stored for an id
+     * @param key id of the record
+     * @return the record found otherwise null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = hash(key) & mask;
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a record is stored for an id
+     * @param key id of the record
+     * @return true if the id is present otherwise false
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Stores a record for an id, replacing any record stored before
+     * @param key id of the record
+     * @param value record to store, must not be null
+     * @return the record previously stored for the id otherwise null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntIndex does not store null records");
+        }
+        int slot = hash(key) & mask;
+        Object existing;
+        while ((existing = values[slot]) != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return (V) existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the record stored for an id
+     * @param key id of the record
+     * @return the removed record otherwise null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = hash(key) & mask;
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                shiftBack(slot);
+                size--;
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the number of records in the index
+     * @return number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the index has no records
+     * @return true if empty otherwise false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every record from the index
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Runs an action for every record in the index, in no particular order
+     * @param action action to run for each record
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Runs an action for every id and record in the index, in no particular order
+     * @param action action to run for each entry
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachEntry(EntryConsumer<? super V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * Retrieves every record in the index as a list, in no particular order
+     * @return list of records
+     */
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        forEachValue(list::add);
+        return list;
+    }
+
+    /**
+     * Helper method to spread the bits of an id across the table
+     * @param key id to hash
+     * @return hashed id
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Helper method that closes the gap left by a removed slot so probing keeps working without tombstones
+     * @param slot slot that was emptied
+     */
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(keys[next]) & mask;
+            // move the entry if the gap lies between its home slot and where it currently sits
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    /**
+     * Interface for actions that receive an id together with its record
+     * @param <V> type of record
+     */
+    public interface EntryConsumer<V>
+    {
+        void accept(int key, V value);
+    }
+
+    /**
+     * Helper method to create empty tables of a given capacity
+     * @param capacity power of two capacity
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity * 3 / 4;
+    }
+
+    /**
+     * Helper method to grow the tables and reinsert every record
+     * @param capacity new power of two capacity
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package home.customer;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import home.appointments.Appointment;
+import home.appointments.Contact;
+import home.appointments.User;
+import home.metrics.Counter;
+import home.metrics.LatencyHistogram;
+import home.metrics.MetricRegistry;
+
+/**
+ * Class that records the latency of every call made to the repository of the data manager.
+ * Each repository method has a histogram named db. followed by the method name, and calls that throw
+ * SQLException or a runtime exception are also counted in db.errors. Calls that hand rows to a callback include
+ * the callback's time. Queries outside the repository interface, such as a streamed export, are recorded the same
+ * way through query.
+ */
+public class MeteredRepository implements Repository
+{
+    private static final MetricRegistry metrics = MetricRegistry.getInstance();
+    private static final Counter ERRORS = metrics.counter("db.errors");
+    private static final LatencyHistogram FIND_COUNTRIES = metrics.histogram("db.findCountries");
+    private static final LatencyHistogram FIND_DIVISIONS = metrics.histogram("db.findDivisions");
+    private static final LatencyHistogram FIND_CONTACTS = metrics.histogram("db.findContacts");
+    private static final LatencyHistogram FIND_USERS = metrics.histogram("db.findUsers");
+    private static final LatencyHistogram FIND_APPOINTMENTS = metrics.histogram("db.findAppointments");
+    private static final LatencyHistogram FIND_CUSTOMERS = metrics.histogram("db.findCustomers");
+    private static final LatencyHistogram COUNT_CUSTOMERS = metrics.histogram("db.countCustomers");
+    private static final LatencyHistogram FIND_CUSTOMERS_CHANGED = metrics.histogram("db.findCustomersChangedSince");
+    private static final LatencyHistogram FIND_APPOINTMENTS_CHANGED = metrics.histogram("db.findAppointmentsChangedSince");
+    private static final LatencyHistogram FIND_CUSTOMER_IDS = metrics.histogram("db.findCustomerIds");
+    private static final LatencyHistogram FIND_APPOINTMENT_IDS = metrics.histogram("db.findAppointmentIds");
+    private static final LatencyHistogram FIND_TOMBSTONES = metrics.histogram("db.findTombstonesAfter");
+    private static final LatencyHistogram FIND_LATEST_TOMBSTONE = metrics.histogram("db.findLatestTombstoneId");
+    private static final LatencyHistogram INSERT_CUSTOMER = metrics.histogram("db.insertCustomer");
+    private static final LatencyHistogram INSERT_APPOINTMENT = metrics.histogram("db.insertAppointment");
+    private static final LatencyHistogram INSERT_CUSTOMERS = metrics.histogram("db.insertCustomers");
+    private static final LatencyHistogram INSERT_APPOINTMENTS = metrics.histogram("db.insertAppointments");
+    private static final LatencyHistogram UPDATE_CUSTOMER = metrics.histogram("db.updateCustomer");
+    private static final LatencyHistogram UPDATE_APPOINTMENT = metrics.histogram("db.updateAppointment");
+    private static final LatencyHistogram UPDATE_CUSTOMERS = metrics.histogram("db.updateCustomers");
+    private static final LatencyHistogram UPDATE_APPOINTMENTS = metrics.histogram("db.updateAppointments");
+    private static final LatencyHistogram DELETE_CUSTOMERS = metrics.histogram("db.deleteCustomers");
+    private static final LatencyHistogram DELETE_APPOINTMENT = metrics.histogram("db.deleteAppointment");
+
+    private final Repository delegate;
+
+    /**
+     * Constructor to create a metered repository
+     * @param delegate repository the calls are passed to
+     */
+    MeteredRepository(final Repository delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Retrieves the repository the calls are passed to, used to check which store is in use
+     * Calls made directly on it are not recorded
+     * @return the repository
+     */
+    public Repository getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Runs a query the repository interface does not cover and records it in the histogram db. followed by the
+     * operation name. Write errors of the caller are not counted as database errors
+     * @param operation name of the operation
+     * @param query query to run
+     * @throws IOException if the caller fails to write what was read
+     * @throws SQLException if the query fails
+     */
+    public void query(String operation, Query query) throws IOException, SQLException {
+        LatencyHistogram histogram = metrics.histogram("db." + operation);
+        long started = System.nanoTime();
+        try {
+            query.run();
+        } catch (SQLException | RuntimeException e) {
+            ERRORS.increment();
+            throw e;
+        } finally {
+            histogram.recordSince(started);
+        }
+    }
+
+    @Override
+    public List<Country> findCountries() throws SQLException {
+        return call(FIND_COUNTRIES, delegate::findCountries);
+    }
+
+    @Override
+    public List<Division> findDivisions(IntFunction<Country> countries) throws SQLException {
+        return call(FIND_DIVISIONS, () -> delegate.findDivisions(countries));
+    }
+
+    @Override
+    public List<Contact> findContacts() throws SQLException {
+        return call(FIND_CONTACTS, delegate::findContacts);
+    }
+
+    @Override
+    public List<User> findUsers() throws SQLException {
+        return call(FIND_USERS, delegate::findUsers);
+    }
+
+    @Override
+    public List<Appointment> findAppointments(IntFunction<Contact> contacts, IntFunction<User> users) throws SQLException {
+        return call(FIND_APPOINTMENTS, () -> delegate.findAppointments(contacts, users));
+    }
+
+    @Override
+    public void findCustomers(IntFunction<Division> divisions, IntFunction<List<Appointment>> appointmentsOf,
+        Consumer<Customer> onCustomer) throws SQLException
+    {
+        run(FIND_CUSTOMERS, () -> delegate.findCustomers(divisions, appointmentsOf, onCustomer));
+    }
+
+    @Override
+    public int countCustomers() throws SQLException {
+        return call(COUNT_CUSTOMERS, delegate::countCustomers);
+    }
+
+    @Override
+    public List<Customer> findCustomersChangedSince(Timestamp since, IntFunction<Division> divisions) throws SQLException {
+        return call(FIND_CUSTOMERS_CHANGED, () -> delegate.findCustomersChangedSince(since, divisions));
+    }
+
+    @Override
+    public List<Appointment> findAppointmentsChangedSince(Timestamp since, IntFunction<Contact> contacts,
+        IntFunction<User> users) throws SQLException
+    {
+        return call(FIND_APPOINTMENTS_CHANGED, () -> delegate.findAppointmentsChangedSince(since, contacts, users));
+    }
+
+    @Override
+    public int[] findCustomerIds() throws SQLException {
+        return call(FIND_CUSTOMER_IDS, delegate::findCustomerIds);
+    }
+
+    @Override
+    public int[] findAppointmentIds() throws SQLException {
+        return call(FIND_APPOINTMENT_IDS, delegate::findAppointmentIds);
+    }
+
+    @Override
+    public List<DeltaSync.Tombstone> findTombstonesAfter(long afterId) throws SQLException {
+        return call(FIND_TOMBSTONES, () -> delegate.findTombstonesAfter(afterId));
+    }
+
+    @Override
+    public long findLatestTombstoneId() throws SQLException {
+        return call(FIND_LATEST_TOMBSTONE, delegate::findLatestTombstoneId);
+    }
+
+    @Override
+    public int insertCustomer(Customer customer) throws SQLException {
+        return call(INSERT_CUSTOMER, () -> delegate.insertCustomer(customer));
+    }
+
+    @Override
+    public int insertAppointment(Appointment appointment) throws SQLException {
+        return call(INSERT_APPOINTMENT, () -> delegate.insertAppointment(appointment));
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> newCustomers, int batchSize) throws SQLException {
+        run(INSERT_CUSTOMERS, () -> delegate.insertCustomers(newCustomers, batchSize));
+    }
+
+    @Override
+    public void insertAppointments(List<Appointment> newAppointments, int batchSize) throws SQLException {
+        run(INSERT_APPOINTMENTS, () -> delegate.insertAppointments(newAppointments, batchSize));
+    }
+
+    @Override
+    public void updateCustomer(Customer customer, int fields) throws SQLException {
+        run(UPDATE_CUSTOMER, () -> delegate.updateCustomer(customer, fields));
+    }
+
+    @Override
+    public void updateAppointment(Appointment appointment, int fields) throws SQLException {
+        run(UPDATE_APPOINTMENT, () -> delegate.updateAppointment(appointment, fields));
+    }
+
+    @Override
+    public void updateCustomers(Map<Integer, List<Customer>> customersByFields, int batchSize) throws SQLException {
+        run(UPDATE_CUSTOMERS, () -> delegate.updateCustomers(customersByFields, batchSize));
+    }
+
+    @Override
+    public void updateAppointments(Map<Integer, List<Appointment>> appointmentsByFields, int batchSize)
+        throws SQLException
+    {
+        run(UPDATE_APPOINTMENTS, () -> delegate.updateAppointments(appointmentsByFields, batchSize));
+    }
+
+    @Override
+    public void deleteCustomers(List<Customer> customersToRemove) throws SQLException {
+        run(DELETE_CUSTOMERS, () -> delegate.deleteCustomers(customersToRemove));
+    }
+
+    @Override
+    public void deleteAppointment(Appointment appointment) throws SQLException {
+        run(DELETE_APPOINTMENT, () -> delegate.deleteAppointment(appointment));
+    }
+
+    /**
+     * Helper method that times a repository call returning a value
+     * @param histogram histogram the latency is recorded in
+     * @param call call to the repository
+     * @return the result of the call
+     * @throws SQLException if the call fails
+     */
+    private static <T> T call(LatencyHistogram histogram, MetricRegistry.TimedCall<T, SQLException> call)
+        throws SQLException
+    {
+        long started = System.nanoTime();
+        try {
+            return call.call();
+        } catch (SQLException | RuntimeException e) {
+            ERRORS.increment();
+            throw e;
+        } finally {
+            histogram.recordSince(started);
+        }
+    }
+
+    /**
+     * Helper method that times a repository call without a result
+     * @param histogram histogram the latency is recorded in
+     * @param call call to the repository
+     * @throws SQLException if the call fails
+     */
+    private static void run(LatencyHistogram histogram, SqlRun call) throws SQLException {
+        call(histogram, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Interface for a query run outside the repository interface
+     */
+    public interface Query
+    {
+        void run() throws IOException, SQLException;
+    }
+
+    /**
+     * Interface for a repository call without a result
+     */
+    private interface SqlRun
+    {
+        void run() throws SQLException;
+    }
+}
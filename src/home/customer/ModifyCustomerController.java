@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import home.metrics.MetricRegistry;
 import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -60,7 +61,7 @@ public class ModifyCustomerController
         customer = null;
         FXMLLoader fxmlLoader = new FXMLLoader();
         fxmlLoader.setLocation(getClass().getResource("/resources/views/modify-customer.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 500, 500);
+        Scene scene = new Scene(MetricRegistry.getInstance().time("fxml.load.modify-customer", fxmlLoader::load), 500, 500);
         Stage stage = new Stage();
         stage.setTitle("Add Customer");
         stage.setScene(scene);
@@ -79,7 +80,7 @@ public class ModifyCustomerController
         this.customer = customer;
         FXMLLoader fxmlLoader = new FXMLLoader();
         fxmlLoader.setLocation(getClass().getResource("/resources/views/modify-customer.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 500, 500);
+        Scene scene = new Scene(MetricRegistry.getInstance().time("fxml.load.modify-customer", fxmlLoader::load), 500, 500);
         Stage stage = new Stage();
         stage.setTitle("Edit Customer");
         stage.setScene(scene);
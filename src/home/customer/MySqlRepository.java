@@ -0,0 +1,765 @@
+package home.customer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+import home.JDBC;
+import home.appointments.Appointment;
+import home.appointments.Contact;
+import home.appointments.User;
+
+/**
+ * Class that stores the records in the MySQL schedule database through the shared connection pool.
+ */
+public class MySqlRepository implements Repository
+{
+    private static final int DELETE_BATCH_SIZE = 500;
+    // SQL state of a query on a table that does not exist
+    private static final String MISSING_TABLE_STATE = "42S02";
+    // update columns in the order of the Customer and Appointment field bits
+    private static final String[] CUSTOMER_UPDATE_COLUMNS = { "customer_name", "address", "postal_code", "phone",
+        "division_id", "last_update", "last_updated_by" };
+    private static final String[] APPOINTMENT_UPDATE_COLUMNS = { "title", "description", "location", "type", "start",
+        "end", "customer_id", "user_id", "contact_id", "last_update", "last_updated_by" };
+    private static final String APPOINTMENT_SELECT = "select appointment_id, title, description, location, type, " +
+        "start, end, customer_id, user_id, contact_id, create_date, created_by, " +
+        "last_update, last_updated_by from appointments";
+    private static final String CUSTOMER_SELECT = "select customer_id, customer_name, address, postal_code, phone, " +
+        "division_id, create_date, created_by, last_update, last_updated_by from customers";
+    private static final String INSERT_CUSTOMER_QUERY = "insert into customers " +
+        "(customer_name, address, postal_code, phone, create_date, created_by, last_update, " +
+        "last_updated_by, division_id) values (?,?,?,?,?,?,?,?,?)";
+    private static final String INSERT_APPOINTMENT_QUERY = "insert into appointments " +
+        "(title, description, location, type, start, end, create_date, created_by, last_update, " +
+        "last_updated_by, customer_id, user_id, contact_id) values (?,?,?,?,?,?,?,?,?,?,?,?,?)";
+    private final String[] customerUpdateQueries = new String[1 << CUSTOMER_UPDATE_COLUMNS.length];
+    private final String[] appointmentUpdateQueries = new String[1 << APPOINTMENT_UPDATE_COLUMNS.length];
+    private boolean missingTombstoneTableReported = false;
+
+    @Override
+    public List<Country> findCountries() throws SQLException {
+        List<Country> countriesFromDB = new ArrayList<>();
+        String query = "select country_id, country from countries";
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query)) {
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                int countryId = resultSet.getInt("country_id");
+                String countryName = resultSet.getString("country");
+                countriesFromDB.add(new Country(countryId, countryName));
+            }
+        }
+        return countriesFromDB;
+    }
+
+    @Override
+    public List<Division> findDivisions(IntFunction<Country> countries) throws SQLException {
+        List<Division> divisionsFromDB = new ArrayList<>();
+        String query = "select division_id, division, country_id from first_level_divisions";
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query)) {
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                int divsionId = resultSet.getInt("division_id");
+                String divisionName = resultSet.getString("division");
+                int countryId = resultSet.getInt("country_id");
+                divisionsFromDB.add(new Division(divsionId, divisionName, countries.apply(countryId)));
+            }
+        }
+        return divisionsFromDB;
+    }
+
+    @Override
+    public List<Contact> findContacts() throws SQLException {
+        List<Contact> contactsFromDB = new ArrayList<>();
+        String query = "select contact_id, contact_name, email from contacts";
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query)) {
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                int contactId = resultSet.getInt("contact_id");
+                String contactName = resultSet.getString("contact_name");
+                String contactEmail = resultSet.getString("email");
+                contactsFromDB.add(new Contact(contactId, contactName, contactEmail));
+            }
+        }
+        return contactsFromDB;
+    }
+
+    @Override
+    public List<User> findUsers() throws SQLException {
+        List<User> usersFromDB = new ArrayList<>();
+        String query = "select user_id, user_name, password from users";
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query)) {
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                int userId = resultSet.getInt("user_id");
+                String userName = resultSet.getString("user_name");
+                String password = resultSet.getString("password");
+                usersFromDB.add(new User(userId, userName, password));
+            }
+        }
+        return usersFromDB;
+    }
+
+    @Override
+    public List<Appointment> findAppointments(IntFunction<Contact> contacts, IntFunction<User> users) throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(APPOINTMENT_SELECT)) {
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                appointments.add(readAppointment(resultSet, contacts, users));
+            }
+        }
+        return appointments;
+    }
+
+    @Override
+    public void findCustomers(IntFunction<Division> divisions, IntFunction<List<Appointment>> appointmentsOf,
+        Consumer<Customer> onCustomer) throws SQLException
+    {
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(CUSTOMER_SELECT)) {
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                List<Appointment> customerApppointments = appointmentsOf.apply(resultSet.getInt("customer_id"));
+                onCustomer.accept(readCustomer(resultSet, divisions,
+                    customerApppointments != null ? customerApppointments : new ArrayList<>()));
+            }
+        }
+    }
+
+    @Override
+    public int countCustomers() throws SQLException {
+        String query = "select count(*) from customers";
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query)) {
+            ResultSet resultSet = myStmt.executeQuery();
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    @Override
+    public List<Customer> findCustomersChangedSince(Timestamp since, IntFunction<Division> divisions) throws SQLException {
+        List<Customer> changedCustomers = new ArrayList<>();
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(CUSTOMER_SELECT + " where last_update >= ?")) {
+            myStmt.setTimestamp(1, since);
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                changedCustomers.add(readCustomer(resultSet, divisions, new ArrayList<>()));
+            }
+        }
+        return changedCustomers;
+    }
+
+    @Override
+    public List<Appointment> findAppointmentsChangedSince(Timestamp since, IntFunction<Contact> contacts,
+        IntFunction<User> users) throws SQLException
+    {
+        List<Appointment> changedAppointments = new ArrayList<>();
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(APPOINTMENT_SELECT + " where last_update >= ?")) {
+            myStmt.setTimestamp(1, since);
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                changedAppointments.add(readAppointment(resultSet, contacts, users));
+            }
+        }
+        return changedAppointments;
+    }
+
+    @Override
+    public int[] findCustomerIds() throws SQLException {
+        return findSortedIds("select customer_id from customers order by customer_id");
+    }
+
+    @Override
+    public int[] findAppointmentIds() throws SQLException {
+        return findSortedIds("select appointment_id from appointments order by appointment_id");
+    }
+
+    @Override
+    public List<DeltaSync.Tombstone> findTombstonesAfter(long afterId) throws SQLException {
+        List<DeltaSync.Tombstone> tombstones = new ArrayList<>();
+        String query = "select tombstone_id, table_name, record_id from deleted_records where tombstone_id > ? " +
+            "order by tombstone_id";
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query)) {
+            myStmt.setLong(1, afterId);
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                tombstones.add(new DeltaSync.Tombstone(resultSet.getLong("tombstone_id"),
+                    resultSet.getString("table_name"), resultSet.getInt("record_id")));
+            }
+        } catch (SQLException e) {
+            if (!isMissingTombstoneTable(e)) {
+                throw e;
+            }
+        }
+        return tombstones;
+    }
+
+    @Override
+    public long findLatestTombstoneId() throws SQLException {
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement("select coalesce(max(tombstone_id), 0) from deleted_records")) {
+            ResultSet resultSet = myStmt.executeQuery();
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        } catch (SQLException e) {
+            if (!isMissingTombstoneTable(e)) {
+                throw e;
+            }
+            return 0;
+        }
+    }
+
+    @Override
+    public int insertCustomer(Customer customer) throws SQLException {
+        int customerId = 0;
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(INSERT_CUSTOMER_QUERY, Statement.RETURN_GENERATED_KEYS)) {
+            setCustomerInsertParameters(myStmt, customer);
+            myStmt.executeUpdate();
+            try (ResultSet res = myStmt.getGeneratedKeys()) {
+                if (res.next()) {
+                    customerId = res.getInt(1);
+                }
+            }
+        }
+        customer.clearDirtyFields(~0);
+        return customerId;
+    }
+
+    @Override
+    public int insertAppointment(Appointment appointment) throws SQLException {
+        int appointmentId = 0;
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(INSERT_APPOINTMENT_QUERY, Statement.RETURN_GENERATED_KEYS)) {
+            setAppointmentInsertParameters(myStmt, appointment);
+            myStmt.executeUpdate();
+            try (ResultSet res = myStmt.getGeneratedKeys()) {
+                if (res.next()) {
+                    appointmentId = res.getInt(1);
+                }
+            }
+        }
+        appointment.clearDirtyFields(~0);
+        return appointmentId;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> newCustomers, int batchSize) throws SQLException {
+        insertBatched(INSERT_CUSTOMER_QUERY, newCustomers, batchSize, this::setCustomerInsertParameters, (customer, id) -> {
+            customer.setId(id);
+            customer.clearDirtyFields(~0);
+        });
+    }
+
+    @Override
+    public void insertAppointments(List<Appointment> newAppointments, int batchSize) throws SQLException {
+        insertBatched(INSERT_APPOINTMENT_QUERY, newAppointments, batchSize, this::setAppointmentInsertParameters,
+            (appointment, id) -> {
+                appointment.setId(id);
+                appointment.clearDirtyFields(~0);
+            });
+    }
+
+    @Override
+    public void updateCustomer(Customer customer, int fields) throws SQLException {
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(customerUpdateQuery(fields))) {
+            setCustomerUpdateParameters(myStmt, customer, fields);
+            myStmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public void updateAppointment(Appointment appointment, int fields) throws SQLException {
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(appointmentUpdateQuery(fields))) {
+            setAppointmentUpdateParameters(myStmt, appointment, fields);
+            myStmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public void updateCustomers(Map<Integer, List<Customer>> customersByFields, int batchSize) throws SQLException {
+        updateBatched(customersByFields, batchSize, this::customerUpdateQuery, this::setCustomerUpdateParameters);
+    }
+
+    @Override
+    public void updateAppointments(Map<Integer, List<Appointment>> appointmentsByFields, int batchSize)
+        throws SQLException
+    {
+        updateBatched(appointmentsByFields, batchSize, this::appointmentUpdateQuery, this::setAppointmentUpdateParameters);
+    }
+
+    /**
+     * Deletes customer records and all their appointments in one transaction
+     * Appointments are deleted by customer id, one statement per customer sent in JDBC batches,
+     * so the number of round trips does not depend on the number of appointments.
+     * The tombstones other workstations sync from are written by the delete triggers of resources/sql/deleted_records.sql
+     * @param customersToRemove customers to delete from database
+     * @throws SQLException if any delete fails, in which case nothing was deleted
+     */
+    @Override
+    public void deleteCustomers(List<Customer> customersToRemove) throws SQLException {
+        String appointmentsQuery = "delete from appointments where customer_id = ?";
+        String customersQuery = "delete from customers where customer_id = ?";
+        try (Connection conn = JDBC.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement appointmentsStmt = conn.prepareStatement(appointmentsQuery);
+                 PreparedStatement customersStmt = conn.prepareStatement(customersQuery)) {
+                for (int i = 0; i < customersToRemove.size(); i++) {
+                    int customerId = customersToRemove.get(i).getId();
+                    appointmentsStmt.setInt(1, customerId);
+                    appointmentsStmt.addBatch();
+                    customersStmt.setInt(1, customerId);
+                    customersStmt.addBatch();
+                    if ((i + 1) % DELETE_BATCH_SIZE == 0) {
+                        executeDeleteBatches(appointmentsStmt, customersStmt);
+                    }
+                }
+                executeDeleteBatches(appointmentsStmt, customersStmt);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    @Override
+    public void deleteAppointment(Appointment appointment) throws SQLException {
+        String query = "delete from appointments where appointment_id = ?";
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query)) {
+            myStmt.setInt(1, appointment.getId());
+            myStmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Helper method that builds an appointment from the current row of an APPOINTMENT_SELECT result
+     * @param resultSet result positioned on an appointment row
+     * @param contacts gives the contact of an id
+     * @param users gives the user of an id
+     * @return appointment of the row, with no changed fields
+     * @throws SQLException if a column cannot be read
+     */
+    private Appointment readAppointment(ResultSet resultSet, IntFunction<Contact> contacts, IntFunction<User> users)
+        throws SQLException
+    {
+        int appointmentId = resultSet.getInt("appointment_id");
+        String title = resultSet.getString("title");
+        String description = resultSet.getString("description");
+        String location = resultSet.getString("location");
+        String type = resultSet.getString("type");
+        String createdBy = resultSet.getString("created_by");
+        String updatedBy = resultSet.getString("last_updated_by");
+        int customerId = resultSet.getInt("customer_id");
+        int userId = resultSet.getInt("user_id");
+        int contactId = resultSet.getInt("contact_id");
+        Timestamp startTimestamp = resultSet.getTimestamp("start");
+        ZonedDateTime startZonedDateTime = ZonedDateTime.ofInstant(startTimestamp.toInstant(), ZoneId.systemDefault());
+        Timestamp endTimestamp = resultSet.getTimestamp("end");
+        ZonedDateTime endZonedDateTime = ZonedDateTime.ofInstant(endTimestamp.toInstant(), ZoneId.systemDefault());
+        Appointment appointment = new Appointment(appointmentId, title, description, location, type, startZonedDateTime,
+            endZonedDateTime, customerId, contacts.apply(contactId), users.apply(userId));
+        Timestamp created = resultSet.getTimestamp("create_date");
+        ZonedDateTime createdZone = ZonedDateTime.ofInstant(created.toInstant(), ZoneId.systemDefault());
+        Timestamp updated = resultSet.getTimestamp("last_update");
+        ZonedDateTime updatedZone = ZonedDateTime.ofInstant(updated.toInstant(), ZoneId.systemDefault());
+        appointment.setCreatedBy(createdBy);
+        appointment.setCreateDate(createdZone);
+        appointment.setLastUpdatedBy(updatedBy);
+        appointment.setLastUpdate(updatedZone);
+        appointment.clearDirtyFields(~0);
+        return appointment;
+    }
+
+    /**
+     * Helper method that builds a customer from the current row of a CUSTOMER_SELECT result
+     * @param resultSet result positioned on a customer row
+     * @param divisions gives the division of an id
+     * @param customerAppointments appointments of the customer
+     * @return customer of the row, with no changed fields
+     * @throws SQLException if a column cannot be read
+     */
+    private Customer readCustomer(ResultSet resultSet, IntFunction<Division> divisions,
+        List<Appointment> customerAppointments) throws SQLException
+    {
+        int customerId = resultSet.getInt("customer_id");
+        String customerName = resultSet.getString("customer_name");
+        String customerAddress = resultSet.getString("address");
+        String customerPhone = resultSet.getString("phone");
+        String customerPostal = resultSet.getString("postal_code");
+        String createdBy = resultSet.getString("created_by");
+        String updatedBy = resultSet.getString("last_updated_by");
+        int divisionId = resultSet.getInt("division_id");
+        Customer customer = new Customer(customerId, customerName, customerAddress, customerPostal, customerPhone,
+            customerAppointments, divisions.apply(divisionId));
+        Timestamp created = resultSet.getTimestamp("create_date");
+        ZonedDateTime createdZone = ZonedDateTime.ofInstant(created.toInstant(), ZoneId.systemDefault());
+        Timestamp updated = resultSet.getTimestamp("last_update");
+        ZonedDateTime updatedZone = ZonedDateTime.ofInstant(updated.toInstant(), ZoneId.systemDefault());
+        customer.setCreatedBy(createdBy);
+        customer.setCreateDate(createdZone);
+        customer.setLastUpdatedBy(updatedBy);
+        customer.setLastUpdate(updatedZone);
+        customer.clearDirtyFields(~0);
+        return customer;
+    }
+
+    /**
+     * Helper method that reads a single column of ids into an array
+     *
+     * @param query query selecting the ids in ascending order
+     * @return ids in ascending order
+     * @throws SQLException if the ids cannot be read
+     */
+    private int[] findSortedIds(String query) throws SQLException {
+        int[] ids = new int[1024];
+        int count = 0;
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query)) {
+            ResultSet resultSet = myStmt.executeQuery();
+            while (resultSet.next()) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = resultSet.getInt(1);
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Helper method to check if a query failed because the tombstone table has not been created
+     * Without the table deletions are not synced, the check runs on every query so the sync picks the table up
+     * as soon as the migration in resources/sql/deleted_records.sql is applied
+     *
+     * @param e error of the query
+     * @return true if the deleted_records table does not exist otherwise false
+     */
+    private synchronized boolean isMissingTombstoneTable(SQLException e) {
+        if (!MISSING_TABLE_STATE.equals(e.getSQLState())) {
+            return false;
+        }
+        if (!missingTombstoneTableReported) {
+            System.out.println("Error with reading deleted records, run resources/sql/deleted_records.sql " +
+                e.getMessage());
+            missingTombstoneTableReported = true;
+        }
+        return true;
+    }
+
+    /**
+     * Helper method that runs the pending batches of the customer delete statements
+     * Appointments go before customers so the customers no longer have rows referencing them
+     *
+     * @param statements statements in execution order
+     * @throws SQLException if any statement fails
+     */
+    private static void executeDeleteBatches(PreparedStatement... statements) throws SQLException {
+        for (PreparedStatement statement : statements) {
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Helper method that runs the update of every row with addBatch/executeBatch inside one transaction
+     * Each group of rows with the same changed fields is sent with a single statement
+     * @param rowsByFields records to update grouped by their changed fields
+     * @param batchSize number of rows per executeBatch call
+     * @param queryForFields gives the update statement of a set of changed fields
+     * @param setParameters sets the statement parameters of one record
+     * @throws SQLException if any statement fails, the transaction is rolled back
+     */
+    private <T> void updateBatched(Map<Integer, List<T>> rowsByFields, int batchSize, IntFunction<String> queryForFields,
+        UpdateParameterSetter<T> setParameters) throws SQLException
+    {
+        if (rowsByFields.isEmpty()) {
+            return;
+        }
+        try (Connection conn = JDBC.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<Integer, List<T>> group : rowsByFields.entrySet()) {
+                    int fields = group.getKey();
+                    List<T> groupRows = group.getValue();
+                    try (PreparedStatement myStmt = conn.prepareStatement(queryForFields.apply(fields))) {
+                        for (int i = 0; i < groupRows.size(); i++) {
+                            setParameters.set(myStmt, groupRows.get(i), fields);
+                            myStmt.addBatch();
+                            if ((i + 1) % batchSize == 0 || i == groupRows.size() - 1) {
+                                myStmt.executeBatch();
+                            }
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Helper method that inserts rows with addBatch/executeBatch inside one transaction and collects the generated ids
+     * The ids are handed over once every batch is committed, so a rolled back insert leaves the records unchanged
+     * @param query insert statement
+     * @param rows records to insert
+     * @param batchSize number of rows per executeBatch call
+     * @param setParameters sets the statement parameters of one record
+     * @param setId sets the generated id of one record and marks it as saved
+     * @throws SQLException if any insert fails, the transaction is rolled back
+     */
+    private <T> void insertBatched(String query, List<T> rows, int batchSize, ParameterSetter<T> setParameters,
+        ObjIntConsumer<T> setId) throws SQLException
+    {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int[] generatedIds = new int[rows.size()];
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            conn.setAutoCommit(false);
+            try {
+                int next = 0;
+                for (int i = 0; i < rows.size(); i++) {
+                    setParameters.set(myStmt, rows.get(i));
+                    myStmt.addBatch();
+                    if ((i + 1) % batchSize == 0 || i == rows.size() - 1) {
+                        myStmt.executeBatch();
+                        try (ResultSet res = myStmt.getGeneratedKeys()) {
+                            while (res.next() && next < generatedIds.length) {
+                                generatedIds[next++] = res.getInt(1);
+                            }
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            setId.accept(rows.get(i), generatedIds[i]);
+        }
+    }
+
+    /**
+     * Helper method that sets the parameters of the customer insert statement
+     * @param myStmt statement prepared from INSERT_CUSTOMER_QUERY
+     * @param customer customer to insert
+     */
+    private void setCustomerInsertParameters(PreparedStatement myStmt, Customer customer) throws SQLException {
+        myStmt.setString(1, customer.getName());
+        myStmt.setString(2, customer.getAddress());
+        myStmt.setString(3, customer.getPostalCode());
+        myStmt.setString(4, customer.getPhoneNumber());
+        ZonedDateTime utcCreate = customer.getCreateDate().withZoneSameInstant(ZoneId.of("UTC"));
+        myStmt.setTimestamp(5, Timestamp.from(utcCreate.toInstant()));
+        myStmt.setString(6, customer.getCreatedBy());
+        ZonedDateTime utcLastUpdate = customer.getLastUpdate().withZoneSameInstant(ZoneId.of("UTC"));
+        myStmt.setTimestamp(7, Timestamp.from(utcLastUpdate.toInstant()));
+        myStmt.setString(8, customer.getLastUpdatedBy());
+        myStmt.setInt(9, customer.getDivision().getDivisionId());
+    }
+
+    /**
+     * Helper method that sets the parameters of the appointment insert statement
+     * @param myStmt statement prepared from INSERT_APPOINTMENT_QUERY
+     * @param appointment appointment to insert
+     */
+    private void setAppointmentInsertParameters(PreparedStatement myStmt, Appointment appointment) throws SQLException {
+        myStmt.setString(1, appointment.getTitle());
+        myStmt.setString(2, appointment.getDescription());
+        myStmt.setString(3, appointment.getLocationAppointment());
+        myStmt.setString(4, appointment.getType());
+        ZonedDateTime utcStart = appointment.getStartDate().withZoneSameInstant(ZoneId.of("UTC"));
+        myStmt.setTimestamp(5, Timestamp.from(utcStart.toInstant()));
+        ZonedDateTime utcEnd = appointment.getEndDate().withZoneSameInstant(ZoneId.of("UTC"));
+        myStmt.setTimestamp(6, Timestamp.from(utcEnd.toInstant()));
+        ZonedDateTime utcCreate = appointment.getCreateDate().withZoneSameInstant(ZoneId.of("UTC"));
+        myStmt.setTimestamp(7, Timestamp.from(utcCreate.toInstant()));
+        myStmt.setString(8, appointment.getCreatedBy());
+        ZonedDateTime utcLastUpdate = appointment.getLastUpdate().withZoneSameInstant(ZoneId.of("UTC"));
+        myStmt.setTimestamp(9, Timestamp.from(utcLastUpdate.toInstant()));
+        myStmt.setString(10, appointment.getLastUpdatedBy());
+        myStmt.setInt(11, appointment.getCustomerId());
+        myStmt.setInt(12, appointment.getUserId());
+        myStmt.setInt(13, appointment.getContact().getId());
+    }
+
+    /**
+     * Helper method to retrieve the update statement that sets only the given customer columns
+     * Statements are built once per combination of columns
+     * @param fields changed field bits of the customer
+     * @return update statement for those columns
+     */
+    private String customerUpdateQuery(int fields) {
+        String query = customerUpdateQueries[fields];
+        if (query == null) {
+            query = buildUpdateQuery("customers", CUSTOMER_UPDATE_COLUMNS, fields, "customer_id");
+            customerUpdateQueries[fields] = query;
+        }
+        return query;
+    }
+
+    /**
+     * Helper method to retrieve the update statement that sets only the given appointment columns
+     * Statements are built once per combination of columns
+     * @param fields changed field bits of the appointment
+     * @return update statement for those columns
+     */
+    private String appointmentUpdateQuery(int fields) {
+        String query = appointmentUpdateQueries[fields];
+        if (query == null) {
+            query = buildUpdateQuery("appointments", APPOINTMENT_UPDATE_COLUMNS, fields, "appointment_id");
+            appointmentUpdateQueries[fields] = query;
+        }
+        return query;
+    }
+
+    /**
+     * Helper method that builds an update statement setting the columns whose bits are in the fields
+     * @param table table to update
+     * @param columns columns in the order of the field bits
+     * @param fields field bits of the columns to set
+     * @param idColumn column identifying the row
+     * @return update statement
+     */
+    private static String buildUpdateQuery(String table, String[] columns, int fields, String idColumn) {
+        StringBuilder query = new StringBuilder("update ").append(table).append(" set ");
+        String separator = "";
+        for (int i = 0; i < columns.length; i++) {
+            if ((fields & (1 << i)) != 0) {
+                query.append(separator).append(columns[i]).append(" = ?");
+                separator = ", ";
+            }
+        }
+        return query.append(" where ").append(idColumn).append(" = ?").toString();
+    }
+
+    /**
+     * Helper method that sets the parameters of a customer update statement, in the order of the field bits
+     * @param myStmt statement prepared from customerUpdateQuery(fields)
+     * @param customer customer to update
+     * @param fields changed field bits the statement sets
+     */
+    private void setCustomerUpdateParameters(PreparedStatement myStmt, Customer customer, int fields) throws SQLException {
+        int index = 1;
+        if ((fields & Customer.NAME) != 0) {
+            myStmt.setString(index++, customer.getName());
+        }
+        if ((fields & Customer.ADDRESS) != 0) {
+            myStmt.setString(index++, customer.getAddress());
+        }
+        if ((fields & Customer.POSTAL_CODE) != 0) {
+            myStmt.setString(index++, customer.getPostalCode());
+        }
+        if ((fields & Customer.PHONE) != 0) {
+            myStmt.setString(index++, customer.getPhoneNumber());
+        }
+        if ((fields & Customer.DIVISION) != 0) {
+            myStmt.setInt(index++, customer.getDivision().getDivisionId());
+        }
+        if ((fields & Customer.LAST_UPDATE) != 0) {
+            myStmt.setTimestamp(index++, Timestamp.from(customer.getLastUpdate().toInstant()));
+        }
+        if ((fields & Customer.LAST_UPDATED_BY) != 0) {
+            myStmt.setString(index++, customer.getLastUpdatedBy());
+        }
+        myStmt.setInt(index, customer.getId());
+    }
+
+    /**
+     * Helper method that sets the parameters of an appointment update statement, in the order of the field bits
+     * @param myStmt statement prepared from appointmentUpdateQuery(fields)
+     * @param appointment appointment to update
+     * @param fields changed field bits the statement sets
+     */
+    private void setAppointmentUpdateParameters(PreparedStatement myStmt, Appointment appointment, int fields)
+        throws SQLException
+    {
+        int index = 1;
+        if ((fields & Appointment.TITLE) != 0) {
+            myStmt.setString(index++, appointment.getTitle());
+        }
+        if ((fields & Appointment.DESCRIPTION) != 0) {
+            myStmt.setString(index++, appointment.getDescription());
+        }
+        if ((fields & Appointment.LOCATION) != 0) {
+            myStmt.setString(index++, appointment.getLocationAppointment());
+        }
+        if ((fields & Appointment.TYPE) != 0) {
+            myStmt.setString(index++, appointment.getType());
+        }
+        if ((fields & Appointment.START) != 0) {
+            myStmt.setTimestamp(index++, Timestamp.from(appointment.getStartDate().toInstant()));
+        }
+        if ((fields & Appointment.END) != 0) {
+            myStmt.setTimestamp(index++, Timestamp.from(appointment.getEndDate().toInstant()));
+        }
+        if ((fields & Appointment.CUSTOMER) != 0) {
+            myStmt.setInt(index++, appointment.getCustomerId());
+        }
+        if ((fields & Appointment.USER) != 0) {
+            myStmt.setInt(index++, appointment.getUserId());
+        }
+        if ((fields & Appointment.CONTACT) != 0) {
+            myStmt.setInt(index++, appointment.getContact().getId());
+        }
+        if ((fields & Appointment.LAST_UPDATE) != 0) {
+            myStmt.setTimestamp(index++, Timestamp.from(appointment.getLastUpdate().toInstant()));
+        }
+        if ((fields & Appointment.LAST_UPDATED_BY) != 0) {
+            myStmt.setString(index++, appointment.getLastUpdatedBy());
+        }
+        myStmt.setInt(index, appointment.getId());
+    }
+
+    /**
+     * Interface for setting the statement parameters of one record
+     * @param <T> type of record
+     */
+    private interface ParameterSetter<T>
+    {
+        void set(PreparedStatement statement, T row) throws SQLException;
+    }
+
+    /**
+     * Interface for setting the update statement parameters of one record
+     * @param <T> type of record
+     */
+    private interface UpdateParameterSetter<T>
+    {
+        void set(PreparedStatement statement, T row, int fields) throws SQLException;
+    }
+}
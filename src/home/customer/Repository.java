@@ -0,0 +1,196 @@
+package home.customer;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import home.appointments.Appointment;
+import home.appointments.Contact;
+import home.appointments.User;
+
+/**
+ * Interface for the store the data manager loads and saves records through.
+ * Records are built and resolved against the data already loaded, the repository only reads and writes rows.
+ * Every method throws SQLException when the rows cannot be read or written, so callers handle one error type
+ * whatever store is behind the repository.
+ */
+public interface Repository
+{
+    /**
+     * Retrieves the repository named by the repository system property, MySQL when it is not set
+     * @param name memory for the in-memory store, anything else for MySQL
+     * @return the repository
+     */
+    static Repository forName(String name) {
+        if ("memory".equalsIgnoreCase(name)) {
+            InMemoryRepository repository = new InMemoryRepository();
+            repository.seedReferenceData();
+            return repository;
+        }
+        return new MySqlRepository();
+    }
+
+    /**
+     * Reads every country
+     * @return countries
+     */
+    List<Country> findCountries() throws SQLException;
+
+    /**
+     * Reads every division
+     * @param countries gives the country of an id
+     * @return divisions
+     */
+    List<Division> findDivisions(IntFunction<Country> countries) throws SQLException;
+
+    /**
+     * Reads every contact
+     * @return contacts
+     */
+    List<Contact> findContacts() throws SQLException;
+
+    /**
+     * Reads every user
+     * @return users
+     */
+    List<User> findUsers() throws SQLException;
+
+    /**
+     * Reads every appointment
+     * @param contacts gives the contact of an id
+     * @param users gives the user of an id
+     * @return appointments, with no changed fields
+     */
+    List<Appointment> findAppointments(IntFunction<Contact> contacts, IntFunction<User> users) throws SQLException;
+
+    /**
+     * Reads every customer, handing each one over as it is read
+     * @param divisions gives the division of an id
+     * @param appointmentsOf gives the appointments of a customer id, or null when it has none
+     * @param onCustomer consumer receiving each customer, with no changed fields
+     */
+    void findCustomers(IntFunction<Division> divisions, IntFunction<List<Appointment>> appointmentsOf,
+        Consumer<Customer> onCustomer) throws SQLException;
+
+    /**
+     * Counts the customers
+     * @return number of customers
+     */
+    int countCustomers() throws SQLException;
+
+    /**
+     * Reads the customers whose last update is at or after a time
+     * @param since earliest last update to read
+     * @param divisions gives the division of an id
+     * @return changed customers, without appointments
+     */
+    List<Customer> findCustomersChangedSince(Timestamp since, IntFunction<Division> divisions) throws SQLException;
+
+    /**
+     * Reads the appointments whose last update is at or after a time
+     * @param since earliest last update to read
+     * @param contacts gives the contact of an id
+     * @param users gives the user of an id
+     * @return changed appointments
+     */
+    List<Appointment> findAppointmentsChangedSince(Timestamp since, IntFunction<Contact> contacts,
+        IntFunction<User> users) throws SQLException;
+
+    /**
+     * Reads the id of every customer
+     * @return customer ids in ascending order
+     */
+    int[] findCustomerIds() throws SQLException;
+
+    /**
+     * Reads the id of every appointment
+     * @return appointment ids in ascending order
+     */
+    int[] findAppointmentIds() throws SQLException;
+
+    /**
+     * Reads the tombstones recorded after a tombstone id, oldest first
+     * @param afterId id of the last tombstone already applied
+     * @return tombstones of the records deleted since then, empty when the store does not record deletions yet
+     */
+    List<DeltaSync.Tombstone> findTombstonesAfter(long afterId) throws SQLException;
+
+    /**
+     * Reads the id of the latest tombstone
+     * @return latest tombstone id, 0 when there is none
+     */
+    long findLatestTombstoneId() throws SQLException;
+
+    /**
+     * Inserts a customer and clears its changed fields, since the stored row now matches it
+     * @param customer customer to insert
+     * @return generated customer id
+     */
+    int insertCustomer(Customer customer) throws SQLException;
+
+    /**
+     * Inserts an appointment and clears its changed fields, since the stored row now matches it
+     * @param appointment appointment to insert
+     * @return generated appointment id
+     */
+    int insertAppointment(Appointment appointment) throws SQLException;
+
+    /**
+     * Inserts customers in one transaction, setting their generated ids and clearing their changed fields once it
+     * is committed
+     * @param newCustomers customers to insert
+     * @param batchSize number of rows sent together
+     */
+    void insertCustomers(List<Customer> newCustomers, int batchSize) throws SQLException;
+
+    /**
+     * Inserts appointments in one transaction, setting their generated ids and clearing their changed fields once it
+     * is committed
+     * @param newAppointments appointments to insert
+     * @param batchSize number of rows sent together
+     */
+    void insertAppointments(List<Appointment> newAppointments, int batchSize) throws SQLException;
+
+    /**
+     * Writes the given columns of a customer
+     * @param customer customer to update
+     * @param fields field bits of the columns to write
+     */
+    void updateCustomer(Customer customer, int fields) throws SQLException;
+
+    /**
+     * Writes the given columns of an appointment
+     * @param appointment appointment to update
+     * @param fields field bits of the columns to write
+     */
+    void updateAppointment(Appointment appointment, int fields) throws SQLException;
+
+    /**
+     * Writes customers in one transaction, each group with the columns of its field bits
+     * @param customersByFields customers grouped by the field bits of the columns to write
+     * @param batchSize number of rows sent together
+     */
+    void updateCustomers(Map<Integer, List<Customer>> customersByFields, int batchSize) throws SQLException;
+
+    /**
+     * Writes appointments in one transaction, each group with the columns of its field bits
+     * @param appointmentsByFields appointments grouped by the field bits of the columns to write
+     * @param batchSize number of rows sent together
+     */
+    void updateAppointments(Map<Integer, List<Appointment>> appointmentsByFields, int batchSize) throws SQLException;
+
+    /**
+     * Deletes customers and all their appointments in one transaction, recording a tombstone for each record
+     * @param customersToRemove customers to delete
+     */
+    void deleteCustomers(List<Customer> customersToRemove) throws SQLException;
+
+    /**
+     * Deletes an appointment and records its tombstone in one transaction
+     * @param appointment appointment to delete
+     */
+    void deleteAppointment(Appointment appointment) throws SQLException;
+}
@@ -0,0 +1,133 @@
+package home.customer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Class that runs startup loading stages as a small dependency graph.
+ * A stage starts as soon as the stages it depends on have finished, so independent stages run in parallel
+ * and the total time is bounded by the longest chain of dependent stages.
+ */
+public class StartupLoader
+{
+    private final Executor executor;
+    private final List<Stage> stages = new ArrayList<>();
+    private final Map<String, Long> stageMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile long totalMillis = 0;
+
+    /**
+     * Constructor to create a startup loader
+     * @param executor executor the stages run on
+     */
+    public StartupLoader(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a stage to the graph
+     * @param name name of the stage used when reporting timings
+     * @param action loading work of the stage
+     * @param dependencies stages that must finish before this stage starts
+     * @return the new stage, to be used as a dependency of later stages
+     */
+    public Stage stage(String name, Runnable action, Stage... dependencies) {
+        Stage stage = new Stage(name, action, dependencies);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Starts every stage of the graph
+     * @return future that completes when all stages have finished, or fails with the first stage error
+     */
+    public CompletableFuture<Void> run() {
+        long started = System.nanoTime();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Stage stage : stages) {
+            futures.add(start(stage));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .whenComplete((result, error) -> totalMillis = (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Retrieves how long each finished stage took, in the order the stages were added
+     * @return stage durations in milliseconds by stage name
+     */
+    public Map<String, Long> getStageMillis() {
+        synchronized (stageMillis) {
+            Map<String, Long> ordered = new LinkedHashMap<>();
+            for (Stage stage : stages) {
+                Long millis = stageMillis.get(stage.name);
+                if (millis != null) {
+                    ordered.put(stage.name, millis);
+                }
+            }
+            return ordered;
+        }
+    }
+
+    /**
+     * Retrieves how long the whole graph took once it has finished
+     * @return total duration in milliseconds
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * Retrieves the timings as a single line of text for logging
+     * @return timings summary
+     */
+    public String describeTimings() {
+        StringBuilder summary = new StringBuilder("Startup loaded in ").append(totalMillis).append("ms (");
+        String separator = "";
+        for (Map.Entry<String, Long> entry : getStageMillis().entrySet()) {
+            summary.append(separator).append(entry.getKey()).append(' ').append(entry.getValue()).append("ms");
+            separator = ", ";
+        }
+        return summary.append(')').toString();
+    }
+
+    /**
+     * Helper method that starts a stage once its dependencies have finished, starting each stage only once
+     * @param stage stage to start
+     * @return future of the stage
+     */
+    private CompletableFuture<Void> start(Stage stage) {
+        if (stage.future == null) {
+            CompletableFuture<?>[] dependencyFutures = new CompletableFuture<?>[stage.dependencies.length];
+            for (int i = 0; i < stage.dependencies.length; i++) {
+                dependencyFutures[i] = start(stage.dependencies[i]);
+            }
+            stage.future = CompletableFuture.allOf(dependencyFutures).thenRunAsync(() -> {
+                long started = System.nanoTime();
+                stage.action.run();
+                stageMillis.put(stage.name, (System.nanoTime() - started) / 1_000_000);
+            }, executor);
+        }
+        return stage.future;
+    }
+
+    /**
+     * Class that represents one loading stage of the graph
+     */
+    public static class Stage
+    {
+        private final String name;
+        private final Runnable action;
+        private final Stage[] dependencies;
+        private CompletableFuture<Void> future;
+
+        private Stage(final String name, final Runnable action, final Stage[] dependencies) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package home.customer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import home.appointments.Appointment;
+import home.appointments.Contact;
+import home.appointments.User;
+
+/**
+ * Class that saves customer and appointment edits in the background instead of on the calling thread.
+ * Each edit is kept in memory, where later edits of the same record replace earlier ones, and appended to a local
+ * journal file so it survives a crash. The writer thread writes the journal records queued since its last write
+ * and forces them to disk together, so the calling thread never waits for the disk. It also sends the pending
+ * edits to the database in batches no later than the maximum delay after the first pending edit.
+ * Every flush runs on the writer thread, so edits being written stay in the journal until they are committed.
+ * A deleted record gets a removal record, so its queued edits are not replayed after a restart.
+ * The journal starts with a magic number and a format version, a journal of another format is not replayed.
+ */
+public class WriteBehindQueue
+{
+    private static final byte CUSTOMER_RECORD = 'C';
+    private static final byte APPOINTMENT_RECORD = 'A';
+    private static final byte CUSTOMER_REMOVED_RECORD = 'c';
+    private static final byte APPOINTMENT_REMOVED_RECORD = 'a';
+    private static final int JOURNAL_MAGIC = 0x57424A4C;
+    private static final int JOURNAL_VERSION = 2;
+    private static final int JOURNAL_HEADER_SIZE = 4 + 4;
+    private static final int RECORD_OVERHEAD = 4 + 1 + 8;
+
+    private final DataManager dataManager;
+    private final FileChannel journal;
+    private final long maxDelayMillis;
+    private final int batchSize;
+    private final ScheduledThreadPoolExecutor executor;
+    private IntIndex<Customer> pendingCustomers = new IntIndex<>();
+    private IntIndex<Appointment> pendingAppointments = new IntIndex<>();
+    // edits taken by the flush that is running, until they are committed or queued again
+    private IntIndex<Customer> writingCustomers = new IntIndex<>();
+    private IntIndex<Appointment> writingAppointments = new IntIndex<>();
+    private final ByteArrayOutputStream journalBuffer = new ByteArrayOutputStream();
+    private boolean journalWriteScheduled = false;
+    private ScheduledFuture<?> scheduledFlush = null;
+    private long coalescedWrites = 0;
+
+    /**
+     * Constructor to create a queue, saving any edits left in the journal by a previous run first
+     * @param dataManager data manager the edits are saved through
+     * @param journalFile file the pending edits are kept in
+     * @param maxDelayMillis longest time an edit waits before it is sent to the database
+     * @param batchSize number of rows sent to the database per batch
+     * @throws IOException if the journal cannot be opened
+     */
+    public WriteBehindQueue(final DataManager dataManager, final Path journalFile, final long maxDelayMillis,
+        final int batchSize) throws IOException
+    {
+        this.dataManager = dataManager;
+        this.maxDelayMillis = maxDelayMillis;
+        this.batchSize = batchSize;
+        this.journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // a flush waiting for its delay is not run once the queue is closed, close saves everything itself
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        replayJournal(journalFile);
+    }
+
+    /**
+     * Queues the update of an edited customer
+     * @param customer customer with the new values
+     */
+    public synchronized void customerChanged(Customer customer) {
+        Customer previous = pendingCustomers.put(customer.getId(), customer);
+        if (previous != null) {
+            // the columns changed by the replaced edit still have to be written
+            customer.markDirty(previous.getDirtyFields());
+            coalescedWrites++;
+        }
+        append(CUSTOMER_RECORD, encodeCustomer(customer));
+        scheduleFlush();
+    }
+
+    /**
+     * Queues the update of an edited appointment
+     * @param appointment appointment with the new values
+     */
+    public synchronized void appointmentChanged(Appointment appointment) {
+        Appointment previous = pendingAppointments.put(appointment.getId(), appointment);
+        if (previous != null) {
+            // the columns changed by the replaced edit still have to be written
+            appointment.markDirty(previous.getDirtyFields());
+            coalescedWrites++;
+        }
+        append(APPOINTMENT_RECORD, encodeAppointment(appointment));
+        scheduleFlush();
+    }
+
+    /**
+     * Drops a pending update of a customer that is being deleted and records the removal in the journal
+     * @param customerId id of the customer
+     */
+    public synchronized void customerRemoved(int customerId) {
+        boolean pending = pendingCustomers.remove(customerId) != null;
+        if (writingCustomers.remove(customerId) != null || pending) {
+            append(CUSTOMER_REMOVED_RECORD, encodeId(customerId));
+        }
+    }
+
+    /**
+     * Drops a pending update of an appointment that is being deleted and records the removal in the journal
+     * @param appointmentId id of the appointment
+     */
+    public synchronized void appointmentRemoved(int appointmentId) {
+        boolean pending = pendingAppointments.remove(appointmentId) != null;
+        if (writingAppointments.remove(appointmentId) != null || pending) {
+            append(APPOINTMENT_REMOVED_RECORD, encodeId(appointmentId));
+        }
+    }
+
+    /**
+     * Retrieves the number of edits waiting to be saved
+     * @return number of pending records
+     */
+    public synchronized int getPendingCount() {
+        return pendingCustomers.size() + pendingAppointments.size();
+    }
+
+    /**
+     * Retrieves the number of edits that replaced a pending edit of the same record instead of causing another write
+     * @return number of coalesced edits
+     */
+    public synchronized long getCoalescedWrites() {
+        return coalescedWrites;
+    }
+
+    /**
+     * Saves every pending edit now on the writer thread and waits for it, used before the application exits
+     * @return true if nothing is left pending otherwise false
+     */
+    public boolean flush() {
+        if (executor.isShutdown()) {
+            return getPendingCount() == 0;
+        }
+        try {
+            return executor.submit(this::writePending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            System.out.println("Error with saving queued edits " + e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Helper method that sends the pending edits to the database, only run on the writer thread so two flushes
+     * never overlap and the journal is only rewritten once the edits taken from it are committed
+     * @return true if nothing is left pending otherwise false
+     */
+    private boolean writePending() {
+        List<Customer> customerRows;
+        List<Appointment> appointmentRows;
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            writingCustomers = pendingCustomers;
+            writingAppointments = pendingAppointments;
+            pendingCustomers = new IntIndex<>();
+            pendingAppointments = new IntIndex<>();
+            customerRows = writingCustomers.values();
+            appointmentRows = writingAppointments.values();
+        }
+        try {
+            dataManager.updateCustomers(customerRows, batchSize);
+            dataManager.updateAppointments(appointmentRows, batchSize);
+        } catch (SQLException e) {
+            System.out.println("Error with saving queued edits " + e.getMessage());
+            synchronized (this) {
+                // records deleted while the flush ran were taken out of the writing edits and are not queued again
+                IntIndex<Customer> customers = writingCustomers;
+                IntIndex<Appointment> appointments = writingAppointments;
+                writingCustomers = new IntIndex<>();
+                writingAppointments = new IntIndex<>();
+                // edits made while the flush ran are newer than the ones that failed, but must still write their columns
+                customers.forEachEntry((id, customer) -> {
+                    Customer newer = pendingCustomers.get(id);
+                    if (newer == null) {
+                        pendingCustomers.put(id, customer);
+                    } else if (newer != customer) {
+                        newer.markDirty(customer.getDirtyFields());
+                    }
+                });
+                appointments.forEachEntry((id, appointment) -> {
+                    Appointment newer = pendingAppointments.get(id);
+                    if (newer == null) {
+                        pendingAppointments.put(id, appointment);
+                    } else if (newer != appointment) {
+                        newer.markDirty(appointment.getDirtyFields());
+                    }
+                });
+                scheduleFlush();
+            }
+            return false;
+        }
+        synchronized (this) {
+            writingCustomers = new IntIndex<>();
+            writingAppointments = new IntIndex<>();
+            rewriteJournal();
+            return pendingCustomers.isEmpty() && pendingAppointments.isEmpty();
+        }
+    }
+
+    /**
+     * Saves the pending edits and stops the background writer
+     * @return true if every edit was saved otherwise false, in which case they stay in the journal
+     */
+    public boolean close() {
+        boolean saved = flush();
+        // journal writes queued before the shutdown still run, a flush waiting for its delay is dropped
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // records appended once the writer stopped are written here
+        writeJournal();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("Error with closing the write-behind journal " + e.getMessage());
+        }
+        return saved;
+    }
+
+    /**
+     * Helper method that schedules a flush after the maximum delay unless one is already scheduled
+     */
+    private void scheduleFlush() {
+        if (scheduledFlush == null && !executor.isShutdown()) {
+            scheduledFlush = executor.schedule(() -> {
+                synchronized (this) {
+                    scheduledFlush = null;
+                }
+                writePending();
+            }, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Helper method that replaces the journal content with the edits still pending, so it does not grow
+     * with edits that are already saved or records that were deleted
+     * Records queued for the next journal write are dropped, the pending edits include them
+     */
+    private void rewriteJournal() {
+        journalBuffer.reset();
+        try {
+            journal.truncate(0);
+            writeJournalHeader();
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            pendingCustomers.forEachValue(c -> records.writeBytes(encodeRecord(CUSTOMER_RECORD, encodeCustomer(c))));
+            pendingAppointments.forEachValue(a ->
+                records.writeBytes(encodeRecord(APPOINTMENT_RECORD, encodeAppointment(a))));
+            writeFully(ByteBuffer.wrap(records.toByteArray()));
+            journal.force(false);
+        } catch (IOException e) {
+            System.out.println("Error with rewriting the write-behind journal " + e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method that queues one record for the writer thread to append to the journal
+     * Records queued before the writer gets to them are written and forced to disk together
+     * @param type type of record
+     * @param content encoded record
+     */
+    private void append(byte type, byte[] content) {
+        journalBuffer.writeBytes(encodeRecord(type, content));
+        if (!journalWriteScheduled && !executor.isShutdown()) {
+            journalWriteScheduled = true;
+            executor.execute(this::writeJournal);
+        }
+    }
+
+    /**
+     * Helper method that appends the queued records to the journal and forces them to disk with one call
+     * Runs on the writer thread, or on the closing thread once the writer stopped
+     */
+    private void writeJournal() {
+        byte[] records;
+        synchronized (this) {
+            records = journalBuffer.toByteArray();
+            journalBuffer.reset();
+            journalWriteScheduled = false;
+        }
+        if (records.length == 0) {
+            return;
+        }
+        try {
+            journal.position(journal.size());
+            writeFully(ByteBuffer.wrap(records));
+            journal.force(false);
+        } catch (IOException e) {
+            System.out.println("Error with writing the write-behind journal " + e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method that writes a buffer at the current journal position
+     * @param buffer bytes to write
+     * @throws IOException if the journal cannot be written
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+    }
+
+    /**
+     * Helper method that frames one journal record
+     * A record is its length, its type, its content and a checksum, so a record cut short by a crash is ignored
+     * @param type type of record
+     * @param content encoded record
+     * @return framed record
+     */
+    private static byte[] encodeRecord(byte type, byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(content);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + content.length);
+        record.putInt(content.length).put(type).put(content).putLong(crc.getValue());
+        return record.array();
+    }
+
+    /**
+     * Helper method that writes the magic number and format version at the start of an empty journal
+     * @throws IOException if the journal cannot be written
+     */
+    private void writeJournalHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC).putInt(JOURNAL_VERSION).flip();
+        journal.position(0);
+        writeFully(header);
+        journal.force(false);
+    }
+
+    /**
+     * Helper method that queues the edits left in the journal by a previous run and saves them
+     * A journal of another format is copied aside next to it and a new one is started, since its records
+     * cannot be decoded
+     * @param journalFile file the journal is kept in
+     * @throws IOException if the journal cannot be read
+     */
+    private void replayJournal(Path journalFile) throws IOException {
+        long size = journal.size();
+        if (size == 0) {
+            writeJournalHeader();
+            return;
+        }
+        journal.position(0);
+        DataInputStream input = new DataInputStream(Channels.newInputStream(journal));
+        if (size < JOURNAL_HEADER_SIZE || input.readInt() != JOURNAL_MAGIC || input.readInt() != JOURNAL_VERSION) {
+            Path unreadableFile = journalFile.resolveSibling(journalFile.getFileName() + ".unreadable");
+            System.out.println("Ignoring write-behind journal of another format, kept as " + unreadableFile);
+            Files.copy(journalFile, unreadableFile, StandardCopyOption.REPLACE_EXISTING);
+            journal.truncate(0);
+            writeJournalHeader();
+            return;
+        }
+        long position = JOURNAL_HEADER_SIZE;
+        int records = 0;
+        try {
+            while (position + RECORD_OVERHEAD <= size) {
+                int length = input.readInt();
+                if (length < 0 || length > size - position - RECORD_OVERHEAD) {
+                    // a record cut short by a crash
+                    break;
+                }
+                byte type = input.readByte();
+                byte[] content = new byte[length];
+                input.readFully(content);
+                long checksum = input.readLong();
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(content);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+                if (type == CUSTOMER_RECORD) {
+                    Customer customer = decodeCustomer(content);
+                    pendingCustomers.put(customer.getId(), customer);
+                } else if (type == APPOINTMENT_RECORD) {
+                    Appointment appointment = decodeAppointment(content);
+                    pendingAppointments.put(appointment.getId(), appointment);
+                } else if (type == CUSTOMER_REMOVED_RECORD) {
+                    pendingCustomers.remove(decodeId(content));
+                } else if (type == APPOINTMENT_REMOVED_RECORD) {
+                    pendingAppointments.remove(decodeId(content));
+                }
+                records++;
+                position += RECORD_OVERHEAD + length;
+            }
+        } catch (EOFException e) {
+            // a record cut short by a crash
+        }
+        int pending = getPendingCount();
+        if (pending > 0) {
+            System.out.println("Saving " + pending + " queued edits left by the previous run");
+            flush();
+        } else if (records > 0 || position < size) {
+            rewriteJournal();
+        }
+    }
+
+    /**
+     * Helper method that encodes the id of a removed record
+     * @param id record id
+     * @return encoded id
+     */
+    private static byte[] encodeId(int id) {
+        return ByteBuffer.allocate(4).putInt(id).array();
+    }
+
+    /**
+     * Helper method that decodes the id of a removed record
+     * @param content encoded id
+     * @return record id
+     */
+    private static int decodeId(byte[] content) {
+        return ByteBuffer.wrap(content).getInt();
+    }
+
+    /**
+     * Helper method that encodes the columns of a customer update
+     * @param customer customer to encode
+     * @return encoded customer
+     */
+    private static byte[] encodeCustomer(Customer customer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(customer.getId());
+            output.writeInt(customer.getDirtyFields());
+            writeString(output, customer.getName());
+            writeString(output, customer.getAddress());
+            writeString(output, customer.getPostalCode());
+            writeString(output, customer.getPhoneNumber());
+            writeDate(output, customer.getCreateDate());
+            writeString(output, customer.getCreatedBy());
+            writeDate(output, customer.getLastUpdate());
+            writeString(output, customer.getLastUpdatedBy());
+            output.writeInt(customer.getDivision().getDivisionId());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Helper method that decodes a customer update, with only the ids of related records
+     * @param content encoded customer
+     * @return customer holding the columns of the update
+     */
+    private static Customer decodeCustomer(byte[] content) throws IOException {
+        DataInputStream input = new DataInputStream(new java.io.ByteArrayInputStream(content));
+        int id = input.readInt();
+        int dirtyFields = input.readInt();
+        String name = readString(input);
+        String address = readString(input);
+        String postalCode = readString(input);
+        String phoneNumber = readString(input);
+        ZonedDateTime createDate = readDate(input);
+        String createdBy = readString(input);
+        ZonedDateTime lastUpdate = readDate(input);
+        String lastUpdatedBy = readString(input);
+        Division division = new Division(input.readInt(), "", null);
+        Customer customer = new Customer(id, name, address, postalCode, phoneNumber, new ArrayList<>(), division);
+        customer.setCreateDate(createDate);
+        customer.setCreatedBy(createdBy);
+        customer.setLastUpdate(lastUpdate);
+        customer.setLastUpdatedBy(lastUpdatedBy);
+        customer.clearDirtyFields(~0);
+        customer.markDirty(dirtyFields);
+        return customer;
+    }
+
+    /**
+     * Helper method that encodes the columns of an appointment update
+     * @param appointment appointment to encode
+     * @return encoded appointment
+     */
+    private static byte[] encodeAppointment(Appointment appointment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(appointment.getId());
+            output.writeInt(appointment.getDirtyFields());
+            writeString(output, appointment.getTitle());
+            writeString(output, appointment.getDescription());
+            writeString(output, appointment.getLocationAppointment());
+            writeString(output, appointment.getType());
+            writeDate(output, appointment.getStartDate());
+            writeDate(output, appointment.getEndDate());
+            writeDate(output, appointment.getCreateDate());
+            writeString(output, appointment.getCreatedBy());
+            writeDate(output, appointment.getLastUpdate());
+            writeString(output, appointment.getLastUpdatedBy());
+            output.writeInt(appointment.getCustomerId());
+            output.writeInt(appointment.getUserId());
+            output.writeInt(appointment.getContact().getId());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Helper method that decodes an appointment update, with only the ids of related records
+     * @param content encoded appointment
+     * @return appointment holding the columns of the update
+     */
+    private static Appointment decodeAppointment(byte[] content) throws IOException {
+        DataInputStream input = new DataInputStream(new java.io.ByteArrayInputStream(content));
+        int id = input.readInt();
+        int dirtyFields = input.readInt();
+        String title = readString(input);
+        String description = readString(input);
+        String location = readString(input);
+        String type = readString(input);
+        ZonedDateTime start = readDate(input);
+        ZonedDateTime end = readDate(input);
+        ZonedDateTime createDate = readDate(input);
+        String createdBy = readString(input);
+        ZonedDateTime lastUpdate = readDate(input);
+        String lastUpdatedBy = readString(input);
+        int customerId = input.readInt();
+        User user = new User(input.readInt(), "", "");
+        Contact contact = new Contact(input.readInt(), "", "");
+        Appointment appointment = new Appointment(id, title, description, location, type, start, end, customerId, contact, user);
+        appointment.setCreateDate(createDate);
+        appointment.setCreatedBy(createdBy);
+        appointment.setLastUpdate(lastUpdate);
+        appointment.setLastUpdatedBy(lastUpdatedBy);
+        appointment.clearDirtyFields(~0);
+        appointment.markDirty(dirtyFields);
+        return appointment;
+    }
+
+    /**
+     * Helper method that writes a text value that may be null
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    /**
+     * Helper method that reads a text value that may be null
+     */
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    /**
+     * Helper method that writes a date as epoch milliseconds
+     */
+    private static void writeDate(DataOutputStream output, ZonedDateTime value) throws IOException {
+        output.writeLong(value.toInstant().toEpochMilli());
+    }
+
+    /**
+     * Helper method that reads a date written as epoch milliseconds, in the local time zone
+     */
+    private static ZonedDateTime readDate(DataInputStream input) throws IOException {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(input.readLong()), ZoneId.systemDefault());
+    }
+}
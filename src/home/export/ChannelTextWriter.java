@@ -0,0 +1,126 @@
+package home.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class that writes UTF-8 text to a file channel through fixed size buffers.
+ * Memory use stays the same no matter how much text is written.
+ */
+public class ChannelTextWriter implements Closeable
+{
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+    private static final int CHAR_BUFFER_SIZE = 16 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private long bytesWritten = 0;
+
+    /**
+     * Constructor to create a writer, replacing the file if it exists
+     * @param file file to write to
+     * @throws IOException if the file cannot be opened
+     */
+    public ChannelTextWriter(final Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes text to the file
+     * @param text text to write
+     * @throws IOException if the text cannot be written
+     */
+    public void write(String text) throws IOException {
+        int position = 0;
+        int length = text.length();
+        while (position < length) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int end = Math.min(length, position + chars.remaining());
+            chars.put(text, position, end);
+            position = end;
+        }
+    }
+
+    /**
+     * Writes a single character to the file
+     * @param character character to write
+     * @throws IOException if the character cannot be written
+     */
+    public void write(char character) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(character);
+    }
+
+    /**
+     * Retrieves the number of bytes written to the file so far
+     * @return number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the remaining buffered text and closes the file
+     * @throws IOException if the text cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drainBytes();
+            }
+            drainBytes();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Helper method that encodes the buffered characters into the byte buffer, writing it out whenever it fills up
+     * @param endOfInput true when no more characters will follow
+     * @throws IOException if the bytes cannot be written
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drainBytes();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        // a surrogate pair split between two writes stays in the buffer until the next one
+        chars.compact();
+    }
+
+    /**
+     * Helper method that writes the byte buffer to the channel
+     * @throws IOException if the bytes cannot be written
+     */
+    private void drainBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -0,0 +1,231 @@
+package home.export;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+import home.JDBC;
+import home.appointments.Appointment;
+import home.customer.Customer;
+import home.customer.DataManager;
+import home.customer.MySqlRepository;
+import home.reports.AppointmentEntry;
+import home.reports.CustomerEntry;
+
+/**
+ * Class that exports report entries and raw appointment and customer data to CSV or JSON files.
+ * Rows are written as they are produced. Data that is not loaded in memory is read from a streaming
+ * database cursor, so the size of an export is not limited by the heap.
+ */
+public class DataExporter
+{
+    private static final String[] APPOINTMENT_COLUMNS = { "appointment_id", "title", "description", "location", "type",
+        "start", "end", "customer_id", "user_id", "contact_id", "create_date", "created_by", "last_update", "last_updated_by" };
+    private static final String[] CUSTOMER_COLUMNS = { "customer_id", "customer_name", "address", "postal_code", "phone",
+        "division_id", "create_date", "created_by", "last_update", "last_updated_by" };
+
+    private final DateTimeFormatter formatter = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+    /**
+     * Exports the entries of the appointments by type and month report
+     * @param entries report entries
+     * @param file file to write
+     * @param format format of the file
+     * @return number of rows written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportAppointmentEntries(List<AppointmentEntry> entries, Path file, ExportFormat format) throws IOException {
+        try (RowWriter writer = new RowWriter(file, format, "appointment_type", "appointment_month", "total_appointments")) {
+            for (AppointmentEntry entry : entries) {
+                writer.writeRow(entry.getAppointmentType(), entry.getAppointmentMonth(), entry.getAppointmentTotal());
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Exports the entries of the appointments by customer and type report
+     * @param entries report entries
+     * @param file file to write
+     * @param format format of the file
+     * @return number of rows written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportCustomerEntries(List<CustomerEntry> entries, Path file, ExportFormat format) throws IOException {
+        try (RowWriter writer = new RowWriter(file, format, "customer_name", "appointment_type", "total_appointments")) {
+            for (CustomerEntry entry : entries) {
+                writer.writeRow(entry.getCustomerName(), entry.getAppointmentType(), entry.getTotalAppointments());
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Exports the schedule of each contact, one row per appointment
+     * @param appointmentsByContact appointments grouped by contact name
+     * @param file file to write
+     * @param format format of the file
+     * @return number of rows written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportContactSchedules(Map<String, List<Appointment>> appointmentsByContact, Path file, ExportFormat format)
+        throws IOException
+    {
+        try (RowWriter writer = new RowWriter(file, format, "contact_name", "appointment_id", "title", "type",
+            "description", "start", "end", "customer_id")) {
+            for (Map.Entry<String, List<Appointment>> contactEntry : appointmentsByContact.entrySet()) {
+                for (Appointment appointment : contactEntry.getValue()) {
+                    writer.writeRow(contactEntry.getKey(), appointment.getId(), appointment.getTitle(), appointment.getType(),
+                        appointment.getDescription(), format(appointment.getStartDate()), format(appointment.getEndDate()),
+                        appointment.getCustomerId());
+                }
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Exports every appointment, from memory when appointments are loaded otherwise from a database cursor
+     * @param file file to write
+     * @param format format of the file
+     * @return number of rows written
+     * @throws IOException if the file cannot be written
+     * @throws SQLException if the appointments cannot be read
+     */
+    public long exportAppointments(Path file, ExportFormat format) throws IOException, SQLException {
+        if (DataManager.getInstance().appointments.isEmpty() && !canStream()) {
+            DataManager.getInstance().loadReferenceData();
+        }
+        List<Appointment> loadedAppointments = DataManager.getInstance().appointments;
+        try (RowWriter writer = new RowWriter(file, format, APPOINTMENT_COLUMNS)) {
+            if (loadedAppointments.isEmpty()) {
+                streamRows("exportAppointments", "select appointment_id, title, description, location, type, start, end, customer_id, " +
+                    "user_id, contact_id, create_date, created_by, last_update, last_updated_by from appointments", writer);
+            } else {
+                for (Appointment appointment : loadedAppointments) {
+                    writer.writeRow(appointment.getId(), appointment.getTitle(), appointment.getDescription(),
+                        appointment.getLocationAppointment(), appointment.getType(), format(appointment.getStartDate()),
+                        format(appointment.getEndDate()), appointment.getCustomerId(), appointment.getUserId(),
+                        appointment.getContact() != null ? appointment.getContact().getId() : null,
+                        format(appointment.getCreateDate()), appointment.getCreatedBy(), format(appointment.getLastUpdate()),
+                        appointment.getLastUpdatedBy());
+                }
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Exports every customer, from memory when customers are loaded otherwise from a database cursor
+     * @param file file to write
+     * @param format format of the file
+     * @return number of rows written
+     * @throws IOException if the file cannot be written
+     * @throws SQLException if the customers cannot be read
+     */
+    public long exportCustomers(Path file, ExportFormat format) throws IOException, SQLException {
+        if (DataManager.getInstance().customers.isEmpty() && !canStream()) {
+            DataManager.getInstance().loadReferenceData();
+            DataManager.getInstance().loadCustomers();
+        }
+        List<Customer> loadedCustomers = DataManager.getInstance().customers;
+        try (RowWriter writer = new RowWriter(file, format, CUSTOMER_COLUMNS)) {
+            if (loadedCustomers.isEmpty()) {
+                streamRows("exportCustomers", "select customer_id, customer_name, address, postal_code, phone, division_id, create_date, " +
+                    "created_by, last_update, last_updated_by from customers", writer);
+            } else {
+                for (Customer customer : loadedCustomers) {
+                    writer.writeRow(customer.getId(), customer.getName(), customer.getAddress(), customer.getPostalCode(),
+                        customer.getPhoneNumber(), customer.getDivision() != null ? customer.getDivision().getDivisionId() : null,
+                        format(customer.getCreateDate()), customer.getCreatedBy(), format(customer.getLastUpdate()),
+                        customer.getLastUpdatedBy());
+                }
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Helper method to check if data that is not loaded can be streamed from a database cursor
+     * Other repositories keep their records in memory, so they are loaded instead
+     * @return true if the MySQL repository is in use otherwise false
+     */
+    private boolean canStream() {
+        return DataManager.getInstance().getRepository().getDelegate() instanceof MySqlRepository;
+    }
+
+    /**
+     * Helper method that writes every row of a query, reading it through a forward only streaming cursor
+     * so the driver holds one row at a time
+     * The query is recorded in the db metrics under the operation name
+     * @param operation name the query is recorded under
+     * @param query query whose columns match the writer's columns
+     * @param writer writer receiving the rows
+     * @throws IOException if a row cannot be written
+     * @throws SQLException if the query fails
+     */
+    private void streamRows(String operation, String query, RowWriter writer) throws IOException, SQLException {
+        DataManager.getInstance().getRepository().query(operation, () -> writeRows(query, writer));
+    }
+
+    /**
+     * Helper method that reads the rows of a query and hands each one to the writer
+     * Date and time columns are read as timestamps whatever type the driver maps them to, so DATETIME and
+     * TIMESTAMP columns are written in the same format and zone as the data read from memory
+     * @param query query whose columns match the writer's columns
+     * @param writer writer receiving the rows
+     * @throws IOException if a row cannot be written
+     * @throws SQLException if the query fails
+     */
+    private void writeRows(String query, RowWriter writer) throws IOException, SQLException {
+        try (Connection conn = JDBC.getConnection();
+             PreparedStatement myStmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // MySQL streams rows one by one instead of buffering the whole result when the fetch size is Integer.MIN_VALUE
+            myStmt.setFetchSize(Integer.MIN_VALUE);
+            ResultSet resultSet = myStmt.executeQuery();
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            boolean[] timestampColumns = new boolean[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                timestampColumns[i] = metaData.getColumnType(i + 1) == Types.TIMESTAMP
+                    || metaData.getColumnType(i + 1) == Types.TIMESTAMP_WITH_TIMEZONE;
+            }
+            Object[] values = new Object[columnCount];
+            while (resultSet.next()) {
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = timestampColumns[i] ? format(resultSet.getTimestamp(i + 1)) : resultSet.getObject(i + 1);
+                }
+                writer.writeRow(values);
+            }
+        }
+    }
+
+    /**
+     * Helper method to format a date the same way for data read from memory and from the database
+     * @param date date to format
+     * @return formatted date otherwise null
+     */
+    private String format(ZonedDateTime date) {
+        return date != null ? formatter.format(date) : null;
+    }
+
+    /**
+     * Helper method to format a database timestamp in the local time zone
+     * @param timestamp timestamp to format
+     * @return formatted date otherwise null
+     */
+    private String format(Timestamp timestamp) {
+        return timestamp != null ? format(ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault())) : null;
+    }
+}
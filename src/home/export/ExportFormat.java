@@ -0,0 +1,24 @@
+package home.export;
+
+/**
+ * Formats data can be exported to
+ */
+public enum ExportFormat
+{
+    CSV("csv"),
+    JSON("json");
+
+    private final String extension;
+
+    ExportFormat(final String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Retrieves the file extension used for the format
+     * @return file extension without the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
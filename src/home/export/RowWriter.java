@@ -0,0 +1,181 @@
+package home.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Class that writes rows of values with named columns as CSV or as a JSON array of objects.
+ * Each row is written out as soon as it is given, so only the current row is held in memory.
+ */
+public class RowWriter implements Closeable
+{
+    private final ChannelTextWriter writer;
+    private final ExportFormat format;
+    private final String[] columns;
+    private long rowCount = 0;
+
+    /**
+     * Constructor to create a row writer, writing the CSV header or opening the JSON array
+     * @param file file to write to
+     * @param format format of the file
+     * @param columns names of the columns
+     * @throws IOException if the file cannot be written
+     */
+    public RowWriter(final Path file, final ExportFormat format, final String... columns) throws IOException {
+        this.writer = new ChannelTextWriter(file);
+        this.format = format;
+        this.columns = columns;
+        if (format == ExportFormat.CSV) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeCsvValue(columns[i]);
+            }
+            writer.write('\n');
+        } else {
+            writer.write('[');
+        }
+    }
+
+    /**
+     * Writes one row, with one value per column
+     * Numbers and booleans are written as they are, every other value is written as text
+     * @param values values of the row, null for an empty value
+     * @throws IOException if the row cannot be written
+     */
+    public void writeRow(Object... values) throws IOException {
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException("Expected " + columns.length + " values but got " + values.length);
+        }
+        if (format == ExportFormat.CSV) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writeCsvValue(values[i].toString());
+                }
+            }
+            writer.write('\n');
+        } else {
+            writer.write(rowCount == 0 ? "\n{" : ",\n{");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeJsonString(columns[i]);
+                writer.write(':');
+                writeJsonValue(values[i]);
+            }
+            writer.write('}');
+        }
+        rowCount++;
+    }
+
+    /**
+     * Retrieves the number of rows written so far
+     * @return number of rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Retrieves the number of bytes written so far
+     * @return number of bytes
+     */
+    public long getBytesWritten() {
+        return writer.getBytesWritten();
+    }
+
+    /**
+     * Closes the JSON array when needed and closes the file
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (format == ExportFormat.JSON) {
+            writer.write("\n]\n");
+        }
+        writer.close();
+    }
+
+    /**
+     * Helper method to write a CSV value, quoting it when it contains a separator, quote or line break
+     * @param value value to write
+     * @throws IOException if the value cannot be written
+     */
+    private void writeCsvValue(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Helper method to write a JSON value
+     * @param value value to write
+     * @throws IOException if the value cannot be written
+     */
+    private void writeJsonValue(Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            writer.write(value.toString());
+        } else {
+            writeJsonString(value.toString());
+        }
+    }
+
+    /**
+     * Helper method to write a quoted and escaped JSON string
+     * @param value text to write
+     * @throws IOException if the text cannot be written
+     */
+    private void writeJsonString(String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
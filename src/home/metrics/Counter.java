@@ -0,0 +1,46 @@
+package home.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that counts how many times an event happened, such as a cache hit.
+ * Threads add to separate cells that are only summed when the count is read, so counting from many threads
+ * does not contend on one value.
+ */
+public class Counter implements CounterMBean
+{
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Constructor to create a counter, counters are created through the metric registry
+     * @param name name the counter is reported under
+     */
+    Counter(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Counts one event
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Counts several events
+     * @param events number of events
+     */
+    public void add(long events) {
+        count.add(events);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,13 @@
+package home.metrics;
+
+/**
+ * Management interface of a counter, read through JMX
+ */
+public interface CounterMBean
+{
+    /**
+     * Retrieves how many times the counted event happened
+     * @return count
+     */
+    long getCount();
+}
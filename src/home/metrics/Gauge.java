@@ -0,0 +1,32 @@
+package home.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Class that reports a value owned by another class, such as the number of connections in use.
+ * The value is only read when the gauge is read, so a gauge costs nothing while nobody looks at it.
+ */
+public class Gauge implements GaugeMBean
+{
+    private final String name;
+    private final LongSupplier value;
+
+    /**
+     * Constructor to create a gauge, gauges are created through the metric registry
+     * @param name name the gauge is reported under
+     * @param value reads the current value
+     */
+    Gauge(final String name, final LongSupplier value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getValue() {
+        return value.getAsLong();
+    }
+}
@@ -0,0 +1,13 @@
+package home.metrics;
+
+/**
+ * Management interface of a gauge, read through JMX
+ */
+public interface GaugeMBean
+{
+    /**
+     * Retrieves the current value
+     * @return value
+     */
+    long getValue();
+}
@@ -0,0 +1,199 @@
+package home.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that records latencies in nanoseconds into buckets that grow with the value, in the style of an
+ * HDR histogram. Every power of two is split into 32 equal buckets, so a percentile is within about 3% of
+ * the recorded value from nanoseconds up to days with a fixed array of counts.
+ * Recording is a few atomic additions without locks or allocation, so it can stay on in production;
+ * percentiles are computed from a copy of the counts when the histogram is read.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean
+{
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Constructor to create a histogram, histograms are created through the metric registry
+     * @param name name the histogram is reported under
+     */
+    LatencyHistogram(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a latency
+     * @param nanos latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalNanos.add(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since a start read from System.nanoTime
+     * @param startedNanos value of System.nanoTime when the timed work started
+     */
+    public void recordSince(long startedNanos) {
+        record(System.nanoTime() - startedNanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return snapshot().count;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return snapshot().meanMillis();
+    }
+
+    @Override
+    public double getP50Millis() {
+        return snapshot().percentileMillis(0.5);
+    }
+
+    @Override
+    public double getP90Millis() {
+        return snapshot().percentileMillis(0.9);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return snapshot().percentileMillis(0.99);
+    }
+
+    @Override
+    public double getP999Millis() {
+        return snapshot().percentileMillis(0.999);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    /**
+     * Retrieves the histogram as one line of text
+     * @return count, mean, percentiles and maximum in milliseconds
+     */
+    public String describe() {
+        Snapshot snapshot = snapshot();
+        return String.format("%s count %d mean %.3fms p50 %.3fms p90 %.3fms p99 %.3fms p99.9 %.3fms max %.3fms", name,
+            snapshot.count, snapshot.meanMillis(), snapshot.percentileMillis(0.5), snapshot.percentileMillis(0.9),
+            snapshot.percentileMillis(0.99), snapshot.percentileMillis(0.999), snapshot.maxNanos / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Helper method that finds the bucket of a value
+     * Values below 32 have a bucket each, larger values keep their 6 highest bits
+     * @param value value in nanoseconds, not negative
+     * @return bucket index
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Helper method that finds the highest value a bucket holds
+     * @param bucket bucket index
+     * @return highest value in nanoseconds
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long top = bucket - ((long) shift << SUB_BUCKET_BITS);
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Helper method that copies the counts, so every value read from the copy describes the same recordings
+     * @return copy of the counts
+     */
+    private Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * Class that holds a copy of the counts of a histogram
+     */
+    private static class Snapshot
+    {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Snapshot(final long[] counts, final long count, final long totalNanos, final long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * Retrieves the average of the recorded values
+         * @return mean in milliseconds, 0 when nothing was recorded
+         */
+        private double meanMillis() {
+            return count > 0 ? totalNanos / NANOS_PER_MILLI / count : 0;
+        }
+
+        /**
+         * Retrieves the value a fraction of the recorded values are at or below
+         * @param quantile fraction between 0 and 1
+         * @return percentile in milliseconds, 0 when nothing was recorded
+         */
+        private double percentileMillis(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), maxNanos) / NANOS_PER_MILLI;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package home.metrics;
+
+/**
+ * Management interface of a latency histogram, read through JMX
+ * Latencies are reported in milliseconds
+ */
+public interface LatencyHistogramMBean
+{
+    /**
+     * Retrieves how many latencies were recorded
+     * @return count
+     */
+    long getCount();
+
+    /**
+     * Retrieves the average latency
+     * @return mean in milliseconds
+     */
+    double getMeanMillis();
+
+    /**
+     * Retrieves the median latency
+     * @return 50th percentile in milliseconds
+     */
+    double getP50Millis();
+
+    /**
+     * Retrieves the latency 90% of the recordings are at or below
+     * @return 90th percentile in milliseconds
+     */
+    double getP90Millis();
+
+    /**
+     * Retrieves the latency 99% of the recordings are at or below
+     * @return 99th percentile in milliseconds
+     */
+    double getP99Millis();
+
+    /**
+     * Retrieves the latency 99.9% of the recordings are at or below
+     * @return 99.9th percentile in milliseconds
+     */
+    double getP999Millis();
+
+    /**
+     * Retrieves the highest latency
+     * @return maximum in milliseconds
+     */
+    double getMaxMillis();
+
+    /**
+     * Forgets every recorded latency
+     */
+    void reset();
+}
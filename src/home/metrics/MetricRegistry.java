@@ -0,0 +1,174 @@
+package home.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Class that holds the counters, gauges and latency histograms of the application.
+ * Every metric is registered as a platform MBean under the home.metrics domain when it is created, so it can be
+ * read with JConsole or any JMX client, and the registry can print all of them to the log at a fixed interval.
+ * Metrics are looked up by name once and kept in a field by the code that records them, so recording does not
+ * go through the registry.
+ */
+public class MetricRegistry
+{
+    private static final String DOMAIN = "home.metrics";
+    private static final MetricRegistry instance = new MetricRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reporter = null;
+
+    /**
+     * private constructor to define singleton
+     */
+    private MetricRegistry() {
+    }
+
+    /**
+     * Retrieves the registry shared by the whole application
+     * @return the registry
+     */
+    public static MetricRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Retrieves the counter of a name, creating it on first use
+     * @param name name of the counter
+     * @return the counter
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> register("Counter", key, new Counter(key)));
+    }
+
+    /**
+     * Retrieves the gauge of a name, creating it on first use
+     * A gauge that already exists keeps reading its first value
+     * @param name name of the gauge
+     * @param value reads the current value
+     * @return the gauge
+     */
+    public Gauge gauge(String name, LongSupplier value) {
+        return gauges.computeIfAbsent(name, key -> register("Gauge", key, new Gauge(key, value)));
+    }
+
+    /**
+     * Retrieves the latency histogram of a name, creating it on first use
+     * @param name name of the histogram
+     * @return the histogram
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> register("Histogram", key, new LatencyHistogram(key)));
+    }
+
+    /**
+     * Runs a call and records how long it took in the histogram of a name, also when it fails
+     * @param name name of the histogram
+     * @param call call to time
+     * @return the result of the call
+     * @throws E if the call fails
+     */
+    public <T, E extends Exception> T time(String name, TimedCall<T, E> call) throws E {
+        LatencyHistogram histogram = histogram(name);
+        long started = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            histogram.recordSince(started);
+        }
+    }
+
+    /**
+     * Prints every metric to the log at a fixed interval, on a background thread
+     * Calling it again replaces the previous interval
+     * @param interval time between two prints
+     */
+    public synchronized void startReporting(Duration interval) {
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, interval.toMillis());
+        reporter.scheduleAtFixedRate(() -> System.out.println(describe()), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops printing the metrics at an interval
+     */
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Retrieves every metric as text, one line per metric ordered by name
+     * Counters and histograms that never recorded anything are left out
+     * @return metrics summary
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder("Metrics at ").append(LocalDateTime.now());
+        for (Counter counter : new TreeMap<>(counters).values()) {
+            long count = counter.getCount();
+            if (count > 0) {
+                text.append(System.lineSeparator()).append("  ").append(counter.getName()).append(' ').append(count);
+            }
+        }
+        for (Gauge gauge : new TreeMap<>(gauges).values()) {
+            text.append(System.lineSeparator()).append("  ").append(gauge.getName()).append(' ').append(gauge.getValue());
+        }
+        for (LatencyHistogram histogram : new TreeMap<>(histograms).values()) {
+            if (histogram.getCount() > 0) {
+                text.append(System.lineSeparator()).append("  ").append(histogram.describe());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Helper method that registers a metric with the platform MBean server
+     * The metric is still recorded when it cannot be registered, it is only missing from JMX
+     * @param type type key of the MBean name
+     * @param name name of the metric
+     * @param metric metric to register
+     * @return the metric
+     */
+    private static <M> M register(String type, String name, M metric) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metric, objectName);
+        } catch (JMException e) {
+            System.out.println("Error registering metric " + name + " " + e.getMessage());
+        }
+        return metric;
+    }
+
+    /**
+     * Interface for a call whose duration is recorded
+     */
+    public interface TimedCall<T, E extends Exception>
+    {
+        /**
+         * Runs the call
+         * @return the result of the call
+         * @throws E if the call fails
+         */
+        T call() throws E;
+    }
+}
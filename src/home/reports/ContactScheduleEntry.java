@@ -0,0 +1,94 @@
+package home.reports;
+
+import home.appointments.Appointment;
+
+/**
+ * Class that represents a row of the contact schedule report.
+ * A row is either the header of a contact, an appointment of that contact or a placeholder for appointments not shown yet.
+ */
+public class ContactScheduleEntry {
+    private final String label;
+    private final Appointment appointment;
+
+    /**
+     * Constructor to initialize a contact header or placeholder row
+     * @param label text shown in the first column
+     */
+    public ContactScheduleEntry(final String label) {
+        this.label = label;
+        this.appointment = null;
+    }
+
+    /**
+     * Constructor to initialize an appointment row
+     * @param appointment appointment shown in the row
+     */
+    public ContactScheduleEntry(final Appointment appointment) {
+        this.label = String.valueOf(appointment.getId());
+        this.appointment = appointment;
+    }
+
+    /**
+     * Retrieves the text of the first column, the contact for header rows and the appointment id otherwise
+     * @return text of the first column
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Retrieves the appointment of the row
+     * @return the appointment otherwise null for header and placeholder rows
+     */
+    public Appointment getAppointment() {
+        return this.appointment;
+    }
+
+    /**
+     * Retrieves the appointment title
+     * @return the title otherwise empty
+     */
+    public String getTitle() {
+        return appointment != null ? appointment.getTitle() : "";
+    }
+
+    /**
+     * Retrieves the appointment type
+     * @return the type otherwise empty
+     */
+    public String getType() {
+        return appointment != null ? appointment.getType() : "";
+    }
+
+    /**
+     * Retrieves the appointment description
+     * @return the description otherwise empty
+     */
+    public String getDescription() {
+        return appointment != null ? appointment.getDescription() : "";
+    }
+
+    /**
+     * Retrieves the appointment start date
+     * @return the start date otherwise empty
+     */
+    public String getStartDateString() {
+        return appointment != null ? appointment.getStartDateString() : "";
+    }
+
+    /**
+     * Retrieves the appointment end date
+     * @return the end date otherwise empty
+     */
+    public String getEndDateString() {
+        return appointment != null ? appointment.getEndDateString() : "";
+    }
+
+    /**
+     * Retrieves the customer id of the appointment
+     * @return the customer id otherwise empty
+     */
+    public String getCustomerId() {
+        return appointment != null ? String.valueOf(appointment.getCustomerId()) : "";
+    }
+}
@@ -0,0 +1,225 @@
+package home.reports;
+
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+import home.appointments.Appointment;
+import home.appointments.AppointmentIntervalIndex;
+import home.customer.IntIndex;
+
+/**
+ * Class that keeps the report totals up to date as appointments are added, edited and removed.
+ * Opening a report only reads the stored groups instead of regrouping every appointment.
+ */
+public class ReportAggregates
+{
+    private final Map<String, int[]> totalsByTypeAndMonth = new TreeMap<>();
+    private final IntIndex<Map<String, int[]>> totalsByCustomerAndType = new IntIndex<>();
+    private final Map<String, AppointmentIntervalIndex> appointmentsByContact = new TreeMap<>();
+
+    /**
+     * Replaces every total with the totals of the given appointments
+     * @param appointments appointments to count
+     */
+    public synchronized void replaceAll(Collection<Appointment> appointments) {
+        totalsByTypeAndMonth.clear();
+        totalsByCustomerAndType.clear();
+        appointmentsByContact.clear();
+        Map<String, List<Appointment>> contactAppointments = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            countTotals(appointment, 1);
+            contactAppointments.computeIfAbsent(contactName(appointment), c -> new ArrayList<>()).add(appointment);
+        }
+        // each contact index is sorted once instead of inserting appointments one by one
+        for (Map.Entry<String, List<Appointment>> contactEntry : contactAppointments.entrySet()) {
+            appointmentsByContact.put(contactEntry.getKey(), new AppointmentIntervalIndex(contactEntry.getValue()));
+        }
+    }
+
+    /**
+     * Counts a newly added appointment
+     * @param appointment appointment that was added
+     */
+    public synchronized void appointmentAdded(Appointment appointment) {
+        count(appointment, 1);
+    }
+
+    /**
+     * Moves an edited appointment from the groups of its previous values to the groups of its new values
+     * @param previous appointment as it was before the edit, null if it was not counted
+     * @param appointment appointment with the new values
+     */
+    public synchronized void appointmentEdited(Appointment previous, Appointment appointment) {
+        if (previous != null) {
+            count(previous, -1);
+        }
+        count(appointment, 1);
+    }
+
+    /**
+     * Stops counting an appointment that was removed
+     * @param appointment appointment that was removed
+     */
+    public synchronized void appointmentRemoved(Appointment appointment) {
+        count(appointment, -1);
+    }
+
+    /**
+     * Retrieves the entries of the appointments by type and month report
+     * @return one entry per type and month that has appointments
+     */
+    public synchronized List<AppointmentEntry> getAppointmentEntries() {
+        List<AppointmentEntry> entries = new ArrayList<>();
+        for (Map.Entry<String, int[]> typeEntry : totalsByTypeAndMonth.entrySet()) {
+            int[] totalsByMonth = typeEntry.getValue();
+            for (int month = 0; month < totalsByMonth.length; month++) {
+                if (totalsByMonth[month] > 0) {
+                    entries.add(new AppointmentEntry(typeEntry.getKey(), Month.of(month + 1).toString(), totalsByMonth[month]));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Retrieves the entries of the appointments by customer and type report
+     * @param customerNames function giving the name of a customer from its id
+     * @return one entry per customer and type that has appointments
+     */
+    public synchronized List<CustomerEntry> getCustomerEntries(IntFunction<String> customerNames) {
+        List<CustomerEntry> entries = new ArrayList<>();
+        totalsByCustomerAndType.forEachEntry((customerId, totalsByType) -> {
+            String customerName = customerNames.apply(customerId);
+            for (Map.Entry<String, int[]> typeEntry : totalsByType.entrySet()) {
+                entries.add(new CustomerEntry(customerName, typeEntry.getKey(), typeEntry.getValue()[0]));
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Retrieves the appointments of each contact, ordered by start time
+     * @return appointments by contact name, ordered by contact name
+     */
+    public synchronized Map<String, List<Appointment>> getAppointmentsByContact() {
+        Map<String, List<Appointment>> contactAppointments = new LinkedHashMap<>();
+        for (Map.Entry<String, AppointmentIntervalIndex> contactEntry : appointmentsByContact.entrySet()) {
+            List<Appointment> appointments = new ArrayList<>(contactEntry.getValue().size());
+            contactEntry.getValue().forEachStartingBetween(Long.MIN_VALUE, Long.MAX_VALUE, appointments::add);
+            contactAppointments.put(contactEntry.getKey(), appointments);
+        }
+        return contactAppointments;
+    }
+
+    /**
+     * Retrieves the number of appointments of each contact, without copying the appointments
+     * @return number of appointments by contact name, ordered by contact name
+     */
+    public synchronized Map<String, Integer> getContactAppointmentCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, AppointmentIntervalIndex> contactEntry : appointmentsByContact.entrySet()) {
+            counts.put(contactEntry.getKey(), contactEntry.getValue().size());
+        }
+        return counts;
+    }
+
+    /**
+     * Retrieves one page of a contact's appointments, ordered by start time
+     * @param contactName name of the contact
+     * @param offset position of the first appointment of the page
+     * @param limit maximum number of appointments in the page
+     * @return appointments of the page, empty when the contact has no appointments there
+     */
+    public synchronized List<Appointment> getContactAppointments(String contactName, int offset, int limit) {
+        List<Appointment> page = new ArrayList<>();
+        AppointmentIntervalIndex contactAppointments = appointmentsByContact.get(contactName);
+        if (contactAppointments != null) {
+            int end = Math.min(contactAppointments.size(), offset + limit);
+            for (int i = Math.max(0, offset); i < end; i++) {
+                page.add(contactAppointments.get(i));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Helper method that adds or subtracts an appointment from each of its groups, dropping groups that become empty
+     * @param appointment appointment to count
+     * @param delta 1 to count the appointment, -1 to stop counting it
+     */
+    private void count(Appointment appointment, int delta) {
+        countTotals(appointment, delta);
+        String contactName = contactName(appointment);
+        if (delta > 0) {
+            appointmentsByContact.computeIfAbsent(contactName, c -> new AppointmentIntervalIndex()).add(appointment);
+        } else {
+            AppointmentIntervalIndex contactAppointments = appointmentsByContact.get(contactName);
+            if (contactAppointments != null) {
+                contactAppointments.remove(appointment);
+                if (contactAppointments.size() == 0) {
+                    appointmentsByContact.remove(contactName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that adds or subtracts an appointment from its type and month and customer and type totals
+     * @param appointment appointment to count
+     * @param delta 1 to count the appointment, -1 to stop counting it
+     */
+    private void countTotals(Appointment appointment, int delta) {
+        String type = appointment.getType();
+        int month = appointment.getStartDate().getMonthValue() - 1;
+        int[] totalsByMonth = totalsByTypeAndMonth.computeIfAbsent(type, t -> new int[12]);
+        totalsByMonth[month] += delta;
+        if (delta < 0 && isEmpty(totalsByMonth)) {
+            totalsByTypeAndMonth.remove(type);
+        }
+
+        int customerId = appointment.getCustomerId();
+        Map<String, int[]> totalsByType = totalsByCustomerAndType.get(customerId);
+        if (totalsByType == null) {
+            totalsByType = new HashMap<>();
+            totalsByCustomerAndType.put(customerId, totalsByType);
+        }
+        int[] total = totalsByType.computeIfAbsent(type, t -> new int[1]);
+        total[0] += delta;
+        if (total[0] <= 0) {
+            totalsByType.remove(type);
+            if (totalsByType.isEmpty()) {
+                totalsByCustomerAndType.remove(customerId);
+            }
+        }
+    }
+
+    /**
+     * Helper method to retrieve the name an appointment is grouped under in the contact report
+     * @param appointment appointment to group
+     * @return the contact name, empty when the appointment has no contact
+     */
+    private static String contactName(Appointment appointment) {
+        return appointment.getContactName() != null ? appointment.getContactName() : "";
+    }
+
+    /**
+     * Helper method to check if every monthly total of a type is zero
+     * @param totalsByMonth totals of a type by month
+     * @return true if there are no appointments left otherwise false
+     */
+    private static boolean isEmpty(int[] totalsByMonth) {
+        for (int total : totalsByMonth) {
+            if (total > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
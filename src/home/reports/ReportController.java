@@ -5,22 +5,25 @@ import java.util.List;
 import java.util.Map;
 
 import home.appointments.Appointment;
+import home.customer.Customer;
 import home.customer.DataManager;
+import home.metrics.LatencyHistogram;
+import home.metrics.MetricRegistry;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.Group;
 import javafx.scene.Scene;
-import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.control.TreeItem;
+import javafx.scene.control.TreeTableColumn;
+import javafx.scene.control.TreeTableView;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.cell.TreeItemPropertyValueFactory;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
-import javafx.util.Pair;
-
-import static java.util.stream.Collectors.*;
 
 /**
  * Class that manages the generation of report data as well as the display of the reports
@@ -28,25 +31,22 @@ import static java.util.stream.Collectors.*;
 public class ReportController
 {
     public static Stage stage = new Stage();
+    private static final MetricRegistry metrics = MetricRegistry.getInstance();
+    private static final LatencyHistogram APPOINTMENT_REPORT = metrics.histogram("report.appointments.build");
+    private static final LatencyHistogram CUSTOMER_REPORT = metrics.histogram("report.customers.build");
+    private static final LatencyHistogram CONTACT_REPORT = metrics.histogram("report.contacts.build");
 
     /**
-     * Method that will filter appointments by type and month and display the information
-     * Lambda expression is used to group appointments by type and month. This makes is easier to do so.
-     * @param appointments list of appointments to filter
+     * Method that will display the appointments by type and month
+     * The totals are read from the report aggregates, which are kept up to date as appointments change
+     * The time taken to build the rows is recorded in the report.appointments.build metric
      */
-    public void showAppointmentReport(List<Appointment> appointments) {
+    public void showAppointmentReport() {
+        long started = System.nanoTime();
 
-        List<AppointmentEntry> appointmentEntries = new ArrayList<>();
         // by type and month
-        Map<Pair<String, String>, List<Appointment>> apptsByTypeAndMonth = appointments.stream()
-            .collect(groupingBy(appt -> new Pair<>(appt.getType(), appt.getStartDate().getMonth().toString())));
-
-        for (Map.Entry<Pair<String, String>, List<Appointment>> typeAndMonthEntry : apptsByTypeAndMonth.entrySet()) {
-            Pair<String, String> typeAndMonth = typeAndMonthEntry.getKey();
-            List<Appointment> apppointments = typeAndMonthEntry.getValue();
-            AppointmentEntry newEntry = new AppointmentEntry(typeAndMonth.getKey(), typeAndMonth.getValue(), apppointments.size());
-            appointmentEntries.add(newEntry);
-        }
+        List<AppointmentEntry> appointmentEntries = DataManager.getInstance().getReportAggregates().getAppointmentEntries();
+        APPOINTMENT_REPORT.recordSince(started);
 
         ObservableList<AppointmentEntry> apptsToShow = FXCollections.observableArrayList(appointmentEntries);
 
@@ -88,23 +88,19 @@ public class ReportController
     }
 
     /**
-     * Method that will filter appointments by customer and type and display the report
-     * Lambda expression is used in this method to group appointments by customer id and type.
-     * @param appointments list of appointments to filter
+     * Method that will display the appointments by customer and type
+     * The totals are read from the report aggregates, which are kept up to date as appointments change
+     * Lambda expression is used in this method to look up the customer name of each entry.
+     * The time taken to build the rows is recorded in the report.customers.build metric
      */
-    public void showCustomerReport(List<Appointment> appointments) {
-        List<CustomerEntry> customerEntries = new ArrayList<>();
+    public void showCustomerReport() {
+        long started = System.nanoTime();
         // by customer and type
-        Map<Pair<Integer, String>, List<Appointment>> apptsByCustomerAndType = appointments.stream()
-            .collect(groupingBy(appt -> new Pair<>(appt.getCustomerId(), appt.getType())));
-
-        for (Map.Entry<Pair<Integer, String>, List<Appointment>> customerAndTypeEntry : apptsByCustomerAndType.entrySet()) {
-            Pair<Integer, String> customerAndType = customerAndTypeEntry.getKey();
-            List<Appointment> apppointments = customerAndTypeEntry.getValue();
-            String customerName = DataManager.getInstance().getCustomerById(customerAndType.getKey()).getName();
-            CustomerEntry newEntry = new CustomerEntry(customerName, customerAndType.getValue(), apppointments.size());
-            customerEntries.add(newEntry);
-        }
+        List<CustomerEntry> customerEntries = DataManager.getInstance().getReportAggregates().getCustomerEntries(customerId -> {
+            Customer customer = DataManager.getInstance().getCustomerById(customerId);
+            return customer != null ? customer.getName() : String.valueOf(customerId);
+        });
+        CUSTOMER_REPORT.recordSince(started);
 
         ObservableList<CustomerEntry> apptsToShow = FXCollections.observableArrayList(customerEntries);
 
@@ -146,14 +142,21 @@ public class ReportController
     }
 
     /**
-     * Method to filter appointments by contact and show all appoinments per contact
-     * Lambda expression is used inside this method to group appointments by contact name.
-     * @param appointments list of appointments to filter
+     * Method to show all appoinments per contact
+     * One tree table is grouped by contact with a collapsible row per contact. Only visible rows get cells,
+     * and a contact's appointments are read in pages from the report aggregates when its row is expanded.
+     * Lambda expression is used to load the next page when the placeholder row of a contact is selected.
+     * The time taken to build the contact rows is recorded in the report.contacts.build metric
      */
-    public void showContactReport(List<Appointment> appointments) {
+    public void showContactReport() {
+        long started = System.nanoTime();
 
-        Map<String, List<Appointment>> apptsByContact = appointments.stream()
-            .collect(groupingBy(app -> app.getContactName()));
+        ReportAggregates aggregates = DataManager.getInstance().getReportAggregates();
+        TreeItem<ContactScheduleEntry> root = new TreeItem<>(new ContactScheduleEntry("Contacts"));
+        for (Map.Entry<String, Integer> entry : aggregates.getContactAppointmentCounts().entrySet()) {
+            root.getChildren().add(new ContactTreeItem(aggregates, entry.getKey(), entry.getValue()));
+        }
+        CONTACT_REPORT.recordSince(started);
 
         Scene scene = new Scene(new Group());
         stage.setWidth(1500);
@@ -163,61 +166,55 @@ public class ReportController
         vbox.setSpacing(5);
         vbox.setPadding(new Insets(10, 10, 10, 10));
 
-        for (Map.Entry<String, List<Appointment>> entry : apptsByContact.entrySet()) {
-            String contact = entry.getKey();
-            List<Appointment> contactAppts = entry.getValue();
-
-            TableView<Appointment> table = new TableView<>();
-            Label label = new Label();
-            label.setText(contact);
-
-            TableColumn idColumn = new TableColumn("Appointment ID");
-            idColumn.setMinWidth(200);
-            idColumn.setCellValueFactory(
-                new PropertyValueFactory<>("id"));
-
-            TableColumn titleColumn = new TableColumn("Appointment Title");
-            titleColumn.setMinWidth(200);
-            titleColumn.setCellValueFactory(
-                new PropertyValueFactory<>("title"));
-
-            TableColumn typeColumn = new TableColumn("Appointment Type");
-            typeColumn.setMinWidth(200);
-            typeColumn.setCellValueFactory(
-                new PropertyValueFactory<>("type"));
-
-            TableColumn descColumn = new TableColumn("Description");
-            descColumn.setMinWidth(200);
-            descColumn.setCellValueFactory(
-                new PropertyValueFactory<>("description"));
-
-            TableColumn startColumn = new TableColumn("Start Date");
-            startColumn.setMinWidth(200);
-            startColumn.setCellValueFactory(
-                new PropertyValueFactory<>("startDateString"));
-
-            TableColumn endColumn = new TableColumn("End Date");
-            endColumn.setMinWidth(200);
-            endColumn.setCellValueFactory(
-                new PropertyValueFactory<>("endDateString"));
-
-            TableColumn customerColumn = new TableColumn("Customer ID");
-            customerColumn.setMinWidth(200);
-            customerColumn.setCellValueFactory(
-                new PropertyValueFactory<>("customerId"));
-
-            table.setItems(FXCollections.observableList(contactAppts));
-            table.getColumns().addAll(idColumn, titleColumn, typeColumn, descColumn, startColumn, endColumn, customerColumn);
-            vbox.getChildren().addAll(label, table);
-        }
+        TreeTableView<ContactScheduleEntry> table = new TreeTableView<>(root);
+        table.setShowRoot(false);
+        table.setPrefSize(1460, 640);
+
+        TreeTableColumn labelColumn = new TreeTableColumn("Contact / Appointment ID");
+        labelColumn.setMinWidth(260);
+        labelColumn.setCellValueFactory(
+            new TreeItemPropertyValueFactory<>("label"));
 
-        ScrollPane scroll = new ScrollPane();
-        scroll.setPrefSize(1500, 700);
-        scroll.setPadding(new Insets(10,10,10,10));
-        //Setting content to the scroll pane
-        scroll.setContent(vbox);
+        TreeTableColumn titleColumn = new TreeTableColumn("Appointment Title");
+        titleColumn.setMinWidth(200);
+        titleColumn.setCellValueFactory(
+            new TreeItemPropertyValueFactory<>("title"));
 
-        ((Group) scene.getRoot()).getChildren().addAll(scroll);
+        TreeTableColumn typeColumn = new TreeTableColumn("Appointment Type");
+        typeColumn.setMinWidth(200);
+        typeColumn.setCellValueFactory(
+            new TreeItemPropertyValueFactory<>("type"));
+
+        TreeTableColumn descColumn = new TreeTableColumn("Description");
+        descColumn.setMinWidth(200);
+        descColumn.setCellValueFactory(
+            new TreeItemPropertyValueFactory<>("description"));
+
+        TreeTableColumn startColumn = new TreeTableColumn("Start Date");
+        startColumn.setMinWidth(200);
+        startColumn.setCellValueFactory(
+            new TreeItemPropertyValueFactory<>("startDateString"));
+
+        TreeTableColumn endColumn = new TreeTableColumn("End Date");
+        endColumn.setMinWidth(200);
+        endColumn.setCellValueFactory(
+            new TreeItemPropertyValueFactory<>("endDateString"));
+
+        TreeTableColumn customerColumn = new TreeTableColumn("Customer ID");
+        customerColumn.setMinWidth(140);
+        customerColumn.setCellValueFactory(
+            new TreeItemPropertyValueFactory<>("customerId"));
+
+        table.getColumns().addAll(labelColumn, titleColumn, typeColumn, descColumn, startColumn, endColumn, customerColumn);
+        table.getSelectionModel().selectedItemProperty().addListener((ob, o, n) -> {
+            if (n != null && n.getParent() instanceof ContactTreeItem && n.getValue().getAppointment() == null) {
+                // the placeholder is replaced after the selection change has finished
+                Platform.runLater(() -> ((ContactTreeItem) n.getParent()).loadNextPage());
+            }
+        });
+        vbox.getChildren().addAll(table);
+
+        ((Group) scene.getRoot()).getChildren().addAll(vbox);
         stage.setTitle("Contacts Report");
         stage.setScene(scene);
 
@@ -225,4 +222,72 @@ public class ReportController
             this.stage.showAndWait();
         }
     }
+
+    /**
+     * Class that represents the collapsible row of a contact.
+     * Its appointment rows are only created once the row is expanded, one page at a time,
+     * with a placeholder row at the end while more appointments remain.
+     */
+    private static class ContactTreeItem extends TreeItem<ContactScheduleEntry>
+    {
+        private static final int PAGE_SIZE = 500;
+
+        private final ReportAggregates aggregates;
+        private final String contactName;
+        private final int appointmentCount;
+        private int loadedCount = 0;
+        private boolean childrenRequested = false;
+        private TreeItem<ContactScheduleEntry> placeholder = null;
+
+        private ContactTreeItem(final ReportAggregates aggregates, final String contactName, final int appointmentCount) {
+            super(new ContactScheduleEntry(contactName + " (" + appointmentCount + " appointments)"));
+            this.aggregates = aggregates;
+            this.contactName = contactName;
+            this.appointmentCount = appointmentCount;
+        }
+
+        /**
+         * Retrieves the rows of the contact, loading the first page on the first call
+         * @return appointment rows loaded so far
+         */
+        @Override
+        public ObservableList<TreeItem<ContactScheduleEntry>> getChildren() {
+            if (!childrenRequested) {
+                childrenRequested = true;
+                loadNextPage();
+            }
+            return super.getChildren();
+        }
+
+        /**
+         * Checks if the contact has no appointment rows, without loading them
+         * @return true if the contact has no appointments otherwise false
+         */
+        @Override
+        public boolean isLeaf() {
+            return appointmentCount == 0;
+        }
+
+        /**
+         * Adds the next page of appointment rows, replacing the placeholder row
+         */
+        private void loadNextPage() {
+            ObservableList<TreeItem<ContactScheduleEntry>> children = super.getChildren();
+            if (placeholder != null) {
+                children.remove(placeholder);
+                placeholder = null;
+            }
+            List<TreeItem<ContactScheduleEntry>> page = new ArrayList<>();
+            for (Appointment appointment : aggregates.getContactAppointments(contactName, loadedCount, PAGE_SIZE)) {
+                page.add(new TreeItem<>(new ContactScheduleEntry(appointment)));
+            }
+            loadedCount += page.size();
+            int remaining = appointmentCount - loadedCount;
+            if (remaining > 0 && !page.isEmpty()) {
+                placeholder = new TreeItem<>(new ContactScheduleEntry("Show more (" + remaining + " remaining)"));
+                page.add(placeholder);
+            }
+            children.addAll(page);
+        }
+    }
 }
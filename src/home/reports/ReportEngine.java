@@ -0,0 +1,257 @@
+package home.reports;
+
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+import home.appointments.Appointment;
+import home.customer.IntIndex;
+import home.metrics.LatencyHistogram;
+import home.metrics.MetricRegistry;
+
+/**
+ * Class that builds the type and month, customer and type and contact reports from a set of appointments
+ * without touching the JavaFX rendering.
+ * Large sets are split into chunks that are aggregated in parallel on a fork join pool and then merged,
+ * smaller sets are aggregated on the calling thread.
+ * It regroups a full set of appointments, as the batch reports do. The report screens read the totals
+ * ReportAggregates keeps up to date as appointments change, which avoids the regrouping.
+ */
+public class ReportEngine
+{
+    private static final int DEFAULT_CHUNK_SIZE = 50_000;
+    private static final LatencyHistogram RUN_LATENCY = MetricRegistry.getInstance().histogram("report.engine.run");
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Constructor to create a report engine running on the common fork join pool
+     */
+    public ReportEngine() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor to create a report engine
+     * @param pool pool the chunks are aggregated on
+     * @param chunkSize number of appointments aggregated by a single task
+     */
+    public ReportEngine(final ForkJoinPool pool, final int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Aggregates the appointments of every report, in parallel when there is more than one chunk of them
+     * and the pool has more than one thread
+     * The time taken is recorded in the report.engine.run metric
+     * @param appointments appointments to aggregate
+     * @return the aggregated reports
+     */
+    public Result run(List<Appointment> appointments) {
+        long started = System.nanoTime();
+        try {
+            List<Appointment> indexable = appointments instanceof RandomAccess ? appointments : new ArrayList<>(appointments);
+            if (indexable.size() <= chunkSize || pool.getParallelism() < 2) {
+                return runSequential(indexable);
+            }
+            return new Result(pool.invoke(new ChunkTask(indexable, 0, indexable.size())));
+        } finally {
+            RUN_LATENCY.recordSince(started);
+        }
+    }
+
+    /**
+     * Aggregates the appointments of every report on the calling thread
+     * @param appointments appointments to aggregate
+     * @return the aggregated reports
+     */
+    public Result runSequential(List<Appointment> appointments) {
+        Partial partial = new Partial();
+        for (Appointment appointment : appointments) {
+            partial.add(appointment);
+        }
+        return new Result(partial);
+    }
+
+    /**
+     * Class that holds the aggregated reports of a run
+     */
+    public static class Result
+    {
+        private final Partial totals;
+
+        private Result(final Partial totals) {
+            this.totals = totals;
+        }
+
+        /**
+         * Retrieves the entries of the appointments by type and month report
+         * @return one entry per type and month that has appointments
+         */
+        public List<AppointmentEntry> getAppointmentEntries() {
+            List<AppointmentEntry> entries = new ArrayList<>();
+            for (Map.Entry<String, int[]> typeEntry : new TreeMap<>(totals.totalsByTypeAndMonth).entrySet()) {
+                int[] totalsByMonth = typeEntry.getValue();
+                for (int month = 0; month < totalsByMonth.length; month++) {
+                    if (totalsByMonth[month] > 0) {
+                        entries.add(new AppointmentEntry(typeEntry.getKey(), Month.of(month + 1).toString(), totalsByMonth[month]));
+                    }
+                }
+            }
+            return entries;
+        }
+
+        /**
+         * Retrieves the entries of the appointments by customer and type report
+         * @param customerNames function giving the name of a customer from its id
+         * @return one entry per customer and type that has appointments
+         */
+        public List<CustomerEntry> getCustomerEntries(IntFunction<String> customerNames) {
+            List<CustomerEntry> entries = new ArrayList<>();
+            totals.totalsByCustomerAndType.forEachEntry((customerId, totalsByType) -> {
+                String customerName = customerNames.apply(customerId);
+                for (Map.Entry<String, int[]> typeEntry : totalsByType.entrySet()) {
+                    entries.add(new CustomerEntry(customerName, typeEntry.getKey(), typeEntry.getValue()[0]));
+                }
+            });
+            return entries;
+        }
+
+        /**
+         * Retrieves the appointments of each contact, ordered by start time
+         * @return appointments by contact name, ordered by contact name
+         */
+        public Map<String, List<Appointment>> getAppointmentsByContact() {
+            Map<String, List<Appointment>> contactAppointments = new LinkedHashMap<>();
+            for (Map.Entry<String, List<List<Appointment>>> contactEntry : new TreeMap<>(totals.appointmentsByContact).entrySet()) {
+                int size = 0;
+                for (List<Appointment> piece : contactEntry.getValue()) {
+                    size += piece.size();
+                }
+                List<Appointment> appointments = new ArrayList<>(size);
+                for (List<Appointment> piece : contactEntry.getValue()) {
+                    appointments.addAll(piece);
+                }
+                appointments.sort(Comparator.comparingLong(a -> a.getStartDate().toEpochSecond()));
+                contactAppointments.put(contactEntry.getKey(), appointments);
+            }
+            return contactAppointments;
+        }
+    }
+
+    /**
+     * Class that aggregates one chunk of appointments, splitting it in halves until it is small enough
+     */
+    private class ChunkTask extends RecursiveTask<Partial>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Appointment> appointments;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(final List<Appointment> appointments, final int from, final int to) {
+            this.appointments = appointments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= chunkSize) {
+                Partial partial = new Partial();
+                for (int i = from; i < to; i++) {
+                    partial.add(appointments.get(i));
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(appointments, from, middle);
+            left.fork();
+            Partial right = new ChunkTask(appointments, middle, to).compute();
+            // the left half is merged first so each contact keeps the order of the input
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Class that holds the totals of one chunk.
+     * Months are kept as array positions and customers in an int keyed index so counting does not box keys.
+     * The appointments of a contact are kept as the pieces each chunk collected so merging never copies them.
+     */
+    private static class Partial
+    {
+        private final Map<String, int[]> totalsByTypeAndMonth = new HashMap<>();
+        private final IntIndex<Map<String, int[]>> totalsByCustomerAndType = new IntIndex<>();
+        private final Map<String, List<List<Appointment>>> appointmentsByContact = new HashMap<>();
+
+        /**
+         * Counts an appointment in each of its groups
+         * @param appointment appointment to count
+         */
+        private void add(Appointment appointment) {
+            String type = appointment.getType();
+            totalsByTypeAndMonth.computeIfAbsent(type, t -> new int[12])[appointment.getStartDate().getMonthValue() - 1]++;
+
+            Map<String, int[]> totalsByType = totalsByCustomerAndType.get(appointment.getCustomerId());
+            if (totalsByType == null) {
+                totalsByType = new HashMap<>();
+                totalsByCustomerAndType.put(appointment.getCustomerId(), totalsByType);
+            }
+            totalsByType.computeIfAbsent(type, t -> new int[1])[0]++;
+
+            String contactName = appointment.getContactName() != null ? appointment.getContactName() : "";
+            List<List<Appointment>> pieces = appointmentsByContact.get(contactName);
+            if (pieces == null) {
+                pieces = new ArrayList<>();
+                pieces.add(new ArrayList<>());
+                appointmentsByContact.put(contactName, pieces);
+            }
+            pieces.get(0).add(appointment);
+        }
+
+        /**
+         * Adds the totals of another chunk into this one
+         * @param other totals of the chunk that follows this one
+         * @return this partial holding the totals of both chunks
+         */
+        private Partial merge(Partial other) {
+            for (Map.Entry<String, int[]> typeEntry : other.totalsByTypeAndMonth.entrySet()) {
+                int[] totalsByMonth = totalsByTypeAndMonth.computeIfAbsent(typeEntry.getKey(), t -> new int[12]);
+                for (int month = 0; month < totalsByMonth.length; month++) {
+                    totalsByMonth[month] += typeEntry.getValue()[month];
+                }
+            }
+            other.totalsByCustomerAndType.forEachEntry((customerId, otherTotalsByType) -> {
+                Map<String, int[]> totalsByType = totalsByCustomerAndType.get(customerId);
+                if (totalsByType == null) {
+                    totalsByCustomerAndType.put(customerId, otherTotalsByType);
+                    return;
+                }
+                for (Map.Entry<String, int[]> typeEntry : otherTotalsByType.entrySet()) {
+                    totalsByType.computeIfAbsent(typeEntry.getKey(), t -> new int[1])[0] += typeEntry.getValue()[0];
+                }
+            });
+            for (Map.Entry<String, List<List<Appointment>>> contactEntry : other.appointmentsByContact.entrySet()) {
+                List<List<Appointment>> pieces = appointmentsByContact.get(contactEntry.getKey());
+                if (pieces == null) {
+                    appointmentsByContact.put(contactEntry.getKey(), contactEntry.getValue());
+                } else {
+                    pieces.addAll(contactEntry.getValue());
+                }
+            }
+            return this;
+        }
+    }
+}
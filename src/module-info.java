@@ -2,6 +2,8 @@ module com.example.bebetaproject {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires java.management;
+    requires jdk.management;
 
 
     opens home to javafx.fxml;
@@ -9,6 +11,10 @@ module com.example.bebetaproject {
     exports home.customer;
     exports home.appointments;
     exports home.reports;
+    exports home.export;
+    exports home.bulk;
+    exports home.bench;
+    exports home.metrics;
     opens home.customer to javafx.fxml;
     opens home.appointments to javafx.fxml;
     opens home.reports to javafx.fxml;
@@ -0,0 +1,18 @@
+-- Schema migration for the delta sync of customer and appointment deletions.
+-- Run it once against the client_schedule database before starting workstations that sync.
+-- The triggers record every delete, including deletes made by other tools, in the same transaction as the delete.
+
+create table if not exists deleted_records (
+    tombstone_id bigint not null auto_increment primary key,
+    table_name varchar(20) not null,
+    record_id int not null,
+    deleted_at timestamp not null default current_timestamp
+);
+
+drop trigger if exists customers_after_delete;
+create trigger customers_after_delete after delete on customers for each row
+    insert into deleted_records (table_name, record_id) values ('customers', old.customer_id);
+
+drop trigger if exists appointments_after_delete;
+create trigger appointments_after_delete after delete on appointments for each row
+    insert into deleted_records (table_name, record_id) values ('appointments', old.appointment_id);